@@ -4,6 +4,11 @@ plugins {
 	id("io.spring.dependency-management") version "1.1.7"
 }
 
+// Generates AOT bean definitions into the bootJar; they are only used when the app runs
+// with -Dspring.aot.enabled=true (fast-start, see Dockerfile.runtime). Keep bean
+// registration free of @ConditionalOnProperty/@Profile: AOT fixes those at build time.
+apply(plugin = "org.springframework.boot.aot")
+
 group = "com.schuduler"
 version = "0.0.1-SNAPSHOT"
 description = "My tv schuduler"
@@ -24,6 +29,9 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-validation")
 	implementation("org.springframework.boot:spring-boot-starter-actuator")
 	implementation("org.springframework.boot:spring-boot-starter-amqp")
+	implementation("org.springframework.boot:spring-boot-starter-rsocket")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+	implementation("com.github.ben-manes.caffeine:caffeine")
 
     // Lombok
     compileOnly("org.projectlombok:lombok:1.18.30")
@@ -36,6 +44,55 @@ dependencies {
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
+// only the bootJar, so build/libs/*.jar is unambiguous for the Dockerfiles
+tasks.named<Jar>("jar") {
+	enabled = false
+}
+
 tasks.withType<Test> {
 	useJUnitPlatform()
+	// MongoDB for ScheduleQueryPlanTest and ScheduleBucketScanBenchmark, e.g. -Dtest.mongo.uri=mongodb://localhost:27017
+	listOf("test.mongo.uri", "bench.mongo.uri").forEach { key ->
+		System.getProperty(key)?.let { systemProperty(key, it) }
+	}
+}
+
+tasks.test {
+	useJUnitPlatform {
+		excludeTags("benchmark")
+	}
+}
+
+// Micro-benchmarks live next to the unit tests but only run on demand: ./gradlew benchmark
+tasks.register<Test>("benchmark") {
+	description = "Runs tests tagged 'benchmark'."
+	group = "verification"
+	testClassesDirs = sourceSets["test"].output.classesDirs
+	classpath = sourceSets["test"].runtimeClasspath
+	useJUnitPlatform {
+		includeTags("benchmark")
+	}
+	testLogging {
+		showStandardStreams = true
+	}
+	outputs.upToDateWhen { false }
+}
+
+// Time-to-ready and RSS for the plain jar vs. AOT + AppCDS: ./gradlew startupBenchmark
+// Needs MongoDB and RabbitMQ reachable with the default configuration.
+tasks.register<Exec>("startupBenchmark") {
+	description = "Measures startup of the plain and fast-start variants of the bootJar."
+	group = "verification"
+	dependsOn("bootJar")
+	commandLine("sh", "scripts/startup-benchmark.sh", tasks.named<Jar>("bootJar").get().archiveFile.get().asFile.path)
+}
+
+// Virtual-time replay of a day of pre-playback scans: ./gradlew simulate -PsimArgs="schedules=10000000"
+tasks.register<JavaExec>("simulate") {
+	description = "Runs the pre-playback engine against an in-memory store on virtual time."
+	group = "verification"
+	classpath = sourceSets["test"].runtimeClasspath
+	mainClass = "com.schuduler.programschuduler.simulation.SchedulerSimulation"
+	maxHeapSize = "4g"
+	args = (findProperty("simArgs") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
 }
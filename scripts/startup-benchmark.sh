@@ -0,0 +1,56 @@
+#!/bin/sh
+# Startup benchmark: time-to-ready and RSS of the plain bootJar vs. the fast-start
+# variant (Spring AOT + AppCDS archive from a training run, as in Dockerfile.runtime).
+#
+#   sh scripts/startup-benchmark.sh build/libs/programschuduler-0.0.1-SNAPSHOT.jar [runs]
+#
+# Ready = first 200 from /actuator/health/readiness. Results are appended to
+# build/reports/startup-benchmark.csv.
+set -eu
+
+JAR=$(realpath "${1:?usage: startup-benchmark.sh <bootJar> [runs]}")
+RUNS=${2:-5}
+PORT=${SERVER_PORT:-9002}
+WORK=$(pwd)/build/startup-benchmark
+REPORT=$(pwd)/build/reports/startup-benchmark.csv
+
+rm -rf "$WORK" && mkdir -p "$WORK" build/reports
+[ -f "$REPORT" ] || echo "variant,run,ready_ms,rss_kb" > "$REPORT"
+
+# Fast-start layout: extracted jar + lib/, then a training run that refreshes the
+# context and exits, dumping the classes it loaded.
+java -Djarmode=tools -jar "$JAR" extract --destination "$WORK/fast" --force > /dev/null
+FAST_JAR=$(ls "$WORK"/fast/*.jar)
+mv "$FAST_JAR" "$WORK/fast/app.jar"
+(cd "$WORK/fast" && java -XX:ArchiveClassesAtExit=app.jsa -Dspring.aot.enabled=true \
+    -Dspring.context.exit=onRefresh -jar app.jar > training.log 2>&1)
+
+now_ms() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+measure() {
+    variant=$1; run=$2; shift 2
+    start=$(now_ms)
+    "$@" > "$WORK/$variant-$run.log" 2>&1 &
+    pid=$!
+    until curl -sf "http://localhost:$PORT/actuator/health/readiness" > /dev/null 2>&1; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "$variant run $run exited before ready, see $WORK/$variant-$run.log" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    ready=$(($(now_ms) - start))
+    rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+    kill "$pid" && wait "$pid" 2>/dev/null || true
+    echo "$variant,$run,$ready,$rss" >> "$REPORT"
+    printf '%-6s run %d: ready in %5d ms, RSS %7d kB\n' "$variant" "$run" "$ready" "$rss"
+}
+
+i=1
+while [ "$i" -le "$RUNS" ]; do
+    measure plain "$i" java -jar "$JAR"
+    (cd "$WORK/fast" && measure fast "$i" java -XX:SharedArchiveFile=app.jsa -Dspring.aot.enabled=true -jar app.jar)
+    i=$((i + 1))
+done
@@ -0,0 +1,276 @@
+package com.schuduler.programschuduler.archive;
+
+import com.schuduler.programschuduler.model.Schedule;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One day of archived schedules, stored column by column.
+ * <p>
+ * The file is a sequence of gzip members, one per appended row group, so a batch can
+ * be added without rewriting the file. Inside a row group every field is written as a
+ * column: repeated strings (user, channel, programme URL) are dictionary encoded and
+ * instants are zig-zag varint deltas, which keeps a sorted {@code startAt} column to a
+ * byte or two per row before compression.
+ */
+public final class ScheduleSegmentFile {
+
+    private static final int MAGIC = 0x53534547; // "SSEG"
+    private static final byte VERSION = 1;
+    private static final long NULL_INSTANT = Long.MIN_VALUE;
+    private static final Schedule.Recurrence[] RECURRENCES = Schedule.Recurrence.values();
+
+    private final Path path;
+
+    public ScheduleSegmentFile(Path path) {
+        this.path = path;
+    }
+
+    public static ScheduleSegmentFile forDay(Path dir, LocalDate day) {
+        return new ScheduleSegmentFile(dir.resolve("schedules-" + day + ".seg.gz"));
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /** Appends {@code rows} as one row group and syncs it to disk before returning. */
+    public void append(List<Schedule> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (FileOutputStream file = new FileOutputStream(path.toFile(), true)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(file, 64 * 1024));
+            DataOutputStream out = new DataOutputStream(gzip);
+            writeRowGroup(out, rows);
+            gzip.finish();
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * Opens the file for reading one row group at a time; a missing file reads as
+     * empty.
+     */
+    public RowGroupReader open() throws IOException {
+        if (!Files.exists(path)) {
+            return new RowGroupReader(path, null);
+        }
+        return new RowGroupReader(path, new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), 64 * 1024), 64 * 1024)));
+    }
+
+    public static final class RowGroupReader implements Closeable {
+
+        private final Path path;
+        private final DataInputStream in;
+
+        private RowGroupReader(Path path, DataInputStream in) {
+            this.path = path;
+            this.in = in;
+        }
+
+        /** The next row group, or {@code null} at the end of the file. */
+        public List<Schedule> next() throws IOException {
+            if (in == null) {
+                return null;
+            }
+            int magic;
+            try {
+                magic = in.readInt();
+            } catch (EOFException eof) {
+                return null;
+            }
+            if (magic != MAGIC) {
+                throw new IOException("not a schedule segment: " + path);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("unsupported segment version " + version + " in " + path);
+            }
+            return readRowGroup(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    private static void writeRowGroup(DataOutputStream out, List<Schedule> rows) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, rows.size());
+
+        writeStrings(out, rows, Schedule::getId);
+        writeDictionary(out, rows, Schedule::getUserId);
+        writeStrings(out, rows, Schedule::getTitle);
+        writeDictionary(out, rows, Schedule::getChannel);
+        writeInstants(out, rows, Schedule::getStartAt);
+        for (Schedule s : rows) {
+            // 0 is null
+            writeVarLong(out, s.getDurationMin() == null ? 0 : zigZag(s.getDurationMin()) + 1);
+        }
+        for (Schedule s : rows) {
+            out.writeByte(s.getRecurrence() == null ? -1 : s.getRecurrence().ordinal());
+        }
+        writeDictionary(out, rows, Schedule::getProgramUrl);
+        writeStrings(out, rows, Schedule::getNotes);
+        writeInstants(out, rows, Schedule::getCreatedAt);
+        writeInstants(out, rows, Schedule::getUpdatedAt);
+    }
+
+    private static List<Schedule> readRowGroup(DataInputStream in) throws IOException {
+        int n = (int) readVarLong(in);
+
+        String[] ids = readStrings(in, n);
+        String[] userIds = readDictionary(in, n);
+        String[] titles = readStrings(in, n);
+        String[] channels = readDictionary(in, n);
+        Instant[] startAts = readInstants(in, n);
+        Integer[] durations = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            long d = readVarLong(in);
+            durations[i] = d == 0 ? null : (int) unZigZag(d - 1);
+        }
+        Schedule.Recurrence[] recurrences = new Schedule.Recurrence[n];
+        for (int i = 0; i < n; i++) {
+            byte r = in.readByte();
+            recurrences[i] = r < 0 ? null : RECURRENCES[r];
+        }
+        String[] programUrls = readDictionary(in, n);
+        String[] notes = readStrings(in, n);
+        Instant[] createdAts = readInstants(in, n);
+        Instant[] updatedAts = readInstants(in, n);
+
+        List<Schedule> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(Schedule.builder()
+                    .id(ids[i])
+                    .userId(userIds[i])
+                    .title(titles[i])
+                    .channel(channels[i])
+                    .startAt(startAts[i])
+                    .durationMin(durations[i])
+                    .recurrence(recurrences[i])
+                    .programUrl(programUrls[i])
+                    .notes(notes[i])
+                    .createdAt(createdAts[i])
+                    .updatedAt(updatedAts[i])
+                    .preplayPublished(true)
+                    .build());
+        }
+        return rows;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<Schedule> rows, Function<Schedule, String> column) throws IOException {
+        for (Schedule s : rows) {
+            String v = column.apply(s);
+            out.writeBoolean(v != null);
+            if (v != null) {
+                out.writeUTF(v);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, int n) throws IOException {
+        String[] values = new String[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = in.readBoolean() ? in.readUTF() : null;
+        }
+        return values;
+    }
+
+    // dictionary, then one code per row; code 0 is null
+    private static void writeDictionary(DataOutputStream out, List<Schedule> rows, Function<Schedule, String> column) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] codes = new int[rows.size()];
+        for (int i = 0; i < codes.length; i++) {
+            String v = column.apply(rows.get(i));
+            codes[i] = v == null ? 0 : dictionary.computeIfAbsent(v, k -> dictionary.size() + 1);
+        }
+        writeVarLong(out, dictionary.size());
+        for (String v : dictionary.keySet()) {
+            out.writeUTF(v);
+        }
+        for (int code : codes) {
+            writeVarLong(out, code);
+        }
+    }
+
+    private static String[] readDictionary(DataInputStream in, int n) throws IOException {
+        String[] dictionary = new String[(int) readVarLong(in) + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            dictionary[i] = in.readUTF();
+        }
+        String[] values = new String[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = dictionary[(int) readVarLong(in)];
+        }
+        return values;
+    }
+
+    private static void writeInstants(DataOutputStream out, List<Schedule> rows, Function<Schedule, Instant> column) throws IOException {
+        long previous = 0;
+        for (Schedule s : rows) {
+            Instant v = column.apply(s);
+            long millis = v == null ? NULL_INSTANT : v.toEpochMilli();
+            writeVarLong(out, zigZag(millis - previous));
+            previous = millis;
+        }
+    }
+
+    private static Instant[] readInstants(DataInputStream in, int n) throws IOException {
+        Instant[] values = new Instant[n];
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            long millis = previous + unZigZag(readVarLong(in));
+            values[i] = millis == NULL_INSTANT ? null : Instant.ofEpochMilli(millis);
+            previous = millis;
+        }
+        return values;
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // unsigned LEB128
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
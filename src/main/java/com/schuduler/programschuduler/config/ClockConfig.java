@@ -0,0 +1,16 @@
+package com.schuduler.programschuduler.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+// One clock for the scheduler so tests and the simulation can run it on virtual time.
+@Configuration
+public class ClockConfig {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+}
@@ -0,0 +1,103 @@
+package com.schuduler.programschuduler.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Fire points ahead of each schedule's {@code startAt} ({@code scheduler.preplay}).
+ * Without {@code stages} there is one stage, {@value #DEFAULT_STAGE}, at
+ * {@code lead-seconds}. Each stage is claimed separately, so a schedule is published once
+ * per stage. A stage's {@code routing-suffix} is one topic word inserted right after
+ * {@code schedule.preplay}, ahead of what {@code scheduler.messaging.routing} appends, e.g.
+ * {@code schedule.preplay.warmup.channel.<channel>}, so the {@code schedule.preplay.#}
+ * bindings and queue shards still see the event.
+ */
+@Data
+@ConfigurationProperties(prefix = "scheduler.preplay")
+public class PrePlaybackProperties {
+
+    /** Stage whose claim is the schedule's {@code preplayPublished} flag. */
+    public static final String DEFAULT_STAGE = "preplay";
+
+    private long leadSeconds = 300;
+
+    private List<Stage> stages = new ArrayList<>();
+
+    private Broadcast broadcast = new Broadcast();
+
+    private Lease lease = new Lease();
+
+    public record Stage(String name, long leadSeconds, String routingSuffix) {
+    }
+
+    // a single topic word that cannot be mistaken for a routing strategy's or the dead-letter suffix
+    private static final Pattern ROUTING_SUFFIX = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Set<String> RESERVED_SUFFIXES = Set.of("channel", "user", "dead");
+
+    /**
+     * Due schedules of the same programme ({@code channel}, {@code startAt},
+     * {@code programUrl}) are claimed with one bulk write and published as one event
+     * listing all their schedule and user ids. Smaller groups are published per schedule.
+     */
+    @Data
+    public static class Broadcast {
+        private boolean enabled = false;
+        private int minGroupSize = 2;
+        private int maxGroupSize = 1000;
+    }
+
+    /**
+     * Claims move PENDING → CLAIMED({@code owner}, lease until now + {@code seconds}) →
+     * PUBLISHED once the broker confirmed the event or it was spooled. A worker dying in
+     * between, or an event the broker did not take, leaves an expired lease, which the
+     * reaper turns back to PENDING and fires again. Turns on publisher confirms.
+     */
+    @Data
+    public static class Lease {
+        private boolean enabled = false;
+        private long seconds = 30;
+        private long reapIntervalMs = 10000;
+        private String owner = ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    /** The stages to fire, longest lead first. */
+    public List<Stage> effectiveStages() {
+        if (stages == null || stages.isEmpty()) {
+            return List.of(new Stage(DEFAULT_STAGE, leadSeconds, null));
+        }
+        Set<String> names = new HashSet<>();
+        for (Stage s : stages) {
+            if (s.name() == null || s.name().isBlank() || !names.add(s.name())) {
+                throw new IllegalStateException("scheduler.preplay.stages needs unique, non-blank names: " + stages);
+            }
+            if (s.leadSeconds() <= 0) {
+                throw new IllegalStateException("scheduler.preplay.stages[" + s.name() + "] needs a positive lead-seconds");
+            }
+            if (s.routingSuffix() != null && (!ROUTING_SUFFIX.matcher(s.routingSuffix()).matches()
+                    || RESERVED_SUFFIXES.contains(s.routingSuffix()))) {
+                throw new IllegalStateException("scheduler.preplay.stages[" + s.name() + "] routing-suffix '"
+                        + s.routingSuffix() + "' must be one word of [A-Za-z0-9_-], not one of " + RESERVED_SUFFIXES);
+            }
+        }
+        List<Stage> sorted = new ArrayList<>(stages);
+        sorted.sort(Comparator.comparingLong(Stage::leadSeconds).reversed());
+        return List.copyOf(sorted);
+    }
+
+    /** Routing suffix configured for {@code stage}, or {@code null} for none. */
+    public String routingSuffixFor(String stage) {
+        if (stage == null || stages == null) {
+            return null;
+        }
+        for (Stage s : stages) {
+            if (s.name().equals(stage)) {
+                return s.routingSuffix();
+            }
+        }
+        return null;
+    }
+}
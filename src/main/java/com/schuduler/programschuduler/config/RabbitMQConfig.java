@@ -1,21 +1,32 @@
 package com.schuduler.programschuduler.config;
 
+import com.schuduler.programschuduler.messaging.CborMessageConverter;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.amqp.support.converter.MessageConverter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
     public static final String EXCHANGE = "scheduler.events";
     public static final String QUEUE = "playback.preplay.queue";
     public static final String ROUTING_KEY = "schedule.preplay";
+    public static final String ROUTING_PATTERN = ROUTING_KEY + ".#";
+    public static final String SHARDED_EXCHANGE = "scheduler.events.sharded";
+    public static final String DEAD_LETTER_EXCHANGE = "scheduler.events.dlx";
+    public static final String DEAD_LETTER_QUEUE = "playback.preplay.dlq";
+    public static final String DEAD_LETTER_ROUTING_KEY = ROUTING_KEY + ".dead";
 
     // Connection Factory
     @Bean
@@ -25,6 +36,9 @@ public class RabbitMQConfig {
         factory.setPort(5672);
         factory.setUsername("guest");
         factory.setPassword("guest");
+        // sends with a CorrelationData learn whether the broker took the event: the spool
+        // replay waits for it, live sends spool on a nack or timeout
+        factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
         return factory;
     }
 
@@ -33,16 +47,28 @@ public class RabbitMQConfig {
         return new RabbitAdmin(connectionFactory);
     }
 
+    // Outgoing encoding is chosen by scheduler.messaging.encoding (json|cbor); incoming
+    // messages are decoded by their content_type so both formats can be in flight.
     @Bean
-    public MessageConverter jacksonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter jacksonMessageConverter(@Value("${scheduler.messaging.encoding:json}") String encoding) {
+        Jackson2JsonMessageConverter json = new Jackson2JsonMessageConverter();
+        CborMessageConverter cbor = new CborMessageConverter();
+
+        MessageConverter outgoing = switch (encoding.toLowerCase()) {
+            case "json" -> json;
+            case "cbor" -> cbor;
+            default -> throw new IllegalArgumentException("scheduler.messaging.encoding must be json or cbor, was " + encoding);
+        };
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(outgoing);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(CborMessageConverter.CONTENT_TYPE, cbor);
+        return converter;
     }
 
+    // No broker I/O here: the connection and declarations happen in BrokerBootstrap.
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory,
-                                         RabbitAdmin admin,
                                          MessageConverter converter) {
-        admin.initialize();
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(converter);
         return template;
@@ -53,15 +79,40 @@ public class RabbitMQConfig {
         return new TopicExchange(EXCHANGE, true, false);
     }
 
+    // Events whose publish retries ran out (see PublishRetrier), with attempt headers.
     @Bean
-    public Queue playbackQueue() {
-        return new Queue(QUEUE, true);
+    public Declarables deadLetterTopology() {
+        DirectExchange dlx = new DirectExchange(DEAD_LETTER_EXCHANGE, true, false);
+        Queue dlq = new Queue(DEAD_LETTER_QUEUE, true);
+        return new Declarables(dlx, dlq, BindingBuilder.bind(dlq).to(dlx).with(DEAD_LETTER_ROUTING_KEY));
     }
 
+    // Plain topology: scheduler.events -> playback.preplay.queue.
+    // Sharded topology: scheduler.events -> x-consistent-hash exchange -> playback.preplay.queue.<n>.
+    // The hash is taken over the routing key, so pair this with channel or user-hash routing;
+    // requires the rabbitmq_consistent_hash_exchange plugin.
+    // Chosen at runtime rather than with @ConditionalOnProperty so an AOT-processed build
+    // (fast-start) still honours scheduler.messaging.sharding.enabled.
     @Bean
-    public Binding binding(Queue playbackQueue, TopicExchange schedulerExchange) {
-        return BindingBuilder.bind(playbackQueue)
-                .to(schedulerExchange)
-                .with(ROUTING_KEY);
+    public Declarables playbackTopology(TopicExchange schedulerExchange,
+                                        @Value("${scheduler.messaging.sharding.enabled:false}") boolean sharded,
+                                        @Value("${scheduler.messaging.sharding.shards:4}") int shards) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (!sharded) {
+            Queue queue = new Queue(QUEUE, true);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(schedulerExchange).with(ROUTING_PATTERN));
+            return new Declarables(declarables);
+        }
+        CustomExchange hashExchange = new CustomExchange(SHARDED_EXCHANGE, "x-consistent-hash", true, false);
+        declarables.add(hashExchange);
+        declarables.add(BindingBuilder.bind(hashExchange).to(schedulerExchange).with(ROUTING_PATTERN));
+        for (int i = 0; i < shards; i++) {
+            Queue shard = new Queue(QUEUE + "." + i, true);
+            declarables.add(shard);
+            // for consistent-hash bindings the "routing key" is the shard weight
+            declarables.add(new Binding(shard.getName(), Binding.DestinationType.QUEUE, SHARDED_EXCHANGE, "1", null));
+        }
+        return new Declarables(declarables);
     }
 }
@@ -1,8 +1,10 @@
 package com.schuduler.programschuduler.config;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
 @EnableScheduling
+@EnableConfigurationProperties(PrePlaybackProperties.class)
 public class SchedulerConfig { }
@@ -0,0 +1,122 @@
+package com.schuduler.programschuduler.config;
+
+import com.schuduler.programschuduler.dto.SchedulerNowResponse;
+import com.schuduler.programschuduler.messaging.EventSpool;
+import com.schuduler.programschuduler.messaging.PrePlaybackEventPublisher;
+import com.schuduler.programschuduler.messaging.PublishRetrier;
+import com.schuduler.programschuduler.service.ChannelTimelineIndex;
+import com.schuduler.programschuduler.service.ScheduleNearCache;
+import com.schuduler.programschuduler.service.ScheduleService;
+import com.schuduler.programschuduler.service.SingleFlight;
+import com.schuduler.programschuduler.service.UpcomingScheduleIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SchedulerMetricsConfig {
+
+    @Bean
+    public MeterBinder nowPlayingCoalescingMetrics(ScheduleService service) {
+        SingleFlight<String, SchedulerNowResponse> flights = service.getNowPlayingFlights();
+        return registry -> {
+            FunctionCounter.builder("scheduler.now.requests", flights, SingleFlight::calls)
+                    .description("GET /now lookups")
+                    .register(registry);
+            FunctionCounter.builder("scheduler.now.coalesced", flights, SingleFlight::coalesced)
+                    .description("GET /now lookups served by another request's in-flight query")
+                    .register(registry);
+            Gauge.builder("scheduler.now.coalescing.ratio", flights, SingleFlight::coalescingRatio)
+                    .register(registry);
+            Gauge.builder("scheduler.now.inflight", flights, SingleFlight::inFlight)
+                    .register(registry);
+        };
+    }
+
+    // cache.gets{result=hit|miss}, cache.evictions, cache.size, ... tagged cache=schedules
+    @Bean
+    public MeterBinder scheduleNearCacheMetrics(ScheduleNearCache nearCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, nearCache.cache().synchronous(), "schedules");
+            Gauge.builder("scheduler.cache.hit.ratio", nearCache, c -> c.stats().hitRate())
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder brokerStartupBufferMetrics(PrePlaybackEventPublisher publisher) {
+        return registry -> {
+            Gauge.builder("scheduler.broker.buffered", publisher, PrePlaybackEventPublisher::bufferedCount)
+                    .description("PrePlaybackEvents waiting for the broker bootstrap")
+                    .register(registry);
+            FunctionCounter.builder("scheduler.broker.dropped", publisher, PrePlaybackEventPublisher::droppedCount)
+                    .description("PrePlaybackEvents dropped because the startup buffer was full")
+                    .register(registry);
+            Gauge.builder("scheduler.broker.ready", publisher, p -> p.isBrokerReady() ? 1 : 0)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder eventSpoolMetrics(EventSpool spool) {
+        return registry -> {
+            Gauge.builder("scheduler.spool.pending", spool, EventSpool::pending)
+                    .description("Spooled PrePlaybackEvents not yet confirmed by the broker")
+                    .register(registry);
+            Gauge.builder("scheduler.spool.segments", spool, EventSpool::segmentCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder publishRetryMetrics(PublishRetrier retrier) {
+        return registry -> {
+            Gauge.builder("scheduler.publish.retry.depth", retrier, PublishRetrier::depth)
+                    .description("PrePlaybackEvents waiting for their next publish attempt")
+                    .register(registry);
+            FunctionCounter.builder("scheduler.publish.retry.attempts", retrier, PublishRetrier::retriedCount)
+                    .register(registry);
+            FunctionCounter.builder("scheduler.publish.dead.lettered", retrier, PublishRetrier::deadLetteredCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder channelTimelineMetrics(ChannelTimelineIndex timelines) {
+        return registry -> {
+            Gauge.builder("scheduler.timeline.channels", timelines, ChannelTimelineIndex::channelCount)
+                    .register(registry);
+            Gauge.builder("scheduler.timeline.entries", timelines, ChannelTimelineIndex::entryCount)
+                    .register(registry);
+            Gauge.builder("scheduler.timeline.bytes", timelines, ChannelTimelineIndex::estimatedBytes)
+                    .description("Estimated heap retained by the per-channel timelines")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder nowIndexMetrics(UpcomingScheduleIndex nowIndex) {
+        return registry -> {
+            Gauge.builder("scheduler.now-index.rows", nowIndex, UpcomingScheduleIndex::rowCount)
+                    .register(registry);
+            Gauge.builder("scheduler.now-index.bytes", nowIndex, UpcomingScheduleIndex::estimatedBytes)
+                    .description("Estimated heap retained by the columnar now/next index")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("scheduler.now-index.mongo.reads", nowIndex, UpcomingScheduleIndex::mongoReads)
+                    .description("Documents read from MongoDB to rebuild the now/next index")
+                    .register(registry);
+            FunctionCounter.builder("scheduler.now-index.changes", nowIndex, UpcomingScheduleIndex::changesApplied)
+                    .description("Change stream events applied to the now/next index")
+                    .register(registry);
+            Gauge.builder("scheduler.now-index.ready.after", nowIndex, UpcomingScheduleIndex::readyAfterMs)
+                    .description("Time from startup until the now/next index was first ready, restored or rebuilt")
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        };
+    }
+}
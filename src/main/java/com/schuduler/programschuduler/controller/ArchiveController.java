@@ -0,0 +1,25 @@
+package com.schuduler.programschuduler.controller;
+
+import com.schuduler.programschuduler.dto.ScheduleResponse;
+import com.schuduler.programschuduler.service.ScheduleArchiveService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/archive")
+@RequiredArgsConstructor
+public class ArchiveController {
+
+    private final ScheduleArchiveService archive;
+
+    @GetMapping(value = "/schedules", produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public Flux<ScheduleResponse> schedules(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return archive.scan(from, to);
+    }
+}
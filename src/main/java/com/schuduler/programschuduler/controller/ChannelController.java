@@ -0,0 +1,22 @@
+package com.schuduler.programschuduler.controller;
+
+import com.schuduler.programschuduler.dto.ChannelNowResponse;
+import com.schuduler.programschuduler.service.ChannelTimelineIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/channels")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ChannelController {
+
+    private final ChannelTimelineIndex timelines;
+
+    @GetMapping(value = "/{channel}/now", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ChannelNowResponse> now(@PathVariable String channel) {
+        return timelines.now(channel);
+    }
+}
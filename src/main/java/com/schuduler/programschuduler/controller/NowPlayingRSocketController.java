@@ -0,0 +1,82 @@
+package com.schuduler.programschuduler.controller;
+
+import com.schuduler.programschuduler.dto.SchedulerNowResponse;
+import com.schuduler.programschuduler.service.ScheduleChangeStreamListener;
+import com.schuduler.programschuduler.service.ScheduleService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Now/next for the playback service over RSocket ({@code spring.rsocket.server}), so a
+ * fleet can multiplex lookups over a few long-lived connections instead of one HTTP
+ * request per user per poll. The payload is the userId.
+ * <ul>
+ *   <li>{@code schedules.now} — request-response, same answer as {@code GET /api/schedules/now}</li>
+ *   <li>{@code schedules.now.stream} — request-stream, emits the current answer and then
+ *       again whenever it changes</li>
+ * </ul>
+ * With the change stream tailed (near-cache, timelines or now-index enabled) a stream
+ * re-evaluates when one of its user's schedules changes and on every minute boundary,
+ * where programmes start and end and {@code skipStartMin} moves on. Otherwise it polls
+ * every {@code scheduler.rsocket.now-stream-interval-ms}.
+ */
+@Controller
+@Slf4j
+public class NowPlayingRSocketController {
+
+    private static final Duration MINUTE = Duration.ofMinutes(1);
+
+    private final ScheduleService service;
+    private final ScheduleChangeStreamListener changes;
+    private final Clock clock;
+    private final Duration streamInterval;
+
+    public NowPlayingRSocketController(ScheduleService service,
+                                       ScheduleChangeStreamListener changes,
+                                       Clock clock,
+                                       @Value("${scheduler.rsocket.now-stream-interval-ms:5000}") long streamIntervalMs) {
+        this.service = service;
+        this.changes = changes;
+        this.clock = clock;
+        this.streamInterval = Duration.ofMillis(streamIntervalMs);
+    }
+
+    @MessageMapping("schedules.now")
+    public Mono<SchedulerNowResponse> now(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return Mono.error(new IllegalArgumentException("userId is required"));
+        }
+        return service.getNowPlaying(userId);
+    }
+
+    // lookups for one user coalesce in ScheduleService, so many streams of a user cost one query per tick
+    @MessageMapping("schedules.now.stream")
+    public Flux<SchedulerNowResponse> nowStream(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return Flux.error(new IllegalArgumentException("userId is required"));
+        }
+        Flux<?> triggers = changes.isEnabled()
+                ? Flux.merge(minuteTicks(), changes.changesOf(userId))
+                : Flux.interval(Duration.ZERO, streamInterval);
+        return triggers
+                .onBackpressureDrop()
+                .concatMap(tick -> service.getNowPlaying(userId), 1)
+                .distinctUntilChanged()
+                .doOnCancel(() -> log.debug("[RSOCKET] now stream for userId={} cancelled", userId));
+    }
+
+    // now, then on each minute boundary of the clock: schedules start on whole minutes
+    private Flux<Long> minuteTicks() {
+        return Flux.defer(() -> {
+            long untilNextMinute = MINUTE.toMillis() - Math.floorMod(clock.millis(), MINUTE.toMillis());
+            return Flux.concat(Flux.just(0L), Flux.interval(Duration.ofMillis(untilNextMinute), MINUTE));
+        });
+    }
+}
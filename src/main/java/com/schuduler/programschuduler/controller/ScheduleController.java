@@ -1,8 +1,13 @@
 package com.schuduler.programschuduler.controller;
 
+import com.schuduler.programschuduler.dto.GridOccurrence;
 import com.schuduler.programschuduler.dto.ScheduleRequest;
 import com.schuduler.programschuduler.dto.ScheduleResponse;
+import com.schuduler.programschuduler.dto.ScheduleUpdateRequest;
 import com.schuduler.programschuduler.dto.SchedulerNowResponse;
+import com.schuduler.programschuduler.dto.UserNowResponse;
+import com.schuduler.programschuduler.service.ScheduleFields;
+import com.schuduler.programschuduler.service.ScheduleGridService;
 import com.schuduler.programschuduler.service.ScheduleService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +20,9 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/schedules")
 @Validated
@@ -24,6 +32,7 @@ import reactor.core.publisher.Mono;
 public class ScheduleController {
 
     private final ScheduleService service;
+    private final ScheduleGridService grid;
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
@@ -37,30 +46,62 @@ public class ScheduleController {
     public Mono<SchedulerNowResponse> getNow(@RequestParam("userId") String userId) {
         return service.getNowPlaying(userId);
     }
+
+    // fleet refresh: many users in one request, one line per user as it resolves
+    @PostMapping(value = "/now", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public Flux<UserNowResponse> getNowBatch(@RequestBody List<String> userIds) {
+        return service.getNowPlaying(userIds);
+    }
     // -----------------------------------------
 
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     public Flux<ScheduleResponse> list(@RequestParam(value = "userId", required = false) String userId,
-                                       @RequestParam(value = "channel", required = false) String channel) {
+                                       @RequestParam(value = "channel", required = false) String channel,
+                                       @RequestParam(value = "fields", required = false) String fields) {
+        ScheduleFields projection = ScheduleFields.parse(fields);
         if (userId != null && !userId.isBlank()) {
-            return service.listByUserId(userId);
+            return service.listByUserId(userId, projection);
         }
         if (channel != null && !channel.isBlank()) {
-            return service.listByChannel(channel);
+            return service.listByChannel(channel, projection);
         }
-        return service.listAll();
+        return service.listAll(projection);
     }
 
     @GetMapping(value = "/upcoming", produces = MediaType.APPLICATION_JSON_VALUE)
     public Flux<ScheduleResponse> upcoming(@RequestParam(value = "userId", required = false) String userId,
                                         @RequestParam(value = "channel", required = false) String channel,
-                                        @RequestParam(value = "limit", required = false) Integer limit) {
-        return service.upcoming(userId, channel, limit);
+                                        @RequestParam(value = "limit", required = false) Integer limit,
+                                        @RequestParam(value = "fields", required = false) String fields) {
+        return service.upcoming(userId, channel, limit, ScheduleFields.parse(fields));
+    }
+
+    // EPG grid: occurrences (recurrences expanded) overlapping [from, to), streamed in start order
+    @GetMapping(value = "/grid", produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public Flux<GridOccurrence> grid(@RequestParam(value = "channel", required = false) List<String> channels,
+                                     @RequestParam(value = "userId", required = false) String userId,
+                                     @RequestParam("from") Instant from,
+                                     @RequestParam("to") Instant to) {
+        return grid.grid(channels, userId, from, to);
     }
 
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Mono<ScheduleResponse> get(@PathVariable String id) {
-        return service.getById(id);
+    public Mono<ScheduleResponse> get(@PathVariable String id,
+                                      @RequestParam(value = "fields", required = false) String fields) {
+        return service.getById(id, ScheduleFields.parse(fields));
+    }
+
+    @PatchMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ScheduleResponse> patch(@PathVariable String id, @Valid @RequestBody ScheduleUpdateRequest req) {
+        return service.updateSchedule(id, req);
+    }
+
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ScheduleResponse> update(@PathVariable String id,
+                                         @Valid @RequestBody ScheduleRequest req,
+                                         @RequestParam(value = "version") Long version) {
+        return service.updateSchedule(id, ScheduleUpdateRequest.from(req, version));
     }
 
     @DeleteMapping("/{id}")
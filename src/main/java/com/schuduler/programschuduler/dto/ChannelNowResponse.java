@@ -0,0 +1,18 @@
+package com.schuduler.programschuduler.dto;
+
+import java.time.Instant;
+
+public record ChannelNowResponse(
+        String channel,
+        String status,                 // PLAY, NONE
+        Entry current,
+        Entry next
+) {
+    public record Entry(
+            String scheduleId,
+            String title,
+            String programUrl,
+            Instant startAt,
+            Instant endAt
+    ) {}
+}
@@ -0,0 +1,25 @@
+package com.schuduler.programschuduler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/** One airing of a schedule in the EPG grid; recurring schedules yield one per occurrence. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GridOccurrence {
+    private String scheduleId;
+    private String userId;
+    private String title;
+    private String channel;
+    private Instant startAt;
+    private Instant endAt;
+    private Integer durationMin;
+    private String recurrence;
+    private String programUrl;
+}
@@ -2,6 +2,7 @@ package com.schuduler.programschuduler.dto;
 
 import lombok.*;
 import java.time.Instant;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -14,4 +15,18 @@ public class PrePlaybackEvent {
     private String programUrl;
     private Instant startAt;
     private Integer durationMin;
+    private String stage;
+
+    // broadcast events (scheduler.preplay.broadcast): one event per programme, scheduleId
+    // and userId unset, the ids of every schedule it stands for in matching order
+    private List<String> scheduleIds;
+    private List<String> userIds;
+
+    /** For logs: {@code scheduleId=…}, or a broadcast's channel and {@code scheduleIds=[…]}. */
+    public String describe() {
+        if (scheduleId == null && scheduleIds != null) {
+            return "channel=" + channel + " scheduleIds=" + scheduleIds;
+        }
+        return "scheduleId=" + scheduleId;
+    }
 }
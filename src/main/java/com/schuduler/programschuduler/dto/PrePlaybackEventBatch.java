@@ -0,0 +1,24 @@
+package com.schuduler.programschuduler.dto;
+
+import lombok.*;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Envelope sent instead of individual {@link PrePlaybackEvent}s when
+ * {@code scheduler.messaging.batch.enabled=true}. One AMQP message carries every event
+ * published to the same routing key within one batch window, in publish order.
+ * <p>
+ * Consumers tell the two shapes apart by the {@code __TypeId__} header
+ * ({@code ...dto.PrePlaybackEventBatch} vs {@code ...dto.PrePlaybackEvent}) and should
+ * handle each element of {@link #events} exactly as they would a single event.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PrePlaybackEventBatch {
+    private String routingKey;
+    private Instant createdAt;
+    private List<PrePlaybackEvent> events;
+}
@@ -0,0 +1,18 @@
+package com.schuduler.programschuduler.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A {@link ScheduleResponse} limited to the {@code fields=} that were asked for: fields
+ * that were not read are left out instead of being sent as {@code null}. Without
+ * {@code fields=} responses keep their full shape, nulls included.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedScheduleResponse extends ScheduleResponse {
+
+    public ProjectedScheduleResponse(ScheduleResponse r) {
+        super(r.getId(), r.getUserId(), r.getTitle(), r.getChannel(), r.getStartAt(), r.getDurationMin(),
+                r.getRecurrence(), r.getProgramUrl(), r.getNotes(), r.getCreatedAt(), r.getUpdatedAt(),
+                r.getVersion());
+    }
+}
@@ -19,4 +19,5 @@ public class ScheduleResponse {
     private String notes;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version;
 }
\ No newline at end of file
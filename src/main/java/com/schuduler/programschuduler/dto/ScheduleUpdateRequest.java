@@ -0,0 +1,62 @@
+package com.schuduler.programschuduler.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+/**
+ * Partial update of a schedule. Only non-null fields are written; {@code date} and
+ * {@code time} must be sent together. {@code version} is required: the update only
+ * applies if the stored document still carries that version (0 for documents written
+ * before versioning).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScheduleUpdateRequest {
+
+    @Size(max = 100)
+    private String userId;
+
+    @Size(max = 200)
+    private String title;
+
+    @Size(max = 100)
+    private String channel;
+
+    @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "date must be yyyy-MM-dd")
+    private String date;
+
+    @Pattern(regexp = "^\\d{2}:\\d{2}$", message = "time must be HH:mm")
+    private String time;
+
+    @Min(value = 1, message = "Duration must be at least 1 minute")
+    private Integer durationMin;
+
+    @Pattern(regexp = "NONE|DAILY|WEEKLY|MONTHLY", message = "recurrence must be NONE/DAILY/WEEKLY/MONTHLY")
+    private String recurrence;
+
+    @Size(max = 1000)
+    private String programUrl;
+
+    @Size(max = 2000)
+    private String notes;
+
+    @NotNull(message = "version is required; read it from GET /api/schedules/{id}")
+    private Long version;
+
+    public static ScheduleUpdateRequest from(ScheduleRequest req, Long version) {
+        return ScheduleUpdateRequest.builder()
+                .userId(req.getUserId())
+                .title(req.getTitle())
+                .channel(req.getChannel())
+                .date(req.getDate())
+                .time(req.getTime())
+                .durationMin(req.getDurationMin())
+                .recurrence(req.getRecurrence())
+                .programUrl(req.getProgramUrl())
+                .notes(req.getNotes())
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,7 @@
+package com.schuduler.programschuduler.dto;
+
+// one line of a batch now/next lookup
+public record UserNowResponse(
+        String userId,
+        SchedulerNowResponse now
+) {}
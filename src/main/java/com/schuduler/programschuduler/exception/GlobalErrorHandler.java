@@ -3,6 +3,7 @@ package com.schuduler.programschuduler.exception;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebInputException;
@@ -32,6 +33,14 @@ public class GlobalErrorHandler {
     //     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(m);
     // }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String,String>> handleConflict(OptimisticLockingFailureException ex) {
+        log.warn("Conflict: {}", ex.getMessage());
+        var m = new HashMap<String,String>();
+        m.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(m);
+    }
+
     @ExceptionHandler(ServerWebInputException.class)
     public ResponseEntity<Map<String,String>> handleBind(ServerWebInputException ex) {
         log.warn("Bind error: {}", ex.getReason(), ex);
@@ -0,0 +1,102 @@
+package com.schuduler.programschuduler.messaging;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connects to RabbitMQ and declares the topology in the background once the application
+ * is ready, retrying with exponential backoff, so the REST API never waits on the broker.
+ * Until it succeeds {@link PrePlaybackEventPublisher} buffers events.
+ * <p>
+ * Reported as the {@code brokerBootstrap} health contributor (group {@code broker});
+ * the {@code readiness} group does not include it.
+ */
+@Component
+@Slf4j
+public class BrokerBootstrap implements HealthIndicator {
+
+    private final RabbitAdmin admin;
+    private final PrePlaybackEventPublisher publisher;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private volatile Instant readyAt;
+    private volatile String lastError;
+    private Disposable bootstrap;
+
+    public BrokerBootstrap(RabbitAdmin admin,
+                           PrePlaybackEventPublisher publisher,
+                           @Value("${scheduler.messaging.bootstrap.initial-backoff-ms:500}") long initialBackoffMs,
+                           @Value("${scheduler.messaging.bootstrap.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.admin = admin;
+        this.publisher = publisher;
+        this.initialBackoff = Duration.ofMillis(initialBackoffMs);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        bootstrap = Mono.fromRunnable(this::declare)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(t -> {
+                    lastError = t.getMessage();
+                    log.warn("[BROKER] attempt {} failed: {}", attempts.get(), t.getMessage());
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, initialBackoff).maxBackoff(maxBackoff))
+                .subscribe(null,
+                        t -> log.error("[BROKER] bootstrap gave up", t),
+                        this::onReady);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (bootstrap != null) {
+            bootstrap.dispose();
+        }
+    }
+
+    public boolean isReady() {
+        return readyAt != null;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = isReady()
+                ? Health.up().withDetail("readyAt", readyAt.toString())
+                : Health.outOfService().withDetail("lastError", String.valueOf(lastError));
+        return health
+                .withDetail("attempts", attempts.get())
+                .withDetail("buffered", publisher.bufferedCount())
+                .withDetail("dropped", publisher.droppedCount())
+                .build();
+    }
+
+    private void declare() {
+        attempts.incrementAndGet();
+        // opens the connection; RabbitAdmin re-declares on every later reconnect by itself
+        admin.initialize();
+    }
+
+    private void onReady() {
+        readyAt = Instant.now();
+        lastError = null;
+        log.info("[BROKER] topology declared after {} attempt(s)", attempts.get());
+        publisher.brokerReady();
+    }
+}
@@ -0,0 +1,25 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Jackson CBOR counterpart of {@code Jackson2JsonMessageConverter}. Messages carry
+ * {@code content_type=application/cbor} and the usual {@code __TypeId__} header, so
+ * consumers can pick the decoder per message while JSON and CBOR coexist.
+ */
+public class CborMessageConverter extends AbstractJackson2MessageConverter {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    public CborMessageConverter() {
+        super(CBORMapper.builder()
+                        .findAndAddModules()
+                        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                        .build(),
+                MimeTypeUtils.parseMimeType(CONTENT_TYPE),
+                "*");
+    }
+}
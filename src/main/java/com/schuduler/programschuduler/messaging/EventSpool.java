@@ -0,0 +1,449 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable local spool for {@link PrePlaybackEvent}s the broker did not take
+ * ({@code scheduler.spool.enabled}). Once a schedule is claimed in Mongo its event only
+ * exists here, so nothing is written back to the database.
+ * <p>
+ * The spool is a sequence of fixed-size, memory-mapped segment files
+ * ({@code spool-<seq>.log}), appended to in order:
+ * <pre>
+ *   segment: [int magic][int ackedOffset] record*
+ *   record:  [int length][int crc32(payload)][payload]
+ * </pre>
+ * A record's length is written last, so a zero length marks the end and a torn write
+ * fails its CRC and is ignored on recovery. {@link #replay} hands records to the sender
+ * oldest first and advances {@code ackedOffset} in the segment header after each one is
+ * confirmed; segments that are fully acknowledged are deleted. Delivery is at least
+ * once: a crash between send and ack replays that record again.
+ */
+@Component
+@Slf4j
+public class EventSpool {
+
+    private static final int MAGIC = 0x53504f4c; // "SPOL"
+    private static final int ACK_OFFSET = 4;
+    private static final int SEGMENT_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int NULL_LENGTH = -1;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean fsync;
+
+    // oldest first; the last one is appended to
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private long nextSeq;
+    private volatile long pending;
+
+    public EventSpool(@Value("${scheduler.spool.enabled:false}") boolean enabled,
+                      @Value("${scheduler.spool.dir:./spool}") Path dir,
+                      @Value("${scheduler.spool.segment-bytes:16777216}") int segmentBytes,
+                      @Value("${scheduler.spool.fsync:false}") boolean fsync) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isEmpty() {
+        return pending == 0;
+    }
+
+    /** Records appended and not yet acknowledged. */
+    public long pending() {
+        return pending;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /** Maps the existing segments and recovers their write and ack positions. */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().matches("spool-\\d+\\.log")).sorted().toList();
+        }
+        for (Path file : files) {
+            long seq = Long.parseLong(file.getFileName().toString().replaceAll("\\D", ""));
+            nextSeq = Math.max(nextSeq, seq + 1);
+            long size = Files.size(file);
+            if (size < SEGMENT_HEADER) {
+                log.warn("[SPOOL] {} is truncated, skipping", file);
+                continue;
+            }
+            Segment segment = Segment.map(file, size);
+            if (segment.buf.getInt(0) != MAGIC) {
+                log.warn("[SPOOL] {} is not a spool segment, skipping", file);
+                segment.close();
+                continue;
+            }
+            recover(segment);
+            segments.addLast(segment);
+        }
+        if (pending > 0) {
+            log.info("[SPOOL] recovered {} unacknowledged event(s) in {} segment(s)", pending, segments.size());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buf.force();
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    public synchronized void append(PrePlaybackEvent event) {
+        int size = encodedSize(event);
+        if (SEGMENT_HEADER + RECORD_HEADER + size > segmentBytes) {
+            throw new IllegalArgumentException("event of " + size + " bytes does not fit a spool segment");
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writeOffset + RECORD_HEADER + size > tail.buf.capacity()) {
+            if (tail != null) {
+                tail.buf.force();
+            }
+            tail = roll();
+        }
+        MappedByteBuffer buf = tail.buf;
+        int at = tail.writeOffset;
+        buf.position(at + RECORD_HEADER);
+        encode(buf, event);
+        crc.reset();
+        crc.update(buf.slice(at + RECORD_HEADER, size));
+        buf.putInt(at + 4, (int) crc.getValue());
+        buf.putInt(at, size);
+        tail.writeOffset = at + RECORD_HEADER + size;
+        pending++;
+        if (fsync) {
+            buf.force(at, RECORD_HEADER + size);
+        }
+    }
+
+    /**
+     * Sends spooled events oldest first until the spool is empty or {@code sender}
+     * returns false or throws. Returns how many were acknowledged. Only one replay runs
+     * at a time; appends are not blocked while an event is being sent.
+     */
+    public int replay(Predicate<PrePlaybackEvent> sender) {
+        if (!enabled || !replaying.compareAndSet(false, true)) {
+            return 0;
+        }
+        int acked = 0;
+        try {
+            while (true) {
+                Segment segment;
+                PrePlaybackEvent event;
+                int next;
+                synchronized (this) {
+                    segment = segments.peekFirst();
+                    if (segment == null) {
+                        return acked;
+                    }
+                    if (segment.readOffset >= segment.writeOffset) {
+                        if (!compact(segment)) {
+                            return acked;
+                        }
+                        continue;
+                    }
+                    int length = segment.buf.getInt(segment.readOffset);
+                    event = decode(segment.buf.slice(segment.readOffset + RECORD_HEADER, length));
+                    next = segment.readOffset + RECORD_HEADER + length;
+                }
+                boolean sent;
+                try {
+                    sent = sender.test(event);
+                } catch (Exception ex) {
+                    log.warn("[SPOOL] replay of {} failed: {}", event.describe(), ex.getMessage());
+                    sent = false;
+                }
+                if (!sent) {
+                    return acked;
+                }
+                synchronized (this) {
+                    segment.readOffset = next;
+                    segment.buf.putInt(ACK_OFFSET, next);
+                    if (fsync) {
+                        segment.buf.force(ACK_OFFSET, 4);
+                    }
+                    pending--;
+                    acked++;
+                }
+            }
+        } finally {
+            replaying.set(false);
+        }
+    }
+
+    // A fully acknowledged segment is deleted; if it is the tail a fresh one takes its
+    // place on the next append. Returns false when there was nothing to drop.
+    private boolean compact(Segment segment) {
+        if (segment.writeOffset == SEGMENT_HEADER && segments.size() == 1) {
+            return false;
+        }
+        segments.removeFirst();
+        segment.close();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            log.warn("[SPOOL] could not delete acknowledged segment {}", segment.path, ex);
+        }
+        return true;
+    }
+
+    private Segment roll() {
+        Path file = dir.resolve(String.format("spool-%020d.log", nextSeq++));
+        try {
+            Segment segment = Segment.map(file, segmentBytes);
+            segment.buf.putInt(0, MAGIC);
+            segment.buf.putInt(ACK_OFFSET, SEGMENT_HEADER);
+            segment.readOffset = SEGMENT_HEADER;
+            segment.writeOffset = SEGMENT_HEADER;
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("cannot create spool segment " + file, ex);
+        }
+    }
+
+    private void recover(Segment segment) {
+        MappedByteBuffer buf = segment.buf;
+        int ack = buf.getInt(ACK_OFFSET);
+        int at = SEGMENT_HEADER;
+        while (at + RECORD_HEADER <= buf.capacity()) {
+            int length = buf.getInt(at);
+            if (length <= 0 || at + RECORD_HEADER + length > buf.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buf.slice(at + RECORD_HEADER, length));
+            if ((int) crc.getValue() != buf.getInt(at + 4)) {
+                log.warn("[SPOOL] torn record at {} in {}, dropping the rest of the segment", at, segment.path);
+                break;
+            }
+            if (at >= ack) {
+                pending++;
+            }
+            at += RECORD_HEADER + length;
+        }
+        if (at + 4 <= buf.capacity()) {
+            buf.putInt(at, 0);
+        }
+        segment.writeOffset = at;
+        segment.readOffset = Math.max(SEGMENT_HEADER, Math.min(ack, at));
+    }
+
+    // strings: length + UTF-8 bytes (-1 for null); startAt: flag, seconds, nanos; durationMin: flag, value;
+    // then stage, scheduleIds and userIds (lists: count + strings, -1 for null); older
+    // records end before stage or before the lists
+    private static int encodedSize(PrePlaybackEvent event) {
+        return stringSize(event.getScheduleId()) + stringSize(event.getUserId())
+                + stringSize(event.getChannel()) + stringSize(event.getProgramUrl())
+                + 1 + 8 + 4
+                + 1 + 4
+                + stringSize(event.getStage())
+                + listSize(event.getScheduleIds()) + listSize(event.getUserIds());
+    }
+
+    private static void encode(ByteBuffer buf, PrePlaybackEvent event) {
+        putString(buf, event.getScheduleId());
+        putString(buf, event.getUserId());
+        putString(buf, event.getChannel());
+        putString(buf, event.getProgramUrl());
+        Instant startAt = event.getStartAt();
+        buf.put((byte) (startAt == null ? 0 : 1));
+        buf.putLong(startAt == null ? 0 : startAt.getEpochSecond());
+        buf.putInt(startAt == null ? 0 : startAt.getNano());
+        buf.put((byte) (event.getDurationMin() == null ? 0 : 1));
+        buf.putInt(event.getDurationMin() == null ? 0 : event.getDurationMin());
+        putString(buf, event.getStage());
+        putList(buf, event.getScheduleIds());
+        putList(buf, event.getUserIds());
+    }
+
+    private static PrePlaybackEvent decode(ByteBuffer buf) {
+        PrePlaybackEvent.PrePlaybackEventBuilder event = PrePlaybackEvent.builder()
+                .scheduleId(getString(buf))
+                .userId(getString(buf))
+                .channel(getString(buf))
+                .programUrl(getString(buf));
+        boolean hasStart = buf.get() != 0;
+        long seconds = buf.getLong();
+        int nanos = buf.getInt();
+        event.startAt(hasStart ? Instant.ofEpochSecond(seconds, nanos) : null);
+        boolean hasDuration = buf.get() != 0;
+        int duration = buf.getInt();
+        event.durationMin(hasDuration ? duration : null);
+        if (buf.hasRemaining()) {
+            event.stage(getString(buf));
+        }
+        if (buf.hasRemaining()) {
+            event.scheduleIds(getList(buf)).userIds(getList(buf));
+        }
+        return event.build();
+    }
+
+    private static int stringSize(String s) {
+        return 4 + (s == null ? 0 : utf8Length(s));
+    }
+
+    // encodes straight into the mapped buffer, without an intermediate byte[]
+    private static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putInt(NULL_LENGTH);
+            return;
+        }
+        buf.putInt(utf8Length(s));
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                char e = Character.isSurrogate(c) ? '?' : c;
+                buf.put((byte) (0xE0 | (e >> 12)));
+                buf.put((byte) (0x80 | ((e >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (e & 0x3F)));
+            }
+        }
+    }
+
+    private static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                n += 1;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+
+    private static int listSize(List<String> list) {
+        int n = 4;
+        if (list != null) {
+            for (String s : list) {
+                n += stringSize(s);
+            }
+        }
+        return n;
+    }
+
+    private static void putList(ByteBuffer buf, List<String> list) {
+        if (list == null) {
+            buf.putInt(NULL_LENGTH);
+            return;
+        }
+        buf.putInt(list.size());
+        for (String s : list) {
+            putString(buf, s);
+        }
+    }
+
+    private static List<String> getList(ByteBuffer buf) {
+        int size = buf.getInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(getString(buf));
+        }
+        return list;
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buf;
+        private int writeOffset;
+        private int readOffset;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buf) {
+            this.path = path;
+            this.channel = channel;
+            this.buf = buf;
+        }
+
+        static Segment map(Path path, long size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // the mapping stays valid until it is collected
+            }
+        }
+    }
+}
@@ -1,12 +1,38 @@
 package com.schuduler.programschuduler.messaging;
 
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
 import com.schuduler.programschuduler.config.RabbitMQConfig;
 import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import com.schuduler.programschuduler.dto.PrePlaybackEventBatch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Component
 @RequiredArgsConstructor
@@ -14,14 +40,344 @@ import org.springframework.stereotype.Component;
 public class PrePlaybackEventPublisher {
 
     private final RabbitTemplate template;
+    private final EventSpool spool;
+    private final PublishRetrier retrier;
+    private final PrePlaybackProperties preplay;
+
+    @Value("${scheduler.messaging.routing.key:fixed}")
+    private PrePlaybackRouting routing = PrePlaybackRouting.FIXED;
+
+    @Value("${scheduler.messaging.routing.user-hash-buckets:64}")
+    private int userHashBuckets;
+
+    @Value("${scheduler.messaging.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${scheduler.messaging.batch.max-size:500}")
+    private int batchMaxSize;
+
+    @Value("${scheduler.messaging.batch.max-delay-ms:20}")
+    private long batchMaxDelayMs;
+
+    @Value("${scheduler.messaging.bootstrap.await-broker:true}")
+    private boolean awaitBroker;
+
+    @Value("${scheduler.messaging.bootstrap.buffer-capacity:10000}")
+    private int bufferCapacity = 10000;
+
+    @Value("${scheduler.spool.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs = 5000;
+
+    private final Sinks.Many<Outgoing> batchSink = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable batching;
+
+    // Until BrokerBootstrap has declared the topology, events wait here (bounded).
+    private volatile boolean brokerReady = true;
+    private final Deque<Outgoing> startupBuffer = new ArrayDeque<>();
+    private final LongAdder dropped = new LongAdder();
+
+    // replays wait for a confirm per event, so they get their own thread instead of the
+    // shared @Scheduled one
+    private final ExecutorService replayer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "preplay-spool");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean replayQueued = new AtomicBoolean();
+
+    // an event on its way to the broker and the future publish() handed out for it
+    private record Outgoing(PrePlaybackEvent event, CompletableFuture<Void> taken) {
+    }
+
+    @PostConstruct
+    public void init() {
+        brokerReady = !awaitBroker;
+        startBatching();
+    }
+
+    // Events are grouped per routing key and flushed as one PrePlaybackEventBatch when
+    // max-size is reached or max-delay-ms has passed since the first buffered event.
+    public void startBatching() {
+        if (!batchEnabled) {
+            return;
+        }
+        log.info("PrePlaybackEvent batching enabled maxSize={} maxDelayMs={}", batchMaxSize, batchMaxDelayMs);
+        batching = batchSink.asFlux()
+                .groupBy(out -> routingKeyFor(out.event()))
+                .flatMap(group -> group
+                        .bufferTimeout(batchMaxSize, Duration.ofMillis(batchMaxDelayMs))
+                        .doOnNext(outs -> sendBatch(group.key(), outs)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopBatching() {
+        if (batching != null) {
+            // completing the sink flushes whatever is still buffered
+            batchSink.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        }
+    }
+
+    @PreDestroy
+    public void stopReplay() {
+        replayer.shutdownNow();
+    }
+
+    /**
+     * Hands {@code event} on for publishing. The returned future completes once the event
+     * is taken: confirmed by the broker, also on a retry, or written to the spool. It fails
+     * when the event is dropped, dead-lettered or lost. Publisher confirms for live sends are
+     * only requested with the spool or leases on; otherwise a send counts as taken once it
+     * returns. Retries always wait for their confirm.
+     */
+    public CompletableFuture<Void> publish(PrePlaybackEvent event) {
+        Outgoing out = new Outgoing(event, new CompletableFuture<>());
+        if (!brokerReady && buffer(out)) {
+            return out.taken();
+        }
+        deliver(out);
+        return out.taken();
+    }
+
+    /** Called once the broker is reachable and the topology is declared; flushes the startup buffer. */
+    public void brokerReady() {
+        List<Outgoing> pending;
+        synchronized (startupBuffer) {
+            brokerReady = true;
+            pending = new ArrayList<>(startupBuffer);
+            startupBuffer.clear();
+        }
+        if (!pending.isEmpty()) {
+            log.info("Broker ready, publishing {} buffered PrePlaybackEvents", pending.size());
+        }
+        replaySpool();
+        for (Outgoing out : pending) {
+            try {
+                deliver(out);
+            } catch (Exception ex) {
+                log.error("Publishing buffered PrePlaybackEvent failed {}", out.event().describe(), ex);
+                out.taken().completeExceptionally(ex);
+            }
+        }
+    }
+
+    public boolean isBrokerReady() {
+        return brokerReady;
+    }
+
+    public int bufferedCount() {
+        synchronized (startupBuffer) {
+            return startupBuffer.size();
+        }
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    // false when the broker became ready meanwhile and the caller should send directly
+    private boolean buffer(Outgoing out) {
+        synchronized (startupBuffer) {
+            if (brokerReady) {
+                return false;
+            }
+            if (startupBuffer.size() >= bufferCapacity && spool.isEnabled()) {
+                spool(out);
+                return true;
+            }
+            if (startupBuffer.size() >= bufferCapacity) {
+                // with leases the claim stays CLAIMED and is fired again; otherwise this event is lost
+                dropped.increment();
+                log.error("Broker not ready and startup buffer full ({}), dropping PrePlaybackEvent {}",
+                    bufferCapacity, out.event().describe());
+                out.taken().completeExceptionally(new AmqpException("startup buffer full"));
+                return true;
+            }
+            startupBuffer.addLast(out);
+            return true;
+        }
+    }
+
+    /**
+     * Re-sends spooled events, oldest first, each waiting for its publisher confirm
+     * before it is acknowledged in the spool. Stops at the first failure. Runs on the
+     * {@code preplay-spool} thread; at most one replay is queued at a time.
+     */
+    @Scheduled(fixedDelayString = "${scheduler.spool.replay-interval-ms:5000}")
+    public void replaySpool() {
+        if (!spool.isEnabled() || spool.isEmpty() || !brokerReady || !replayQueued.compareAndSet(false, true)) {
+            return;
+        }
+        replayer.execute(() -> {
+            replayQueued.set(false);
+            int replayed = spool.replay(this::sendConfirmed);
+            if (replayed > 0) {
+                log.info("Replayed {} spooled PrePlaybackEvent(s), {} left", replayed, spool.pending());
+            }
+        });
+    }
+
+    // while anything is spooled new events queue behind it, so the broker sees them in order
+    private void deliver(Outgoing out) {
+        if (spool.isEnabled() && !spool.isEmpty()) {
+            spool(out);
+            return;
+        }
+        send(out);
+    }
+
+    private void send(Outgoing out) {
+        if (batching != null) {
+            batchSink.emitNext(out, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            return;
+        }
+        PrePlaybackEvent event = out.event();
+        String routingKey = routingKeyFor(event);
+        log.info("Publishing PrePlaybackEvent {} startAt={} to exchange={} routingKey={}",
+            event.describe(), event.getStartAt(), RabbitMQConfig.EXCHANGE, routingKey);
+        try {
+            if (confirms()) {
+                CorrelationData confirm = new CorrelationData();
+                template.convertAndSend(RabbitMQConfig.EXCHANGE, routingKey, event, confirm);
+                onConfirm(confirm, () -> out.taken().complete(null), ex -> {
+                    if (!fallback(out, routingKey, ex)) {
+                        log.error("PrePlaybackEvent {} not taken by the broker: {}", event.describe(), ex.getMessage());
+                    }
+                });
+                return;
+            }
+            template.convertAndSend(
+                    RabbitMQConfig.EXCHANGE,
+                    routingKey,
+                    event
+            );
+            out.taken().complete(null);
+        } catch (AmqpException ex) {
+            if (!fallback(out, routingKey, ex)) {
+                throw ex;
+            }
+        }
+    }
+
+    // to spool what the broker did not take, and to confirm a lease only once it did
+    private boolean confirms() {
+        return spool.isEnabled() || preplay.getLease().isEnabled();
+    }
+
+    // the durable spool first, the in-memory retrier only without one; a nacked or
+    // unconfirmed event is spooled behind whatever was published after it. False, with the
+    // future failed, when neither took it. A retried event is taken once a retry is acked;
+    // with leases one that takes longer than the lease may be fired again by the reaper as
+    // well (delivery is at least once)
+    private boolean fallback(Outgoing out, String routingKey, AmqpException ex) {
+        PrePlaybackEvent event = out.event();
+        if (spool.isEnabled()) {
+            log.warn("Publishing PrePlaybackEvent failed, spooling {}: {}", event.describe(), ex.getMessage());
+            spool(out);
+            return true;
+        }
+        if (retrier.isEnabled()) {
+            log.warn("Publishing PrePlaybackEvent failed, retrying {}: {}", event.describe(), ex.getMessage());
+            retry(out, routingKey, ex);
+            return true;
+        }
+        out.taken().completeExceptionally(ex);
+        return false;
+    }
+
+    private void retry(Outgoing out, String routingKey, Exception ex) {
+        retrier.retry(out.event(), routingKey, ex).whenComplete((ignored, err) -> {
+            if (err == null) {
+                out.taken().complete(null);
+            } else {
+                out.taken().completeExceptionally(err);
+            }
+        });
+    }
+
+    private void spool(Outgoing out) {
+        try {
+            spool.append(out.event());
+            out.taken().complete(null);
+        } catch (RuntimeException ex) {
+            out.taken().completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private void onConfirm(CorrelationData confirm, Runnable acked, Consumer<AmqpException> failed) {
+        PublisherConfirms.onConfirm(confirm, confirmTimeoutMs, acked, failed);
+    }
+
+    private boolean sendConfirmed(PrePlaybackEvent event) {
+        CorrelationData confirm = new CorrelationData();
+        template.convertAndSend(RabbitMQConfig.EXCHANGE, routingKeyFor(event), event, confirm);
+        try {
+            return confirm.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS).isAck();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException ex) {
+            return false;
+        }
+    }
+
+    private void sendBatch(String routingKey, List<Outgoing> outs) {
+        List<PrePlaybackEvent> events = outs.stream().map(Outgoing::event).toList();
+        PrePlaybackEventBatch batch = PrePlaybackEventBatch.builder()
+                .routingKey(routingKey)
+                .createdAt(Instant.now())
+                .events(events)
+                .build();
+        log.info("Publishing PrePlaybackEventBatch size={} to exchange={} routingKey={}",
+            events.size(), RabbitMQConfig.EXCHANGE, routingKey);
+        try {
+            if (confirms()) {
+                CorrelationData confirm = new CorrelationData();
+                template.convertAndSend(RabbitMQConfig.EXCHANGE, routingKey, batch, confirm);
+                onConfirm(confirm, () -> outs.forEach(out -> out.taken().complete(null)),
+                        ex -> batchFailed(routingKey, outs, ex));
+                return;
+            }
+            template.convertAndSend(RabbitMQConfig.EXCHANGE, routingKey, batch);
+            outs.forEach(out -> out.taken().complete(null));
+        } catch (Exception ex) {
+            // keep the batching pipeline alive
+            batchFailed(routingKey, outs, ex);
+        }
+    }
+
+    // same order as fallback(); without a spool or retries the publish futures fail, so
+    // with leases the events are reaped and fired again rather than lost
+    private void batchFailed(String routingKey, List<Outgoing> outs, Exception ex) {
+        if (spool.isEnabled()) {
+            log.warn("Publishing PrePlaybackEventBatch failed, spooling size={} routingKey={}: {}",
+                outs.size(), routingKey, ex.getMessage());
+            outs.forEach(out -> {
+                try {
+                    spool(out);
+                } catch (RuntimeException spoolFailed) {
+                    // the future is failed; keep spooling the rest of the batch
+                    log.error("Spooling PrePlaybackEvent {} failed", out.event().describe(), spoolFailed);
+                }
+            });
+            return;
+        }
+        if (retrier.isEnabled()) {
+            log.warn("Publishing PrePlaybackEventBatch failed, retrying events size={} routingKey={}: {}",
+                outs.size(), routingKey, ex.getMessage());
+            outs.forEach(out -> retry(out, routingKey, ex));
+            return;
+        }
+        log.error("Publishing PrePlaybackEventBatch failed, not taken size={} routingKey={}", outs.size(), routingKey, ex);
+        outs.forEach(out -> out.taken().completeExceptionally(ex));
+    }
 
-    public void publish(PrePlaybackEvent event) {
-        log.info("Publishing PrePlaybackEvent scheduleId={} startAt={} to exchange={} routingKey={}",
-            event.getScheduleId(), event.getStartAt(), RabbitMQConfig.EXCHANGE, RabbitMQConfig.ROUTING_KEY);
-        template.convertAndSend(
-                RabbitMQConfig.EXCHANGE,
-                RabbitMQConfig.ROUTING_KEY,
-                event
-        );
+    private String routingKeyFor(PrePlaybackEvent event) {
+        String key = routing.routingKey(event, userHashBuckets);
+        String suffix = preplay.routingSuffixFor(event.getStage());
+        // schedule.preplay[.<stage>][.channel.<c> | .user.<n>]: stays under the bindings and shards
+        return suffix == null ? key
+                : RabbitMQConfig.ROUTING_KEY + "." + suffix + key.substring(RabbitMQConfig.ROUTING_KEY.length());
     }
 }
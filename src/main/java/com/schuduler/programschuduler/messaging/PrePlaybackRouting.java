@@ -0,0 +1,50 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.config.RabbitMQConfig;
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+
+/**
+ * How a {@link PrePlaybackEvent} is turned into a routing key on
+ * {@link RabbitMQConfig#EXCHANGE}. Keys always start with {@link RabbitMQConfig#ROUTING_KEY}
+ * so {@code schedule.preplay.#} bindings see every event; events sharing a key keep
+ * their relative order, also across consistent-hash queue shards.
+ */
+public enum PrePlaybackRouting {
+
+    /** {@code schedule.preplay} for every event. */
+    FIXED,
+
+    /** {@code schedule.preplay.channel.<channel>} */
+    CHANNEL,
+
+    /**
+     * {@code schedule.preplay.user.<hash(userId) mod buckets>}. A broadcast event has no
+     * single user, so it is bucketed by {@code hash(channel)} instead: broadcasts spread
+     * over the same buckets and stay in order per channel.
+     */
+    USER_HASH;
+
+    public String routingKey(PrePlaybackEvent event, int userHashBuckets) {
+        return switch (this) {
+            case FIXED -> RabbitMQConfig.ROUTING_KEY;
+            case CHANNEL -> RabbitMQConfig.ROUTING_KEY + ".channel." + word(event.getChannel());
+            case USER_HASH -> RabbitMQConfig.ROUTING_KEY + ".user." + bucket(hashKey(event), userHashBuckets);
+        };
+    }
+
+    private static String hashKey(PrePlaybackEvent event) {
+        return event.getUserId() == null && event.getScheduleIds() != null ? event.getChannel() : event.getUserId();
+    }
+
+    private static int bucket(String key, int buckets) {
+        return key == null ? 0 : Math.floorMod(key.hashCode(), buckets);
+    }
+
+    // a single topic word: dots and wildcards in channel names would split or match keys
+    private static String word(String value) {
+        if (value == null || value.isEmpty()) {
+            return "_";
+        }
+        return value.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
@@ -0,0 +1,211 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.config.RabbitMQConfig;
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retries failed pre-playback publishes off the scan thread
+ * ({@code scheduler.messaging.retry.enabled}).
+ * <p>
+ * Each event is re-sent after an exponentially growing delay with jitter
+ * (half fixed, half random), with a publisher confirm: a retry only counts once the
+ * broker acked it. A retry the broker nacks or does not confirm within
+ * {@code scheduler.spool.confirm-timeout-ms} goes to the {@link EventSpool} when enabled,
+ * and is otherwise retried too. It gives up after {@code max-attempts}, or as soon as
+ * the next attempt would land after the programme's {@code startAt}, and the event
+ * goes to {@link RabbitMQConfig#DEAD_LETTER_EXCHANGE} with its attempt count and last
+ * error as headers. If that fails too, an event that is still in time goes to the
+ * spool when enabled.
+ */
+@Component
+@Slf4j
+public class PublishRetrier {
+
+    public static final String ATTEMPTS_HEADER = "x-preplay-attempts";
+    public static final String LAST_ERROR_HEADER = "x-preplay-last-error";
+    public static final String REASON_HEADER = "x-preplay-dead-letter-reason";
+
+    private final RabbitTemplate template;
+    private final EventSpool spool;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int capacity;
+    private final long confirmTimeoutMs;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "preplay-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public PublishRetrier(RabbitTemplate template,
+                          EventSpool spool,
+                          @Value("${scheduler.messaging.retry.enabled:false}") boolean enabled,
+                          @Value("${scheduler.messaging.retry.max-attempts:6}") int maxAttempts,
+                          @Value("${scheduler.messaging.retry.initial-backoff-ms:200}") long initialBackoffMs,
+                          @Value("${scheduler.messaging.retry.max-backoff-ms:30000}") long maxBackoffMs,
+                          @Value("${scheduler.messaging.retry.capacity:10000}") int capacity,
+                          @Value("${scheduler.spool.confirm-timeout-ms:5000}") long confirmTimeoutMs) {
+        this.template = template;
+        this.spool = spool;
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.capacity = capacity;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Events waiting for their next attempt. */
+    public int depth() {
+        return depth.get();
+    }
+
+    public long retriedCount() {
+        return retried.sum();
+    }
+
+    public long deadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Schedules the first retry of an event whose publish just failed; never blocks. The
+     * returned future completes once a retry is acked or the event was spooled, and fails
+     * when it was dead-lettered or lost.
+     */
+    public CompletableFuture<Void> retry(PrePlaybackEvent event, String routingKey, Exception cause) {
+        CompletableFuture<Void> taken = new CompletableFuture<>();
+        schedule(event, routingKey, 1, cause, taken);
+        return taken;
+    }
+
+    private void schedule(PrePlaybackEvent event, String routingKey, int attempt, Exception cause,
+                          CompletableFuture<Void> taken) {
+        if (attempt > maxAttempts) {
+            deadLetter(event, attempt - 1, cause, "retries-exhausted", taken);
+            return;
+        }
+        long delayMs = backoffMs(attempt);
+        Instant deadline = event.getStartAt();
+        if (deadline != null && Instant.now().plusMillis(delayMs).isAfter(deadline)) {
+            deadLetter(event, attempt - 1, cause, "past-start", taken);
+            return;
+        }
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            deadLetter(event, attempt - 1, cause, "retry-queue-full", taken);
+            return;
+        }
+        timer.schedule(() -> {
+            depth.decrementAndGet();
+            attempt(event, routingKey, attempt, taken);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void attempt(PrePlaybackEvent event, String routingKey, int attempt, CompletableFuture<Void> taken) {
+        retried.increment();
+        CorrelationData confirm = new CorrelationData();
+        try {
+            template.convertAndSend(RabbitMQConfig.EXCHANGE, routingKey, event, confirm);
+        } catch (Exception ex) {
+            log.warn("Retry {} of PrePlaybackEvent {} failed: {}", attempt, event.describe(), ex.getMessage());
+            schedule(event, routingKey, attempt + 1, ex, taken);
+            return;
+        }
+        PublisherConfirms.onConfirm(confirm, confirmTimeoutMs, () -> {
+            log.info("Published PrePlaybackEvent {} on retry {}", event.describe(), attempt);
+            taken.complete(null);
+        }, ex -> {
+            if (spool.isEnabled()) {
+                log.warn("Retry {} of PrePlaybackEvent {} not taken, spooling: {}", attempt, event.describe(),
+                        ex.getMessage());
+                spool(event, taken);
+                return;
+            }
+            log.warn("Retry {} of PrePlaybackEvent {} not taken: {}", attempt, event.describe(), ex.getMessage());
+            schedule(event, routingKey, attempt + 1, ex, taken);
+        });
+    }
+
+    // initial * 2^(attempt-1), capped; the upper half of the delay is random
+    long backoffMs(int attempt) {
+        long exp = initialBackoffMs << Math.min(attempt - 1, 30);
+        long delay = Math.min(maxBackoffMs, exp < 0 ? maxBackoffMs : exp);
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    // a dead-lettered event was not delivered, so its future fails either way
+    private void deadLetter(PrePlaybackEvent event, int attempts, Exception cause, String reason,
+                            CompletableFuture<Void> taken) {
+        CorrelationData confirm = new CorrelationData();
+        try {
+            template.convertAndSend(RabbitMQConfig.DEAD_LETTER_EXCHANGE, RabbitMQConfig.DEAD_LETTER_ROUTING_KEY, event, message -> {
+                message.getMessageProperties().setHeader(ATTEMPTS_HEADER, attempts);
+                message.getMessageProperties().setHeader(LAST_ERROR_HEADER, String.valueOf(cause == null ? null : cause.getMessage()));
+                message.getMessageProperties().setHeader(REASON_HEADER, reason);
+                return message;
+            }, confirm);
+        } catch (Exception ex) {
+            deadLetterFailed(event, reason, ex, taken);
+            return;
+        }
+        PublisherConfirms.onConfirm(confirm, confirmTimeoutMs, () -> {
+            deadLettered.increment();
+            log.warn("Dead-lettered PrePlaybackEvent {} after {} attempt(s): {}", event.describe(), attempts, reason);
+            taken.completeExceptionally(new AmqpException("dead-lettered: " + reason, cause));
+        }, ex -> deadLetterFailed(event, reason, ex, taken));
+    }
+
+    private void deadLetterFailed(PrePlaybackEvent event, String reason, Exception ex, CompletableFuture<Void> taken) {
+        boolean inTime = event.getStartAt() == null || Instant.now().isBefore(event.getStartAt());
+        if (inTime && spool.isEnabled()) {
+            log.warn("Dead-lettering failed, spooling PrePlaybackEvent {}: {}", event.describe(), ex.getMessage());
+            spool(event, taken);
+            return;
+        }
+        log.error("PrePlaybackEvent {} lost: {} and dead-lettering failed", event.describe(), reason, ex);
+        taken.completeExceptionally(ex);
+    }
+
+    private void spool(PrePlaybackEvent event, CompletableFuture<Void> taken) {
+        try {
+            spool.append(event);
+            taken.complete(null);
+        } catch (RuntimeException ex) {
+            log.error("Spooling PrePlaybackEvent {} failed", event.describe(), ex);
+            taken.completeExceptionally(ex);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.schuduler.programschuduler.messaging;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/** Waits for the publisher confirm of a correlated send without blocking. */
+final class PublisherConfirms {
+
+    private PublisherConfirms() {
+    }
+
+    // calls back on the connection's thread for a confirm, or on the timer's when none
+    // arrived within timeoutMs
+    static void onConfirm(CorrelationData confirm, long timeoutMs, Runnable acked, Consumer<AmqpException> failed) {
+        confirm.getFuture()
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((result, err) -> {
+                    if (err != null) {
+                        failed.accept(new AmqpException("no publisher confirm within " + timeoutMs + " ms", err));
+                    } else if (!result.isAck()) {
+                        failed.accept(new AmqpException("broker nacked the event: " + result.getReason()));
+                    } else {
+                        acked.run();
+                    }
+                });
+    }
+}
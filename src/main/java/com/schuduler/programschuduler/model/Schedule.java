@@ -2,16 +2,33 @@ package com.schuduler.programschuduler.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
 
+// created at startup by ScheduleIndexes (scheduler.indexes.on-missing); lease indexes by MongoPrePlaybackStore
 @Document(collection = "schedules")
+@CompoundIndexes({
+        @CompoundIndex(name = "userId_startAt", def = "{'userId': 1, 'startAt': 1}", background = true),
+        @CompoundIndex(name = "channel_startAt", def = "{'channel': 1, 'startAt': 1}", background = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Schedule {
+
+    // the zone request date/time have always been read in (the host's, e.g. -Duser.timezone),
+    // and so the one recurrences are expanded in
+    public static final ZoneId ZONE = ZoneId.systemDefault();
+
     @Id
     private String id;
 
@@ -19,6 +36,7 @@ public class Schedule {
     private String title;
     private String channel;
 
+    @Indexed(name = "startAt", background = true)
     private Instant startAt;
 
     private Integer durationMin;
@@ -31,5 +49,28 @@ public class Schedule {
 
     private Boolean preplayPublished;
 
+    // claimed stages other than the default one, whose claim is preplayPublished
+    private List<String> firedStages;
+
+    // per stage, the token of the bulk claim that fired it (scheduler.preplay.broadcast)
+    private Map<String, String> claimTokens;
+
+    // per stage, the leased claim (scheduler.preplay.lease); no entry is PENDING
+    private Map<String, Claim> claims;
+
+    @Version
+    private Long version;
+
     public enum Recurrence { NONE, DAILY, WEEKLY, MONTHLY }
+
+    public enum ClaimState { PENDING, CLAIMED, PUBLISHED }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Claim {
+        private ClaimState state;
+        private String owner;
+        private Instant leaseUntil;
+    }
 }
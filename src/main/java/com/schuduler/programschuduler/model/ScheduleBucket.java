@@ -0,0 +1,39 @@
+package com.schuduler.programschuduler.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * All schedules starting within one fixed time slice, keyed by the slice start in
+ * epoch seconds. Only the fields the pre-playback scan needs are copied; the claim
+ * re-reads the schedule itself, so an entry left behind by a move or delete is
+ * harmless.
+ */
+@Document(collection = "schedule_buckets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScheduleBucket {
+    @Id
+    private Long id;
+
+    private Instant expireAt;
+
+    private List<Entry> entries;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Entry {
+        private String scheduleId;
+        private Instant startAt;
+        private String userId;
+        private String channel;
+    }
+}
@@ -0,0 +1,149 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.dto.ChannelNowResponse;
+import com.schuduler.programschuduler.model.Schedule;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, start-ordered occurrences of one channel within a horizon, held as
+ * parallel arrays. {@link #now(long)} is a binary search over {@code starts}, plus a walk
+ * back over overlapping occurrences bounded by the running maximum end, and allocates
+ * only its response; changes build a new instance.
+ */
+final class ChannelTimeline {
+
+    private static final Comparator<Occurrence> ORDER = Comparator
+            .comparingLong(Occurrence::start)
+            .thenComparing(Occurrence::scheduleId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final String channel;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds; // max of ends[0..i]: nothing at or before i runs past it
+    private final String[] scheduleIds;
+    private final String[] titles;
+    private final String[] programUrls;
+
+    private ChannelTimeline(String channel, List<Occurrence> occurrences) {
+        int n = occurrences.size();
+        this.channel = channel;
+        this.starts = new long[n];
+        this.ends = new long[n];
+        this.maxEnds = new long[n];
+        this.scheduleIds = new String[n];
+        this.titles = new String[n];
+        this.programUrls = new String[n];
+        for (int i = 0; i < n; i++) {
+            Occurrence o = occurrences.get(i);
+            starts[i] = o.start();
+            ends[i] = o.end();
+            maxEnds[i] = i == 0 ? o.end() : Math.max(maxEnds[i - 1], o.end());
+            scheduleIds[i] = o.scheduleId();
+            titles[i] = o.title();
+            programUrls[i] = o.programUrl();
+        }
+    }
+
+    static ChannelTimeline of(String channel, Collection<Schedule> series, Instant from, Instant to) {
+        List<Occurrence> occurrences = new ArrayList<>();
+        for (Schedule s : series) {
+            expand(s, from, to, occurrences);
+        }
+        occurrences.sort(ORDER);
+        return new ChannelTimeline(channel, occurrences);
+    }
+
+    /** This timeline with {@code scheduleId}'s occurrences replaced by those of {@code replacement} (may be null). */
+    ChannelTimeline with(String scheduleId, Schedule replacement, Instant from, Instant to) {
+        List<Occurrence> occurrences = new ArrayList<>(starts.length + 1);
+        for (int i = 0; i < starts.length; i++) {
+            if (!scheduleIds[i].equals(scheduleId)) {
+                occurrences.add(new Occurrence(starts[i], ends[i], scheduleIds[i], titles[i], programUrls[i]));
+            }
+        }
+        if (replacement != null) {
+            expand(replacement, from, to, occurrences);
+        }
+        occurrences.sort(ORDER);
+        return new ChannelTimeline(channel, occurrences);
+    }
+
+    String channel() {
+        return channel;
+    }
+
+    int size() {
+        return starts.length;
+    }
+
+    boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * What airs at {@code nowMs} (of the occurrences still running, the one that started
+     * last, e.g. a short programme inside a longer one) and what starts next.
+     */
+    ChannelNowResponse now(long nowMs) {
+        int i = Arrays.binarySearch(starts, nowMs);
+        int last;
+        if (i >= 0) {
+            // equal starts: take the last of the run
+            while (i + 1 < starts.length && starts[i + 1] == nowMs) {
+                i++;
+            }
+            last = i;
+        } else {
+            last = -i - 2;
+        }
+        int playing = last;
+        while (playing >= 0 && maxEnds[playing] > nowMs && ends[playing] <= nowMs) {
+            playing--;
+        }
+        boolean isPlaying = playing >= 0 && ends[playing] > nowMs;
+        int next = last + 1;
+        return new ChannelNowResponse(channel,
+                isPlaying ? "PLAY" : "NONE",
+                isPlaying ? entry(playing) : null,
+                next < starts.length ? entry(next) : null);
+    }
+
+    // rough retained size: arrays plus the strings they reference (shared strings counted once per slot)
+    long estimatedBytes() {
+        long bytes = 16 + 6 * (16L + 4) + (long) starts.length * (8 + 8 + 8 + 3 * 4);
+        for (int i = 0; i < starts.length; i++) {
+            bytes += stringBytes(scheduleIds[i]) + stringBytes(titles[i]) + stringBytes(programUrls[i]);
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    private ChannelNowResponse.Entry entry(int i) {
+        return new ChannelNowResponse.Entry(scheduleIds[i], titles[i], programUrls[i],
+                Instant.ofEpochMilli(starts[i]), Instant.ofEpochMilli(ends[i]));
+    }
+
+    private static void expand(Schedule s, Instant from, Instant to, List<Occurrence> into) {
+        if (s.getStartAt() == null || s.getId() == null) {
+            return;
+        }
+        RecurrenceIterator it = new RecurrenceIterator(s, from, to);
+        long durationMs = it.duration().toMillis();
+        while (it.hasNext()) {
+            long start = it.next().toEpochMilli();
+            into.add(new Occurrence(start, start + durationMs, s.getId(), s.getTitle(), s.getProgramUrl()));
+        }
+    }
+
+    private record Occurrence(long start, long end, String scheduleId, String title, String programUrl) {
+    }
+}
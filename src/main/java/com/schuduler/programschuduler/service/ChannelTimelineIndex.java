@@ -0,0 +1,200 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.dto.ChannelNowResponse;
+import com.schuduler.programschuduler.model.Schedule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Materialized per-channel {@link ChannelTimeline}s for a rolling horizon
+ * ({@code scheduler.timeline.enabled}), answering "what's on channel X now and next"
+ * from memory.
+ * <p>
+ * The whole index is rebuilt from MongoDB every {@code refresh-ms}, which also rolls
+ * the horizon forward; in between, {@link ScheduleChangeStreamListener} applies each
+ * change to the affected channel(s) only. Changes that arrive during a rebuild are
+ * re-applied on top of it. When disabled, {@link #now} builds the one channel's
+ * timeline from MongoDB per request.
+ */
+@Component
+@Slf4j
+public class ChannelTimelineIndex {
+
+    private final ReactiveMongoTemplate mongo;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final Duration maxDuration;
+
+    private volatile Map<String, ChannelTimeline> channels = new ConcurrentHashMap<>();
+    private final Map<String, String> channelOf = new ConcurrentHashMap<>();
+    private volatile Instant builtAt;
+    private List<Schedule> changedDuringRebuild; // guarded by this; non-null while rebuilding
+
+    public ChannelTimelineIndex(ReactiveMongoTemplate mongo,
+                                Clock clock,
+                                @Value("${scheduler.timeline.enabled:false}") boolean enabled,
+                                @Value("${scheduler.timeline.horizon-hours:24}") long horizonHours,
+                                @Value("${scheduler.timeline.max-duration-hours:24}") long maxDurationHours) {
+        this.mongo = mongo;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.horizon = Duration.ofHours(horizonHours);
+        this.maxDuration = Duration.ofHours(maxDurationHours);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<ChannelNowResponse> now(String channel) {
+        long nowMs = clock.millis();
+        if (!enabled) {
+            Instant now = Instant.ofEpochMilli(nowMs);
+            return load(Criteria.where("channel").is(channel), now)
+                    .collectList()
+                    .map(series -> ChannelTimeline.of(channel, series, now.minus(maxDuration), now.plus(horizon)).now(nowMs));
+        }
+        ChannelTimeline timeline = channels.get(channel);
+        return Mono.just(timeline != null ? timeline.now(nowMs) : new ChannelNowResponse(channel, "NONE", null, null));
+    }
+
+    @Scheduled(fixedDelayString = "${scheduler.timeline.refresh-ms:900000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (changedDuringRebuild != null) {
+                return;
+            }
+            changedDuringRebuild = new ArrayList<>();
+        }
+        Instant now = clock.instant();
+        load(null, now)
+                .collectList()
+                .subscribe(series -> install(series, now), err -> {
+                    log.error("[TIMELINE] rebuild failed", err);
+                    synchronized (this) {
+                        changedDuringRebuild = null;
+                    }
+                });
+    }
+
+    /** Applies an inserted or updated schedule. */
+    public synchronized void apply(Schedule schedule) {
+        if (!enabled || schedule == null || schedule.getId() == null) {
+            return;
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(schedule);
+        }
+        Instant now = clock.instant();
+        Instant from = now.minus(maxDuration);
+        Instant to = builtAt != null ? builtAt.plus(horizon) : now.plus(horizon);
+        String previous = channelOf.get(schedule.getId());
+        if (previous != null && !previous.equals(schedule.getChannel())) {
+            replace(previous, schedule.getId(), null, from, to);
+        }
+        if (schedule.getChannel() != null) {
+            replace(schedule.getChannel(), schedule.getId(), schedule, from, to);
+            channelOf.put(schedule.getId(), schedule.getChannel());
+        }
+    }
+
+    public synchronized void remove(String scheduleId) {
+        if (!enabled) {
+            return;
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(Schedule.builder().id(scheduleId).build());
+        }
+        String channel = channelOf.remove(scheduleId);
+        if (channel != null) {
+            replace(channel, scheduleId, null, null, null);
+        }
+    }
+
+    public int channelCount() {
+        return channels.size();
+    }
+
+    public long entryCount() {
+        return channels.values().stream().mapToLong(ChannelTimeline::size).sum();
+    }
+
+    public long estimatedBytes() {
+        return channels.values().stream().mapToLong(ChannelTimeline::estimatedBytes).sum();
+    }
+
+    private void replace(String channel, String scheduleId, Schedule replacement, Instant from, Instant to) {
+        ChannelTimeline current = channels.get(channel);
+        ChannelTimeline updated = current != null
+                ? current.with(scheduleId, replacement, from, to)
+                : replacement != null ? ChannelTimeline.of(channel, List.of(replacement), from, to) : null;
+        if (updated == null || updated.isEmpty()) {
+            channels.remove(channel);
+        } else {
+            channels.put(channel, updated);
+        }
+    }
+
+    private void install(List<Schedule> series, Instant now) {
+        Instant from = now.minus(maxDuration);
+        Instant to = now.plus(horizon);
+        Map<String, List<Schedule>> byChannel = series.stream()
+                .filter(s -> s.getChannel() != null && s.getId() != null)
+                .collect(Collectors.groupingBy(Schedule::getChannel));
+        Map<String, ChannelTimeline> built = new ConcurrentHashMap<>(Math.max(16, byChannel.size() * 2));
+        Map<String, String> ids = new HashMap<>();
+        byChannel.forEach((channel, schedules) -> {
+            ChannelTimeline timeline = ChannelTimeline.of(channel, schedules, from, to);
+            if (!timeline.isEmpty()) {
+                built.put(channel, timeline);
+                schedules.forEach(s -> ids.put(s.getId(), channel));
+            }
+        });
+        synchronized (this) {
+            channels = built;
+            channelOf.clear();
+            channelOf.putAll(ids);
+            builtAt = now;
+            List<Schedule> changes = changedDuringRebuild;
+            changedDuringRebuild = null;
+            for (Schedule change : changes) {
+                if (change.getStartAt() == null) {
+                    remove(change.getId());
+                } else {
+                    apply(change);
+                }
+            }
+        }
+        log.info("[TIMELINE] {} channel(s), {} entries, ~{} KiB", built.size(), entryCount(), estimatedBytes() / 1024);
+    }
+
+    // recurring series plus one-shots that may still be running at now; scope may be null
+    private Flux<Schedule> load(Criteria scope, Instant now) {
+        Criteria criteria = (scope == null ? Criteria.where("startAt") : scope.and("startAt")).lt(now.plus(horizon)).orOperator(
+                Criteria.where("recurrence").in(Schedule.Recurrence.DAILY.name(), Schedule.Recurrence.WEEKLY.name(),
+                        Schedule.Recurrence.MONTHLY.name()),
+                Criteria.where("startAt").gte(now.minus(maxDuration)));
+        return mongo.find(Query.query(criteria), Schedule.class);
+    }
+}
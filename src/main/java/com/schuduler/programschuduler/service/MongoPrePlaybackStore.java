@@ -0,0 +1,158 @@
+package com.schuduler.programschuduler.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
+import com.schuduler.programschuduler.model.Schedule;
+import com.schuduler.programschuduler.model.Schedule.ClaimState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The default stage is claimed through {@code preplayPublished}, as before stages existed;
+ * further stages through {@code firedStages}. Leased claims live in {@code claims.<stage>}
+ * until published; each stage has a partial index on its lease expiry for the reaper.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoPrePlaybackStore implements PrePlaybackStore {
+
+    private final ReactiveMongoTemplate mongo;
+    private final ScheduleBucketStore buckets;
+    private final PrePlaybackProperties preplay;
+
+    @Value("${scheduler.storage.buckets.enabled:false}")
+    private boolean bucketsEnabled;
+
+    // only CLAIMED entries are indexed, so the index stays as small as the claims in flight
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepare() {
+        if (!preplay.getLease().isEnabled()) {
+            return;
+        }
+        Flux.fromIterable(preplay.effectiveStages())
+                .concatMap(stage -> mongo.indexOps(Schedule.class).ensureIndex(new Index()
+                        .on(claimField(stage.name(), "leaseUntil"), Sort.Direction.ASC)
+                        .named("claims_" + stage.name() + "_leaseUntil")
+                        .partial(PartialIndexFilter.of(Criteria.where(claimField(stage.name(), "state"))
+                                .is(ClaimState.CLAIMED.name())))))
+                .collectList()
+                .subscribe(names -> log.info("[SCHEDULER] lease indexes ready: {}", names),
+                        t -> log.error("[SCHEDULER] creating lease indexes failed", t));
+    }
+
+    @Override
+    public Flux<Schedule> due(List<Window> windows) {
+        if (bucketsEnabled) {
+            // bucket entries carry no claim state; a stage that already fired loses its claim
+            return Flux.fromIterable(windows)
+                    .concatMap(w -> buckets.due(w.from(), w.to()))
+                    .distinct(Schedule::getId);
+        }
+        Criteria[] ranges = windows.stream()
+                .map(w -> unfired(Criteria.where("startAt").gte(w.from()).lt(w.to()), w.stage()))
+                .toArray(Criteria[]::new);
+        Query due = Query.query(ranges.length == 1 ? ranges[0] : new Criteria().orOperator(ranges));
+        return mongo.find(due, Schedule.class);
+    }
+
+    @Override
+    public Mono<Schedule> claim(Schedule candidate, String stage, Lease lease, Instant now) {
+        // startAt is part of the claim so a schedule moved since the scan is not published
+        Query q = Query.query(pending(Criteria.where("_id").is(candidate.getId())
+                .and("startAt").is(candidate.getStartAt()), stage));
+        return mongo.findAndModify(q, claim(stage, lease, now), FindAndModifyOptions.options().returnNew(true), Schedule.class);
+    }
+
+    // updateMulti reports counts only; a fresh token marks which documents this write claimed
+    @Override
+    public Flux<Schedule> claimAll(List<String> ids, Instant startAt, String stage, Lease lease, Instant now) {
+        String tokenField = "claimTokens." + stage;
+        String token = UUID.randomUUID().toString();
+        Query q = Query.query(pending(Criteria.where("_id").in(ids).and("startAt").is(startAt), stage));
+        return mongo.updateMulti(q, claim(stage, lease, now).set(tokenField, token), Schedule.class)
+                .flatMapMany(result -> result.getModifiedCount() == 0
+                        ? Flux.empty()
+                        : mongo.find(Query.query(Criteria.where("_id").in(ids).and(tokenField).is(token)), Schedule.class));
+    }
+
+    // a schedule edited since the claim has no lease left, so it is not marked published
+    @Override
+    public Mono<Long> published(List<String> ids, String stage, String owner, Instant now) {
+        Query q = Query.query(Criteria.where("_id").in(ids)
+                .and(claimField(stage, "state")).is(ClaimState.CLAIMED.name())
+                .and(claimField(stage, "owner")).is(owner));
+        Update u = fire(stage, now)
+                .set(claimField(stage, "state"), ClaimState.PUBLISHED.name())
+                .unset(claimField(stage, "owner"))
+                .unset(claimField(stage, "leaseUntil"));
+        return mongo.updateMulti(q, u, Schedule.class).map(UpdateResult::getModifiedCount);
+    }
+
+    // each release re-checks the expiry, so of two reapers only one requeues a schedule
+    @Override
+    public Flux<Schedule> reap(String stage, Instant now) {
+        Criteria expired = Criteria.where(claimField(stage, "state")).is(ClaimState.CLAIMED.name())
+                .and(claimField(stage, "leaseUntil")).lt(now);
+        Update release = new Update()
+                .set(claimField(stage, "state"), ClaimState.PENDING.name())
+                .unset(claimField(stage, "owner"))
+                .unset(claimField(stage, "leaseUntil"))
+                .set("updatedAt", now);
+        return mongo.find(Query.query(expired), Schedule.class)
+                .concatMap(s -> mongo.findAndModify(
+                        Query.query(Criteria.where("_id").is(s.getId())
+                                .and(claimField(stage, "state")).is(ClaimState.CLAIMED.name())
+                                .and(claimField(stage, "leaseUntil")).lt(now)),
+                        release, FindAndModifyOptions.options().returnNew(true), Schedule.class));
+    }
+
+    private static Update claim(String stage, Lease lease, Instant now) {
+        if (lease == null) {
+            return fire(stage, now);
+        }
+        return new Update()
+                .set("claims." + stage, new Schedule.Claim(ClaimState.CLAIMED, lease.owner(), lease.until()))
+                .set("updatedAt", now);
+    }
+
+    private static Update fire(String stage, Instant now) {
+        Update u = PrePlaybackProperties.DEFAULT_STAGE.equals(stage)
+                ? new Update().set("preplayPublished", true)
+                : new Update().addToSet("firedStages", stage);
+        return u.set("updatedAt", now);
+    }
+
+    private static Criteria unfired(Criteria criteria, String stage) {
+        return PrePlaybackProperties.DEFAULT_STAGE.equals(stage)
+                ? criteria.and("preplayPublished").ne(true)
+                : criteria.and("firedStages").ne(stage);
+    }
+
+    // not fired and not leased; checked even with leases off, so mixed deployments agree
+    private static Criteria pending(Criteria criteria, String stage) {
+        return unfired(criteria, stage).and(claimField(stage, "state")).ne(ClaimState.CLAIMED.name());
+    }
+
+    private static String claimField(String stage, String field) {
+        return "claims." + stage + "." + field;
+    }
+}
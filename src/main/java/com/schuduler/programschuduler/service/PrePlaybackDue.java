@@ -0,0 +1,13 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+
+import java.time.Instant;
+
+/** One stage of one schedule waiting to fire; {@code deadline} is {@code startAt - stage lead}. */
+public record PrePlaybackDue(Schedule schedule, String stage, Instant deadline) {
+
+    String key() {
+        return schedule.getId() + '/' + stage;
+    }
+}
@@ -0,0 +1,328 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
+import com.schuduler.programschuduler.config.PrePlaybackProperties.Stage;
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import com.schuduler.programschuduler.messaging.PrePlaybackEventPublisher;
+import com.schuduler.programschuduler.model.Schedule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Scan, claim and publish of pre-playback events. Time is always passed in, so the
+ * same engine runs on the wall clock (driven by {@link ScheduleService}'s
+ * {@code @Scheduled} methods) and on virtual time in the simulation.
+ * <p>
+ * Every configured stage gets its own window ahead of {@code now}; one store query
+ * covers all of them, and the (schedule, stage) pairs it yields are fired in deadline
+ * order — through the pacer's queue when pacing is on.
+ * <p>
+ * With {@code scheduler.preplay.broadcast} on, due entries of the same stage, channel and
+ * {@code startAt} are claimed with one bulk write and published as one event per
+ * {@code programUrl}, so downstream prefetches each programme once instead of per user.
+ * <p>
+ * With {@code scheduler.preplay.lease} on, a claim is a lease that is confirmed once the
+ * broker acknowledged the event or it was written to the spool; {@link #reap} fires again
+ * whatever a dead or failing worker left claimed, and whatever the broker did not take
+ * before the lease ran out.
+ */
+@Component
+@Slf4j
+public class PrePlaybackEngine {
+
+    private static final Comparator<PrePlaybackDue> BY_DEADLINE = Comparator
+            .comparing(PrePlaybackDue::deadline)
+            .thenComparing(PrePlaybackDue::key);
+
+    private final PrePlaybackStore store;
+    private final Function<PrePlaybackEvent, CompletableFuture<Void>> publisher;
+    private final PrePlaybackPacer pacer;
+    private final List<Stage> stages;
+    private final PrePlaybackProperties.Broadcast broadcast;
+    private final PrePlaybackProperties.Lease lease;
+    private final long pacingSlackSeconds;
+    private final Duration pacingTick;
+
+    @Autowired
+    public PrePlaybackEngine(PrePlaybackStore store,
+                             PrePlaybackEventPublisher publisher,
+                             PrePlaybackPacer pacer,
+                             PrePlaybackProperties preplay,
+                             @Value("${scheduler.pacing.slack-seconds:600}") long pacingSlackSeconds,
+                             @Value("${scheduler.pacing.tick-ms:250}") long pacingTickMs) {
+        this(store, publisher::publish, pacer, preplay.effectiveStages(), preplay.getBroadcast(), preplay.getLease(),
+                pacingSlackSeconds, pacingTickMs);
+    }
+
+    public PrePlaybackEngine(PrePlaybackStore store,
+                             Function<PrePlaybackEvent, CompletableFuture<Void>> publisher,
+                             PrePlaybackPacer pacer,
+                             List<Stage> stages,
+                             PrePlaybackProperties.Broadcast broadcast,
+                             PrePlaybackProperties.Lease lease,
+                             long pacingSlackSeconds,
+                             long pacingTickMs) {
+        this.store = store;
+        this.publisher = publisher;
+        this.pacer = pacer;
+        this.stages = List.copyOf(stages);
+        this.broadcast = broadcast;
+        this.lease = lease;
+        this.pacingSlackSeconds = pacingSlackSeconds;
+        this.pacingTick = Duration.ofMillis(pacingTickMs);
+    }
+
+    public boolean isPaced() {
+        return pacer.isEnabled();
+    }
+
+    /** Events queued in the pacer and not yet released. */
+    public int pacedPending() {
+        return pacer.pending();
+    }
+
+    public List<Stage> stages() {
+        return stages;
+    }
+
+    /**
+     * Scans the stage windows ahead of {@code now}. Unpaced, due stages are claimed and
+     * published right away; paced, they are queued in the pacer. Completes with the
+     * number published or newly queued.
+     */
+    public Mono<Long> scan(Instant now) {
+        // paced mode looks across the whole slack so releases can be spread out
+        long width = pacer.isEnabled() ? pacingSlackSeconds : 60;
+        List<PrePlaybackStore.Window> windows = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            Instant from = now.plusSeconds(stage.leadSeconds());
+            windows.add(new PrePlaybackStore.Window(stage.name(), from, from.plusSeconds(width)));
+        }
+        log.debug("[SCHEDULER] scanning for events in {}", windows);
+
+        Flux<PrePlaybackDue> due = store.due(windows)
+                .flatMapIterable(s -> dueStages(s, windows));
+        if (pacer.isEnabled()) {
+            return due.filter(pacer::offer).count();
+        }
+        return due.collectSortedList(BY_DEADLINE)
+                .flatMap(list -> fire(list, now));
+    }
+
+    /** Claims and publishes what the pacer releases at {@code now}; completes with the number published. */
+    public Mono<Long> releasePaced(Instant now) {
+        List<PrePlaybackDue> released = pacer.drain(now, pacingTick);
+        if (released.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return fire(released, now);
+    }
+
+    /**
+     * Requeues stages whose lease expired before {@code now} and fires them again right
+     * away, bypassing the pacer since they are late already; completes with the number
+     * published.
+     */
+    public Mono<Long> reap(Instant now) {
+        if (!lease.isEnabled()) {
+            return Mono.just(0L);
+        }
+        return Flux.fromIterable(stages)
+                .concatMap(stage -> store.reap(stage.name(), now)
+                        .map(s -> new PrePlaybackDue(s, stage.name(), s.getStartAt().minusSeconds(stage.leadSeconds()))))
+                .collectSortedList(BY_DEADLINE)
+                .flatMap(expired -> {
+                    if (expired.isEmpty()) {
+                        return Mono.just(0L);
+                    }
+                    log.warn("[SCHEDULER] {} claim(s) outlived their lease — firing again", expired.size());
+                    return fire(expired, now);
+                });
+    }
+
+    // completes with the number of schedules published
+    private Mono<Long> fire(List<PrePlaybackDue> due, Instant now) {
+        if (!broadcast.isEnabled()) {
+            return claimEach(due, now);
+        }
+        // bucket entries carry no programUrl, so programmes are told apart after the claim
+        Map<GroupKey, List<PrePlaybackDue>> groups = new LinkedHashMap<>();
+        for (PrePlaybackDue d : due) {
+            groups.computeIfAbsent(new GroupKey(d.stage(), d.schedule().getChannel(), d.schedule().getStartAt()),
+                    k -> new ArrayList<>()).add(d);
+        }
+        return Flux.fromIterable(groups.values())
+                .flatMap(group -> group.size() < broadcast.getMinGroupSize()
+                        ? claimEach(group, now)
+                        : claimAndBroadcast(group, now))
+                .reduce(0L, Long::sum);
+    }
+
+    private record GroupKey(String stage, String channel, Instant startAt) {
+    }
+
+    private Mono<Long> claimEach(List<PrePlaybackDue> due, Instant now) {
+        return Flux.fromIterable(due)
+                .flatMap(d -> claimAndPublish(d, now))
+                .filter(Boolean::booleanValue)
+                .count();
+    }
+
+    private Mono<Long> claimAndBroadcast(List<PrePlaybackDue> group, Instant now) {
+        String stage = group.get(0).stage();
+        Instant startAt = group.get(0).schedule().getStartAt();
+        List<List<PrePlaybackDue>> chunks = new ArrayList<>();
+        for (int i = 0; i < group.size(); i += broadcast.getMaxGroupSize()) {
+            chunks.add(group.subList(i, Math.min(group.size(), i + broadcast.getMaxGroupSize())));
+        }
+        PrePlaybackStore.Lease claim = lease(now);
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> store.claimAll(chunk.stream().map(d -> d.schedule().getId()).toList(), startAt, stage, claim, now)
+                        .collectList()
+                        .flatMap(claimed -> publishByProgramme(claimed, stage)
+                                .flatMap(published -> confirm(published, stage, claim, now))))
+                .reduce(0L, Long::sum);
+    }
+
+    // emits the ids of the schedules whose event was taken; events are handed on in order
+    private Mono<List<String>> publishByProgramme(List<Schedule> claimed, String stage) {
+        Map<String, List<Schedule>> programmes = new LinkedHashMap<>();
+        for (Schedule s : claimed) {
+            programmes.computeIfAbsent(String.valueOf(s.getProgramUrl()), k -> new ArrayList<>()).add(s);
+        }
+        List<Mono<List<String>>> taken = new ArrayList<>(programmes.size());
+        for (List<Schedule> audience : programmes.values()) {
+            Schedule first = audience.get(0);
+            if (audience.size() == 1) {
+                List<String> id = List.of(first.getId());
+                taken.add(publish(event(first, stage)).map(sent -> sent ? id : List.<String>of()));
+                continue;
+            }
+            log.info("[SCHEDULER] claimed {} schedule(s) of channel={} startAt={} stage={} — publishing one broadcast",
+                    audience.size(), first.getChannel(), first.getStartAt(), stage);
+            List<String> ids = audience.stream().map(Schedule::getId).toList();
+            taken.add(publish(PrePlaybackEvent.builder()
+                    .channel(first.getChannel())
+                    .programUrl(first.getProgramUrl())
+                    .startAt(first.getStartAt())
+                    .durationMin(first.getDurationMin())
+                    .stage(stage)
+                    .scheduleIds(ids)
+                    .userIds(audience.stream().map(Schedule::getUserId).toList())
+                    .build())
+                    .map(sent -> sent ? ids : List.<String>of()));
+        }
+        return Flux.merge(taken)
+                .collect(() -> new ArrayList<String>(claimed.size()), List::addAll);
+    }
+
+    // leased claims become PUBLISHED; the rest stay CLAIMED until reaped
+    private Mono<Long> confirm(List<String> published, String stage, PrePlaybackStore.Lease claim, Instant now) {
+        if (claim == null || published.isEmpty()) {
+            return Mono.just((long) published.size());
+        }
+        return store.published(published, stage, claim.owner(), now)
+                .doOnNext(confirmed -> {
+                    if (confirmed < published.size()) {
+                        log.warn("[SCHEDULER] {} of {} schedule(s) stage={} lost their lease before publishing completed",
+                                published.size() - confirmed, published.size(), stage);
+                    }
+                })
+                .thenReturn((long) published.size());
+    }
+
+    private PrePlaybackStore.Lease lease(Instant now) {
+        return lease.isEnabled() ? new PrePlaybackStore.Lease(lease.getOwner(), now.plusSeconds(lease.getSeconds())) : null;
+    }
+
+    private List<PrePlaybackDue> dueStages(Schedule s, List<PrePlaybackStore.Window> windows) {
+        List<PrePlaybackDue> due = new ArrayList<>(1);
+        for (int i = 0; i < windows.size(); i++) {
+            Stage stage = stages.get(i);
+            if (windows.get(i).contains(s.getStartAt()) && !fired(s, stage.name()) && !claimed(s, stage.name())) {
+                due.add(new PrePlaybackDue(s, stage.name(), s.getStartAt().minusSeconds(stage.leadSeconds())));
+            }
+        }
+        return due;
+    }
+
+    private static boolean fired(Schedule s, String stage) {
+        return PrePlaybackProperties.DEFAULT_STAGE.equals(stage)
+                ? Boolean.TRUE.equals(s.getPreplayPublished())
+                : s.getFiredStages() != null && s.getFiredStages().contains(stage);
+    }
+
+    // held by a lease, live or expired; an expired one is the reaper's to fire again
+    private static boolean claimed(Schedule s, String stage) {
+        Schedule.Claim claim = s.getClaims() == null ? null : s.getClaims().get(stage);
+        return claim != null && claim.getState() == Schedule.ClaimState.CLAIMED;
+    }
+
+    // the scanned schedule may be partial (a bucket entry); the event is built from the claimed document
+    private Mono<Boolean> claimAndPublish(PrePlaybackDue due, Instant now) {
+        Schedule candidate = due.schedule();
+        PrePlaybackStore.Lease claim = lease(now);
+        return store.claim(candidate, due.stage(), claim, now)
+                .flatMap(schedule -> {
+                    // We claimed it — safe to publish
+                    log.info("[SCHEDULER] claimed schedule id={} stage={} startAt={} — publishing",
+                            schedule.getId(), due.stage(), schedule.getStartAt());
+                    return publish(event(schedule, due.stage()))
+                            .flatMap(sent -> confirm(sent ? List.of(schedule.getId()) : List.of(), due.stage(), claim, now))
+                            .map(n -> n > 0);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.debug("[SCHEDULER] schedule id={} stage={} already published by another worker", candidate.getId(), due.stage());
+                    return false;
+                }));
+    }
+
+    private static PrePlaybackEvent event(Schedule schedule, String stage) {
+        return PrePlaybackEvent.builder()
+                .scheduleId(schedule.getId())
+                .userId(schedule.getUserId())
+                .channel(schedule.getChannel())
+                .programUrl(schedule.getProgramUrl())
+                .startAt(schedule.getStartAt())
+                .durationMin(schedule.getDurationMin())
+                .stage(stage)
+                .build();
+    }
+
+    // hands the event on right away; with leases, completes once the event was taken, at the
+    // latest when the lease runs out, and a claim that was not taken stays CLAIMED for the reaper
+    private Mono<Boolean> publish(PrePlaybackEvent event) {
+        CompletableFuture<Void> taken;
+        try {
+            taken = publisher.apply(event);
+        } catch (Exception ex) {
+            log.error("[SCHEDULER] publish failed for {} stage={}", event.describe(), event.getStage(), ex);
+            return Mono.just(false);
+        }
+        if (!lease.isEnabled()) {
+            return Mono.just(true);
+        }
+        return Mono.fromFuture(taken, true)
+                .thenReturn(true)
+                .timeout(Duration.ofSeconds(lease.getSeconds()))
+                .onErrorResume(ex -> {
+                    log.warn("[SCHEDULER] {} stage={} not taken by the broker, leaving it to the reaper: {}",
+                            event.describe(), event.getStage(), ex.toString());
+                    return Mono.just(false);
+                });
+    }
+}
@@ -0,0 +1,119 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Spreads pre-playback publishes over the slack before each schedule's deadline
+ * ({@code startAt - lead}) instead of releasing a whole top-of-hour scan at once.
+ * <p>
+ * Entries are (schedule, stage) pairs, so every stage of every schedule waits in the
+ * same queue. Pending entries are ordered by deadline, then priority class, and released at the
+ * token-bucket rate. A schedule whose deadline falls within the next tick is released
+ * regardless of the bucket, so the lead-time guarantee holds even when the rate is
+ * too low for the load.
+ */
+@Component
+@Slf4j
+public class PrePlaybackPacer {
+
+    static final int PRIORITY_HIGH = 0;
+    static final int PRIORITY_NORMAL = 1;
+
+    private record Pending(PrePlaybackDue due, int priority) {
+        Instant deadline() {
+            return due.deadline();
+        }
+    }
+
+    private static final Comparator<Pending> ORDER = Comparator
+            .comparing(Pending::deadline)
+            .thenComparingInt(Pending::priority)
+            .thenComparing(p -> p.due().key());
+
+    private final boolean enabled;
+    private final double ratePerSecond;
+    private final double burst;
+    private final Set<String> priorityChannels;
+    private final Set<String> priorityUsers;
+
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>(ORDER);
+    private final Set<String> queued = new HashSet<>();
+    private double tokens;
+    private Instant lastRefill;
+
+    public PrePlaybackPacer(@Value("${scheduler.pacing.enabled:false}") boolean enabled,
+                            @Value("${scheduler.pacing.rate-per-second:200}") double ratePerSecond,
+                            @Value("${scheduler.pacing.burst:400}") double burst,
+                            @Value("${scheduler.pacing.priority-channels:}") Set<String> priorityChannels,
+                            @Value("${scheduler.pacing.priority-users:}") Set<String> priorityUsers) {
+        this.enabled = enabled;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.priorityChannels = priorityChannels;
+        this.priorityUsers = priorityUsers;
+        this.tokens = burst;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queues {@code due} unless that stage of the schedule is already pending. */
+    public synchronized boolean offer(PrePlaybackDue due) {
+        if (!queued.add(due.key())) {
+            return false;
+        }
+        queue.add(new Pending(due, priorityOf(due.schedule())));
+        return true;
+    }
+
+    /**
+     * Releases the entries to claim and publish now: everything due before
+     * {@code now + tick}, then as many others as the bucket allows.
+     */
+    public synchronized List<PrePlaybackDue> drain(Instant now, Duration tick) {
+        refill(now);
+        Instant mustGoBy = now.plus(tick);
+        List<PrePlaybackDue> released = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Pending head = queue.peek();
+            boolean due = !head.deadline().isAfter(mustGoBy);
+            if (!due && tokens < 1) {
+                break;
+            }
+            tokens = Math.max(0, tokens - 1);
+            queue.poll();
+            queued.remove(head.due().key());
+            released.add(head.due());
+        }
+        if (!released.isEmpty()) {
+            log.debug("[PACER] released {} entry(ies), {} pending, {} token(s) left", released.size(), queue.size(), (int) tokens);
+        }
+        return released;
+    }
+
+    public synchronized int pending() {
+        return queue.size();
+    }
+
+    private void refill(Instant now) {
+        if (lastRefill != null && now.isAfter(lastRefill)) {
+            double elapsed = Duration.between(lastRefill, now).toNanos() / 1e9;
+            tokens = Math.min(burst, tokens + elapsed * ratePerSecond);
+        }
+        lastRefill = now;
+    }
+
+    private int priorityOf(Schedule s) {
+        return priorityChannels.contains(s.getChannel()) || priorityUsers.contains(s.getUserId())
+                ? PRIORITY_HIGH
+                : PRIORITY_NORMAL;
+    }
+}
@@ -0,0 +1,58 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * What the pre-playback engine needs from storage: find schedules with a stage still to
+ * fire by start time, and claim one stage so exactly one worker publishes it. Claims are
+ * final, or — with a {@link Lease} — held until {@link #published} and requeued by
+ * {@link #reap} when the holder never gets there.
+ */
+public interface PrePlaybackStore {
+
+    /** Schedules starting in {@code [from, to)} whose {@code stage} has not fired. */
+    record Window(String stage, Instant from, Instant to) {
+
+        boolean contains(Instant startAt) {
+            return !startAt.isBefore(from) && startAt.isBefore(to);
+        }
+    }
+
+    /** A claim held by {@code owner}; past {@code until} it may be reaped. */
+    record Lease(String owner, Instant until) {
+    }
+
+    /**
+     * Schedules matching any of {@code windows}, read with one query; may be partial
+     * documents and may include stages that fired since.
+     */
+    Flux<Schedule> due(List<Window> windows);
+
+    /**
+     * Claims {@code stage} of {@code candidate} if it is pending, and the schedule still
+     * starts at the scanned {@code startAt}; emits the claimed document, or completes
+     * empty when another worker won or the schedule moved. Without a {@code lease} the
+     * stage is marked fired right away, with one it is CLAIMED until {@link #published}.
+     */
+    Mono<Schedule> claim(Schedule candidate, String stage, Lease lease, Instant now);
+
+    /**
+     * {@link #claim} for every schedule in {@code ids} starting at {@code startAt}, with one
+     * write; emits the documents this call claimed.
+     */
+    Flux<Schedule> claimAll(List<String> ids, Instant startAt, String stage, Lease lease, Instant now);
+
+    /**
+     * CLAIMED → PUBLISHED for those of {@code ids} whose {@code stage} is still leased by
+     * {@code owner}; completes with how many were.
+     */
+    Mono<Long> published(List<String> ids, String stage, String owner, Instant now);
+
+    /** CLAIMED → PENDING for leases of {@code stage} that expired before {@code now}; emits those schedules. */
+    Flux<Schedule> reap(String stage, Instant now);
+}
@@ -0,0 +1,110 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily expands one schedule into the start instants of its occurrences that overlap
+ * {@code [from, to)}, in order. Recurrences are computed in the given zone, by default
+ * {@link Schedule#ZONE}, the one request dates and times are read in; monthly occurrences
+ * are always derived from the first start, so a series on the 31st lands on the last day
+ * of shorter months without drifting.
+ */
+public final class RecurrenceIterator implements Iterator<Instant> {
+
+    static final int DEFAULT_DURATION_MIN = 30;
+
+    private final ZonedDateTime first;
+    private final Schedule.Recurrence recurrence;
+    private final Duration duration;
+    private final Instant to;
+    private long index;
+    private Instant next;
+
+    public RecurrenceIterator(Schedule schedule, Instant from, Instant to) {
+        this(schedule, from, to, Schedule.ZONE);
+    }
+
+    public RecurrenceIterator(Schedule schedule, Instant from, Instant to, ZoneId zone) {
+        this.first = schedule.getStartAt().atZone(zone);
+        this.recurrence = schedule.getRecurrence() == null ? Schedule.Recurrence.NONE : schedule.getRecurrence();
+        this.duration = Duration.ofMinutes(durationMin(schedule));
+        this.to = to;
+        this.index = firstIndex(from.minus(duration));
+        this.next = advance(from);
+    }
+
+    static int durationMin(Schedule schedule) {
+        return schedule.getDurationMin() != null ? schedule.getDurationMin() : DEFAULT_DURATION_MIN;
+    }
+
+    public Duration duration() {
+        return duration;
+    }
+
+    /** The start of the next occurrence without consuming it, or {@code null}. */
+    public Instant peek() {
+        return next;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Instant next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Instant current = next;
+        index++;
+        next = advance(null);
+        return current;
+    }
+
+    // a close lower bound for the first occurrence that ends after from, so expanding
+    // a long-running series does not walk through its whole history
+    private long firstIndex(Instant earliestStart) {
+        Instant start = first.toInstant();
+        if (!earliestStart.isAfter(start)) {
+            return 0;
+        }
+        return switch (recurrence) {
+            case NONE -> 0;
+            case DAILY -> ChronoUnit.DAYS.between(first, earliestStart.atZone(first.getZone()));
+            case WEEKLY -> ChronoUnit.WEEKS.between(first, earliestStart.atZone(first.getZone()));
+            case MONTHLY -> Math.max(0, ChronoUnit.MONTHS.between(first, earliestStart.atZone(first.getZone())) - 1);
+        };
+    }
+
+    private Instant occurrence(long i) {
+        return switch (recurrence) {
+            case NONE -> i == 0 ? first.toInstant() : null;
+            case DAILY -> first.plusDays(i).toInstant();
+            case WEEKLY -> first.plusWeeks(i).toInstant();
+            case MONTHLY -> first.plusMonths(i).toInstant();
+        };
+    }
+
+    // from is only given for the first call: skip occurrences that end at or before it
+    private Instant advance(Instant from) {
+        while (true) {
+            Instant start = occurrence(index);
+            if (start == null || !start.isBefore(to)) {
+                return null;
+            }
+            if (from == null || start.plus(duration).isAfter(from)) {
+                return start;
+            }
+            index++;
+        }
+    }
+}
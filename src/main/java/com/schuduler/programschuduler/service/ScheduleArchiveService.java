@@ -0,0 +1,158 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.archive.ScheduleSegmentFile;
+import com.schuduler.programschuduler.dto.ScheduleResponse;
+import com.schuduler.programschuduler.model.Schedule;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves ended one-shot schedules out of the {@code schedules} collection into per-day
+ * {@link ScheduleSegmentFile}s under {@code scheduler.archive.dir}, and reads them back
+ * for reporting.
+ * <p>
+ * Each batch is appended and synced before its documents are deleted, so a crash in
+ * between can only leave a row both archived and live; the next run archives it again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduleArchiveService {
+
+    private final ReactiveMongoTemplate mongo;
+
+    @Value("${scheduler.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${scheduler.archive.dir:./archive}")
+    private String dir;
+
+    // keep the recent past hot; also covers programmes still running at the cutoff
+    @Value("${scheduler.archive.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${scheduler.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${scheduler.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${scheduler.archive.batch-pause-ms:200}")
+    private long batchPauseMs;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Scheduled(fixedDelayString = "${scheduler.archive.interval-ms:300000}",
+               initialDelayString = "${scheduler.archive.interval-ms:300000}")
+    public void archiveEnded() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(Duration.ofHours(retentionHours));
+        Flux.range(0, maxBatchesPerRun)
+                .concatMap(i -> archiveBatch(cutoff)
+                        .delaySubscription(i == 0 ? Duration.ZERO : Duration.ofMillis(batchPauseMs)))
+                .takeUntil(archived -> archived < batchSize)
+                .reduce(0, Integer::sum)
+                .doFinally(signal -> running.set(false))
+                .subscribe(total -> log.info("[ARCHIVE] archived {} schedule(s) that started before {}", total, cutoff),
+                        t -> log.error("[ARCHIVE] archive run failed", t));
+    }
+
+    Mono<Integer> archiveBatch(Instant cutoff) {
+        Query q = Query.query(ended(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "startAt"))
+                .limit(batchSize);
+
+        return mongo.find(q, Schedule.class)
+                .collectList()
+                .flatMap(batch -> {
+                    if (batch.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    List<String> ids = batch.stream().map(Schedule::getId).toList();
+                    return Mono.fromRunnable(() -> writeSegments(batch))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            // a schedule moved or made recurring since the find stays; its copy in the segment is stale
+                            .then(mongo.remove(Query.query(ended(cutoff).and("_id").in(ids)), Schedule.class))
+                            .map(result -> (int) result.getDeletedCount());
+                });
+    }
+
+    private static Criteria ended(Instant cutoff) {
+        return Criteria.where("startAt").lt(cutoff)
+                .orOperator(Criteria.where("recurrence").is(Schedule.Recurrence.NONE),
+                        Criteria.where("recurrence").is(null));
+    }
+
+    /** Archived schedules that started on {@code from}..{@code to} (UTC days, inclusive), in file order. */
+    public Flux<ScheduleResponse> scan(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return Flux.error(new IllegalArgumentException("to must not be before from"));
+        }
+        return Flux.fromStream(from.datesUntil(to.plusDays(1)))
+                .concatMap(this::readDay)
+                .map(ScheduleService.toResponse());
+    }
+
+    private Flux<Schedule> readDay(LocalDate day) {
+        ScheduleSegmentFile file = ScheduleSegmentFile.forDay(root(), day);
+        return Flux.using(file::open,
+                        reader -> Flux.<List<Schedule>>generate(sink -> {
+                            try {
+                                List<Schedule> rows = reader.next();
+                                if (rows == null) {
+                                    sink.complete();
+                                } else {
+                                    sink.next(rows);
+                                }
+                            } catch (IOException e) {
+                                sink.error(e);
+                            }
+                        }),
+                        reader -> {
+                            try {
+                                reader.close();
+                            } catch (IOException e) {
+                                log.warn("[ARCHIVE] closing {} failed", file.path(), e);
+                            }
+                        })
+                .flatMapIterable(rows -> rows)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void writeSegments(List<Schedule> batch) {
+        Map<LocalDate, List<Schedule>> byDay = new TreeMap<>();
+        for (Schedule s : batch) {
+            byDay.computeIfAbsent(LocalDate.ofInstant(s.getStartAt(), ZoneOffset.UTC), d -> new ArrayList<>()).add(s);
+        }
+        byDay.forEach((day, rows) -> {
+            try {
+                ScheduleSegmentFile.forDay(root(), day).append(rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException("archiving " + rows.size() + " schedule(s) for " + day + " failed", e);
+            }
+        });
+    }
+
+    private Path root() {
+        return Path.of(dir);
+    }
+}
@@ -0,0 +1,154 @@
+package com.schuduler.programschuduler.service;
+
+import com.mongodb.MongoException;
+import com.schuduler.programschuduler.model.Schedule;
+import com.schuduler.programschuduler.model.ScheduleBucket;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Optional secondary layout of upcoming schedules in {@link ScheduleBucket} documents
+ * ({@code scheduler.storage.buckets.enabled}). A pre-playback scan then reads one or two
+ * bucket documents instead of range-scanning {@code schedules}.
+ * <p>
+ * Each bucket change is a single-document {@code $addToSet}/{@code $pull} that the caller
+ * runs {@link #atomically} with the schedule write it mirrors, so a crash or a failed
+ * bucket write cannot leave a schedule that never fires or an orphan entry; this needs
+ * MongoDB as a replica set. Buckets expire through a TTL index a day after their slice
+ * has passed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduleBucketStore {
+
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private final ReactiveMongoTemplate mongo;
+    private volatile TransactionalOperator transactions;
+
+    @Value("${scheduler.storage.buckets.enabled:false}")
+    private boolean enabled;
+
+    @Value("${scheduler.storage.buckets.bucket-seconds:60}")
+    private long bucketSeconds;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code writes}, a schedule write and its bucket change, in one multi-document
+     * transaction. Transient transaction errors, e.g. two writers racing on the same
+     * bucket document, are retried; {@code writes} must therefore be safe to resubscribe.
+     */
+    public <T> Mono<T> atomically(Mono<T> writes) {
+        return transactions().transactional(writes)
+                .retryWhen(Retry.backoff(5, Duration.ofMillis(20))
+                        .filter(ScheduleBucketStore::isTransient)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    public Mono<Void> add(Schedule s) {
+        if (s.getStartAt() == null) {
+            return Mono.empty();
+        }
+        long bucket = bucketOf(s.getStartAt());
+        ScheduleBucket.Entry entry = ScheduleBucket.Entry.builder()
+                .scheduleId(s.getId())
+                .startAt(s.getStartAt())
+                .userId(s.getUserId())
+                .channel(s.getChannel())
+                .build();
+        Update u = new Update()
+                .addToSet("entries", entry)
+                .setOnInsert("expireAt", Instant.ofEpochSecond(bucket + bucketSeconds).plus(RETENTION));
+        return mongo.upsert(Query.query(Criteria.where("_id").is(bucket)), u, ScheduleBucket.class).then();
+    }
+
+    public Mono<Void> remove(Schedule s) {
+        if (s.getStartAt() == null) {
+            return Mono.empty();
+        }
+        Update u = new Update().pull("entries", Query.query(Criteria.where("scheduleId").is(s.getId())).getQueryObject());
+        return mongo.updateFirst(Query.query(Criteria.where("_id").is(bucketOf(s.getStartAt()))), u, ScheduleBucket.class).then();
+    }
+
+    /** Replaces {@code previous}'s entry, in its bucket, with {@code current}'s. */
+    public Mono<Void> move(Schedule previous, Schedule current) {
+        return remove(previous).then(add(current));
+    }
+
+    /** Entries starting in {@code [from, to)} as partial schedules (id, startAt, userId, channel). */
+    public Flux<Schedule> due(Instant from, Instant to) {
+        Query q = Query.query(Criteria.where("_id").gte(bucketOf(from)).lte(bucketOf(to.minusNanos(1))))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongo.find(q, ScheduleBucket.class)
+                .flatMapIterable(ScheduleBucket::getEntries)
+                .filter(e -> !e.getStartAt().isBefore(from) && e.getStartAt().isBefore(to))
+                .map(e -> Schedule.builder()
+                        .id(e.getScheduleId())
+                        .startAt(e.getStartAt())
+                        .userId(e.getUserId())
+                        .channel(e.getChannel())
+                        .build());
+    }
+
+    // TTL index and a backfill of schedules created while buckets were off; $addToSet
+    // makes re-adding existing entries a no-op
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepare() {
+        if (!enabled) {
+            return;
+        }
+        Query upcoming = Query.query(Criteria.where("startAt").gte(Instant.now()));
+        upcoming.fields().include("_id", "startAt", "userId", "channel");
+        mongo.indexOps(ScheduleBucket.class)
+                .ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO))
+                .thenMany(mongo.find(upcoming, Schedule.class))
+                .flatMap(this::add, 16)
+                .count()
+                .subscribe(n -> log.info("[BUCKETS] backfilled {} upcoming schedule(s) into {}s buckets", n, bucketSeconds),
+                        t -> log.error("[BUCKETS] backfill failed", t));
+    }
+
+    private TransactionalOperator transactions() {
+        TransactionalOperator t = transactions;
+        if (t == null) {
+            t = TransactionalOperator.create(new ReactiveMongoTransactionManager(mongo.getMongoDatabaseFactory()));
+            transactions = t;
+        }
+        return t;
+    }
+
+    private static boolean isTransient(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof MongoException e && e.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long bucketOf(Instant t) {
+        return Math.floorDiv(t.getEpochSecond(), bucketSeconds) * bucketSeconds;
+    }
+}
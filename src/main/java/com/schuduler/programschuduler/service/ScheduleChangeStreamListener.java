@@ -0,0 +1,187 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonValue;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tails the {@code schedules} change stream: invalidates {@link ScheduleNearCache}
+ * entries on every replica, feeds changes to the {@link ChannelTimelineIndex} and the
+ * {@link UpcomingScheduleIndex}, and signals {@link #changesOf per-user changes} to
+ * now-streams. Requires MongoDB to run as a replica set; until the stream is open, and whenever it fails, ends or is invalidated (e.g. the collection was
+ * dropped or renamed), the near-cache and the {@link UpcomingScheduleIndex} are suspended;
+ * the stream is then reopened with backoff, and on reconnect the cache starts empty and
+ * the indexes are rebuilt since changes may have been missed in between. After the
+ * {@link UpcomingScheduleIndex} was restored from a snapshot, the first subscription
+ * resumes at the snapshot's watermark instead of rebuilding it; should that point have
+ * left the oplog already, the retry falls back to a rebuild.
+ */
+@Component
+@Slf4j
+public class ScheduleChangeStreamListener {
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    // emitted when the stream (re)opens: changes may have been missed for any user
+    private static final String ANY_USER = "";
+
+    private final ReactiveMongoTemplate mongo;
+    private final ScheduleNearCache nearCache;
+    private final ChannelTimelineIndex timelines;
+    private final UpcomingScheduleIndex nowIndex;
+    private final Timer invalidationLag;
+    private final Sinks.Many<String> changedUsers = Sinks.many().multicast().directBestEffort();
+    private Disposable subscription;
+
+    public ScheduleChangeStreamListener(ReactiveMongoTemplate mongo,
+                                        ScheduleNearCache nearCache,
+                                        ChannelTimelineIndex timelines,
+                                        UpcomingScheduleIndex nowIndex,
+                                        MeterRegistry registry) {
+        this.mongo = mongo;
+        this.nearCache = nearCache;
+        this.timelines = timelines;
+        this.nowIndex = nowIndex;
+        this.invalidationLag = Timer.builder("scheduler.cache.invalidation.lag")
+                .description("Time from a schedules write to its near-cache invalidation")
+                .register(registry);
+    }
+
+    /** Whether the change stream is tailed at all, i.e. one of its consumers is enabled. */
+    public boolean isEnabled() {
+        return nearCache.isEnabled() || timelines.isEnabled() || nowIndex.isEnabled();
+    }
+
+    /**
+     * Signals whenever the schedules of {@code userId} may have changed: a change to one of
+     * them, or a (re)opened stream that may have missed some. A deleted schedule is only
+     * attributed to its user with the {@link UpcomingScheduleIndex} enabled. Slow
+     * subscribers miss signals rather than buffer them.
+     */
+    public Flux<String> changesOf(String userId) {
+        return changedUsers.asFlux().filter(u -> u.equals(userId) || u.equals(ANY_USER));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        subscription = Flux.defer(() -> {
+                    Instant resumeAt = nowIndex.takeResumePoint();
+                    return mongo.changeStream(Schedule.class)
+                            .withOptions(options -> {
+                                options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+                                if (resumeAt != null) {
+                                    options.resumeAt(resumeAt);
+                                }
+                            })
+                            .watchCollection("schedules")
+                            .listen()
+                            .doOnSubscribe(s -> {
+                                log.info("[CACHE] watching schedules change stream{}",
+                                        resumeAt == null ? "" : " from " + resumeAt);
+                                nearCache.resume();
+                                timelines.rebuild();
+                                nowIndex.resume(resumeAt);
+                                changedUsers.tryEmitNext(ANY_USER);
+                            });
+                })
+                .doOnError(t -> {
+                    log.warn("[CACHE] schedules change stream failed, near-cache and now-index suspended: {}",
+                            t.getMessage());
+                    suspend();
+                })
+                .doOnComplete(() -> {
+                    log.warn("[CACHE] schedules change stream ended, near-cache and now-index suspended");
+                    suspend();
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_BACKOFF).maxBackoff(MAX_BACKOFF))
+                .repeatWhen(ScheduleChangeStreamListener::reopen)
+                .subscribe(this::onChange);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    // an invalidated stream completes instead of failing; back off while reopened streams
+    // keep ending without delivering a change, e.g. until the collection is recreated
+    private static Publisher<?> reopen(Flux<Long> completions) {
+        AtomicInteger idle = new AtomicInteger();
+        return completions.concatMap(changes -> {
+            int attempt = changes > 0 ? 0 : idle.get();
+            idle.set(attempt + 1);
+            long delay = Math.min(MAX_BACKOFF.toMillis(), MIN_BACKOFF.toMillis() << Math.min(attempt, 5));
+            return Mono.delay(Duration.ofMillis(delay));
+        });
+    }
+
+    // until the stream reopens, invalidations and index updates are missed
+    private void suspend() {
+        nearCache.suspend();
+        nowIndex.suspend();
+    }
+
+    // best effort: with no subscriber or a slow one the signal is dropped
+    private void notifyChanged(String userId) {
+        if (userId != null && !userId.equals(ANY_USER)) {
+            changedUsers.tryEmitNext(userId);
+        }
+    }
+
+    private void onChange(ChangeStreamEvent<Schedule> event) {
+        BsonValue key = event.getRaw() == null || event.getRaw().getDocumentKey() == null
+                ? null
+                : event.getRaw().getDocumentKey().get("_id");
+        if (key == null) {
+            // drop/rename/invalidate: the stream ends after these; reopening it rebuilds the indexes
+            suspend();
+            return;
+        }
+        String id = key.isObjectId() ? key.asObjectId().getValue().toHexString() : key.asString().getValue();
+        nearCache.invalidate(id);
+        Instant writtenAt = event.getTimestamp();
+        // read before the index forgets it: a delete carries no userId, an update only the new one
+        String previousUser = nowIndex.userOf(id);
+        String user = null;
+        if (event.getOperationType() == OperationType.DELETE || event.getBody() == null) {
+            timelines.remove(id);
+            nowIndex.remove(id, writtenAt);
+        } else {
+            user = event.getBody().getUserId();
+            timelines.apply(event.getBody());
+            nowIndex.apply(event.getBody(), writtenAt);
+        }
+        notifyChanged(user);
+        if (previousUser != null && !previousUser.equals(user)) {
+            notifyChanged(previousUser);
+        }
+        if (writtenAt != null) {
+            invalidationLag.record(Duration.between(writtenAt, Instant.now()));
+        }
+    }
+}
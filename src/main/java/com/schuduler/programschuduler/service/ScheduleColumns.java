@@ -0,0 +1,614 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.CRC32;
+
+/**
+ * Schedules held as primitive columns, one row per schedule: {@code startAt} in epoch
+ * seconds, duration as an {@code int}, user, channel and programme URL as codes into
+ * append-only dictionaries, and the id packed into a {@code long} and an {@code int}
+ * when it is an ObjectId. Ids are found through an open-addressing (linear probing)
+ * table of row numbers; each user's rows are chained through {@code nextOfUser}.
+ * Freed rows are reused.
+ * <p>
+ * One writer at a time, any number of readers: reads run under an optimistic
+ * {@link StampedLock} stamp and retry under the read lock if a write overlapped, so a
+ * torn read is detected rather than returned.
+ * <p>
+ * A snapshot file is the live rows written column by column through a memory mapping:
+ * magic, version, watermark (epoch millis), row count, the three dictionaries, the
+ * columns, the non-ObjectId ids, and a CRC32 of everything before it. It is written
+ * beside the target and renamed over it, so a reader sees the old or the new file.
+ */
+final class ScheduleColumns {
+
+    private static final int NONE = -1;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final int MAGIC = 0x53434f4c; // "SCOL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    private static final int ROW_BYTES = 8 + 4 + 8 + 4 + 4 + 4 + 4;
+
+    /** Columns read back from a snapshot, and the watermark they were written with. */
+    record Snapshot(ScheduleColumns columns, Instant watermark) {
+    }
+
+    private final StampedLock lock = new StampedLock();
+
+    // per row
+    private long[] idHigh;          // ObjectId bytes 0..7
+    private int[] idLow;            // ObjectId bytes 8..11
+    private String[] otherIds;      // ids that are not ObjectIds; allocated on first such id
+    private long[] startSec;
+    private int[] durationMin;      // NONE for no duration
+    private int[] user;             // NONE for no userId
+    private int[] channel;
+    private int[] programUrl;
+    private int[] nextOfUser;       // NONE ends the chain; free rows chain the free list
+    private int rows;               // rows ever allocated
+    private int live;
+    private int free = NONE;
+
+    // per user code
+    private int[] firstOfUser = new int[0];
+
+    // id -> row; capacity a power of two, at most half full
+    private int[] slots;
+
+    private final Dictionary users = new Dictionary();
+    private final Dictionary channels = new Dictionary();
+    private final Dictionary programUrls = new Dictionary();
+
+    ScheduleColumns(int expectedRows) {
+        int capacity = Math.max(16, expectedRows);
+        idHigh = new long[capacity];
+        idLow = new int[capacity];
+        startSec = new long[capacity];
+        durationMin = new int[capacity];
+        user = new int[capacity];
+        channel = new int[capacity];
+        programUrl = new int[capacity];
+        nextOfUser = new int[capacity];
+        slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        Arrays.fill(slots, NONE);
+    }
+
+    /** Inserts or replaces the row of {@code s}; ignored without an id or {@code startAt}. */
+    void put(Schedule s) {
+        if (s.getId() == null || s.getStartAt() == null) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            String id = s.getId();
+            int slot = findSlot(id);
+            int row;
+            if (slot != NONE) {
+                row = slots[slot];
+                unlinkFromUser(row);
+            } else {
+                row = allocate();
+                setId(row, id);
+                live++;
+                insertSlot(row);
+            }
+            startSec[row] = s.getStartAt().getEpochSecond();
+            durationMin[row] = s.getDurationMin() != null ? s.getDurationMin() : NONE;
+            user[row] = users.encode(s.getUserId());
+            channel[row] = channels.encode(s.getChannel());
+            programUrl[row] = programUrls.encode(s.getProgramUrl());
+            linkToUser(row);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean remove(String id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(id);
+            if (slot == NONE) {
+                return false;
+            }
+            int row = slots[slot];
+            deleteSlot(slot);
+            unlinkFromUser(row);
+            if (otherIds != null) {
+                otherIds[row] = null;
+            }
+            nextOfUser[row] = free;
+            free = row;
+            live--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** The schedules of {@code userId}, as partial documents (id, userId, channel, startAt, durationMin, programUrl). */
+    List<Schedule> byUser(String userId) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                List<Schedule> read = readUser(userId);
+                if (lock.validate(stamp)) {
+                    return read;
+                }
+            } catch (RuntimeException torn) {
+                // a write moved the arrays under us; read again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return readUser(userId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** The userId of schedule {@code id}, or {@code null} when it has no row or no user. */
+    String userOf(String id) {
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(id);
+            return slot == NONE ? null : users.value(user[slots[slot]]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int size() {
+        return live;
+    }
+
+    // columns at capacity, the id table and the dictionaries
+    long estimatedBytes() {
+        long bytes = 16 + 12 * (16L + 4);
+        bytes += (long) idHigh.length * (8 + 4 + 8 + 4 + 4 + 4 + 4 + 4);
+        bytes += 4L * slots.length + 4L * firstOfUser.length;
+        if (otherIds != null) {
+            bytes += 4L * otherIds.length;
+            for (int r = 0; r < rows; r++) {
+                bytes += otherIds[r] == null ? 0 : 40 + otherIds[r].length();
+            }
+        }
+        return bytes + users.estimatedBytes() + channels.estimatedBytes() + programUrls.estimatedBytes();
+    }
+
+    /** Writes the live rows to {@code path}; returns the file size. */
+    long writeSnapshot(Path path, Instant watermark) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            int[] liveRows = new int[live];
+            int n = 0;
+            int foreign = 0;
+            long foreignBytes = 0;
+            for (int row : slots) {
+                if (row != NONE) {
+                    liveRows[n++] = row;
+                    String other = otherIds != null ? otherIds[row] : null;
+                    if (other != null) {
+                        foreign++;
+                        foreignBytes += 4 + 4 + other.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                }
+            }
+            byte[][] userBytes = users.encoded();
+            byte[][] channelBytes = channels.encoded();
+            byte[][] urlBytes = programUrls.encoded();
+            long size = HEADER_BYTES + Dictionary.bytes(userBytes) + Dictionary.bytes(channelBytes)
+                    + Dictionary.bytes(urlBytes) + (long) n * ROW_BYTES + 4 + foreignBytes + 4;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("snapshot of " + n + " rows exceeds a single mapping");
+            }
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buf.putInt(MAGIC).putInt(VERSION).putLong(watermark.toEpochMilli()).putInt(n);
+                Dictionary.put(buf, userBytes);
+                Dictionary.put(buf, channelBytes);
+                Dictionary.put(buf, urlBytes);
+                for (int i = 0; i < n; i++) {
+                    buf.putLong(idHigh[liveRows[i]]);
+                }
+                for (int i = 0; i < n; i++) {
+                    buf.putInt(idLow[liveRows[i]]);
+                }
+                for (int i = 0; i < n; i++) {
+                    buf.putLong(startSec[liveRows[i]]);
+                }
+                for (int i = 0; i < n; i++) {
+                    buf.putInt(durationMin[liveRows[i]]);
+                }
+                for (int i = 0; i < n; i++) {
+                    buf.putInt(user[liveRows[i]]);
+                }
+                for (int i = 0; i < n; i++) {
+                    buf.putInt(this.channel[liveRows[i]]);
+                }
+                for (int i = 0; i < n; i++) {
+                    buf.putInt(programUrl[liveRows[i]]);
+                }
+                buf.putInt(foreign);
+                for (int i = 0; foreign > 0 && i < n; i++) {
+                    String other = otherIds[liveRows[i]];
+                    if (other != null) {
+                        byte[] bytes = other.getBytes(StandardCharsets.UTF_8);
+                        buf.putInt(i).putInt(bytes.length).put(bytes);
+                    }
+                }
+                buf.putInt(checksum(buf, (int) size - 4));
+                buf.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Maps {@code path} and rebuilds the id table and user chains from its columns. */
+    static Snapshot readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("not a schedule columns snapshot: " + path);
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buf.getInt((int) size - 4) != checksum(buf, (int) size - 4)) {
+                throw new IOException("checksum mismatch in " + path);
+            }
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("not a schedule columns snapshot: " + path);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version + " in " + path);
+            }
+            Instant watermark = Instant.ofEpochMilli(buf.getLong());
+            int n = buf.getInt();
+            ScheduleColumns c = new ScheduleColumns(n);
+            c.users.load(buf);
+            c.channels.load(buf);
+            c.programUrls.load(buf);
+            buf.asLongBuffer().get(c.idHigh, 0, n);
+            buf.position(buf.position() + 8 * n);
+            buf.asIntBuffer().get(c.idLow, 0, n);
+            buf.position(buf.position() + 4 * n);
+            buf.asLongBuffer().get(c.startSec, 0, n);
+            buf.position(buf.position() + 8 * n);
+            for (int[] column : new int[][] { c.durationMin, c.user, c.channel, c.programUrl }) {
+                buf.asIntBuffer().get(column, 0, n);
+                buf.position(buf.position() + 4 * n);
+            }
+            int foreign = buf.getInt();
+            if (foreign > 0) {
+                c.otherIds = new String[c.idHigh.length];
+            }
+            for (int i = 0; i < foreign; i++) {
+                int row = buf.getInt();
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                c.otherIds[row] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            c.rows = n;
+            c.live = n;
+            for (int row = 0; row < n; row++) {
+                c.insertSlot(row);
+                c.linkToUser(row);
+            }
+            return new Snapshot(c, watermark);
+        }
+    }
+
+    private static int checksum(ByteBuffer buf, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().position(0).limit(length));
+        return (int) crc.getValue();
+    }
+
+    private List<Schedule> readUser(String userId) {
+        int u = users.code(userId);
+        if (u == NONE || u >= firstOfUser.length) {
+            return new ArrayList<>(0);
+        }
+        List<Schedule> out = new ArrayList<>(4);
+        // bounded, so a chain torn by a concurrent write cannot loop
+        int guard = rows;
+        for (int r = firstOfUser[u]; r != NONE && guard-- >= 0; r = nextOfUser[r]) {
+            out.add(Schedule.builder()
+                    .id(id(r))
+                    .userId(userId)
+                    .channel(channels.value(channel[r]))
+                    .startAt(Instant.ofEpochSecond(startSec[r]))
+                    .durationMin(durationMin[r] == NONE ? null : durationMin[r])
+                    .programUrl(programUrls.value(programUrl[r]))
+                    .build());
+        }
+        return out;
+    }
+
+    private String id(int row) {
+        String other = otherIds != null ? otherIds[row] : null;
+        return other != null ? other : HEX.toHexDigits(idHigh[row]) + HEX.toHexDigits(idLow[row]);
+    }
+
+    private void setId(int row, String id) {
+        if (isObjectId(id)) {
+            idHigh[row] = HexFormat.fromHexDigitsToLong(id, 0, 16);
+            idLow[row] = HexFormat.fromHexDigits(id, 16, 24);
+            if (otherIds != null) {
+                otherIds[row] = null;
+            }
+            return;
+        }
+        if (otherIds == null) {
+            otherIds = new String[idHigh.length];
+        }
+        otherIds[row] = id;
+    }
+
+    // lower-case only, so the id reads back exactly as written
+    private static boolean isObjectId(String id) {
+        if (id.length() != 24) {
+            return false;
+        }
+        for (int i = 0; i < 24; i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String id) {
+        if (isObjectId(id)) {
+            return hash(HexFormat.fromHexDigitsToLong(id, 0, 16), HexFormat.fromHexDigits(id, 16, 24));
+        }
+        return mix(id.hashCode());
+    }
+
+    private static int hash(long high, int low) {
+        return mix(Long.hashCode(high * 0x9E3779B97F4A7C15L) ^ low);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int rowHash(int row) {
+        String other = otherIds != null ? otherIds[row] : null;
+        return other != null ? mix(other.hashCode()) : hash(idHigh[row], idLow[row]);
+    }
+
+    private boolean matches(int row, String id) {
+        String other = otherIds != null ? otherIds[row] : null;
+        if (other != null) {
+            return other.equals(id);
+        }
+        return isObjectId(id)
+                && idHigh[row] == HexFormat.fromHexDigitsToLong(id, 0, 16)
+                && idLow[row] == HexFormat.fromHexDigits(id, 16, 24);
+    }
+
+    private int findSlot(String id) {
+        int mask = slots.length - 1;
+        for (int i = hash(id) & mask; slots[i] != NONE; i = (i + 1) & mask) {
+            if (matches(slots[i], id)) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertSlot(int row) {
+        if (live * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int i = rowHash(row) & mask;
+        while (slots[i] != NONE) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = row;
+    }
+
+    // backward-shift deletion: entries after the hole move up unless they sit at or after their home slot
+    private void deleteSlot(int hole) {
+        int mask = slots.length - 1;
+        int i = hole;
+        for (int j = (i + 1) & mask; slots[j] != NONE; j = (j + 1) & mask) {
+            int home = rowHash(slots[j]) & mask;
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        slots[i] = NONE;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        int[] resized = new int[capacity];
+        Arrays.fill(resized, NONE);
+        int mask = capacity - 1;
+        for (int row : old) {
+            if (row == NONE) {
+                continue;
+            }
+            int i = rowHash(row) & mask;
+            while (resized[i] != NONE) {
+                i = (i + 1) & mask;
+            }
+            resized[i] = row;
+        }
+        slots = resized;
+    }
+
+    private int allocate() {
+        if (free != NONE) {
+            int row = free;
+            free = nextOfUser[row];
+            return row;
+        }
+        if (rows == idHigh.length) {
+            grow(idHigh.length * 2);
+        }
+        return rows++;
+    }
+
+    private void grow(int capacity) {
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        if (otherIds != null) {
+            otherIds = Arrays.copyOf(otherIds, capacity);
+        }
+        startSec = Arrays.copyOf(startSec, capacity);
+        durationMin = Arrays.copyOf(durationMin, capacity);
+        user = Arrays.copyOf(user, capacity);
+        channel = Arrays.copyOf(channel, capacity);
+        programUrl = Arrays.copyOf(programUrl, capacity);
+        nextOfUser = Arrays.copyOf(nextOfUser, capacity);
+    }
+
+    private void linkToUser(int row) {
+        int u = user[row];
+        if (u == NONE) {
+            nextOfUser[row] = NONE;
+            return;
+        }
+        if (u >= firstOfUser.length) {
+            int previous = firstOfUser.length;
+            int[] grown = Arrays.copyOf(firstOfUser, Math.max(16, Math.max(u + 1, previous * 2)));
+            Arrays.fill(grown, previous, grown.length, NONE);
+            firstOfUser = grown;
+        }
+        nextOfUser[row] = firstOfUser[u];
+        firstOfUser[u] = row;
+    }
+
+    private void unlinkFromUser(int row) {
+        int u = user[row];
+        if (u == NONE) {
+            return;
+        }
+        if (firstOfUser[u] == row) {
+            firstOfUser[u] = nextOfUser[row];
+            return;
+        }
+        for (int r = firstOfUser[u]; r != NONE; r = nextOfUser[r]) {
+            if (nextOfUser[r] == row) {
+                nextOfUser[r] = nextOfUser[row];
+                return;
+            }
+        }
+    }
+
+    /** Append-only string dictionary; codes are stable for the life of the columns. */
+    static final class Dictionary {
+
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private String[] values = new String[16];
+        private int size;
+
+        int encode(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            codes.put(value, size);
+            return size++;
+        }
+
+        int code(String value) {
+            Integer code = value == null ? null : codes.get(value);
+            return code == null ? NONE : code;
+        }
+
+        String value(int code) {
+            return code == NONE ? null : values[code];
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[][] encoded() {
+            byte[][] out = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                out[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            }
+            return out;
+        }
+
+        static long bytes(byte[][] encoded) {
+            long bytes = 4;
+            for (byte[] value : encoded) {
+                bytes += 4 + value.length;
+            }
+            return bytes;
+        }
+
+        static void put(ByteBuffer buf, byte[][] encoded) {
+            buf.putInt(encoded.length);
+            for (byte[] value : encoded) {
+                buf.putInt(value.length).put(value);
+            }
+        }
+
+        // into an empty dictionary, keeping the written codes
+        void load(ByteBuffer buf) {
+            int count = buf.getInt();
+            values = new String[Math.max(16, count)];
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+                codes.put(values[i], i);
+            }
+            size = count;
+        }
+
+        // the string, its slot and its map entry
+        long estimatedBytes() {
+            long bytes = 16 + 16 + 4L * values.length;
+            for (int i = 0; i < size; i++) {
+                bytes += 40 + values[i].length() + 48;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.schuduler.programschuduler.service;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.*;
+
+/**
+ * Client-selected subset of {@link com.schuduler.programschuduler.dto.ScheduleResponse}
+ * fields, parsed from a {@code fields=id,title,startAt} query parameter and applied as
+ * a MongoDB projection so unrequested fields are never read.
+ */
+public final class ScheduleFields {
+
+    private static final Map<String, String> COLUMNS = Map.ofEntries(
+            Map.entry("id", "_id"),
+            Map.entry("userId", "userId"),
+            Map.entry("title", "title"),
+            Map.entry("channel", "channel"),
+            Map.entry("startAt", "startAt"),
+            Map.entry("durationMin", "durationMin"),
+            Map.entry("recurrence", "recurrence"),
+            Map.entry("programUrl", "programUrl"),
+            Map.entry("notes", "notes"),
+            Map.entry("createdAt", "createdAt"),
+            Map.entry("updatedAt", "updatedAt"),
+            Map.entry("version", "version"));
+
+    public static final ScheduleFields ALL = new ScheduleFields(null);
+
+    private final Set<String> fields;
+
+    private ScheduleFields(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public static ScheduleFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String f : fields.split(",")) {
+            String name = f.trim();
+            if (name.isEmpty()) continue;
+            if (!COLUMNS.containsKey(name)) {
+                throw new IllegalArgumentException("unknown field '" + name + "', expected one of " + new TreeSet<>(COLUMNS.keySet()));
+            }
+            selected.add(name);
+        }
+        return selected.isEmpty() ? ALL : new ScheduleFields(Collections.unmodifiableSet(selected));
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    public Query applyTo(Query query) {
+        if (fields == null) {
+            return query;
+        }
+        for (String f : fields) {
+            query.fields().include(COLUMNS.get(f));
+        }
+        if (!fields.contains("id")) {
+            query.fields().exclude("_id");
+        }
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return fields == null ? "*" : String.join(",", fields);
+    }
+}
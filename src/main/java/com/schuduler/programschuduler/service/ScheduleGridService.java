@@ -0,0 +1,118 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.dto.GridOccurrence;
+import com.schuduler.programschuduler.model.Schedule;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * EPG grid: every occurrence airing on a set of channels (or for a user) in a time
+ * window, in start order. Each schedule is expanded lazily by a {@link RecurrenceIterator}
+ * and the iterators are k-way merged through a priority queue keyed on their next
+ * start, so memory grows with the number of series, not the number of occurrences.
+ */
+@Service
+@RequiredArgsConstructor
+public class ScheduleGridService {
+
+    private static final Comparator<Head> ORDER = Comparator
+            .comparing((Head h) -> h.occurrences.peek())
+            .thenComparing(h -> h.schedule.getChannel(), Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(h -> h.schedule.getId(), Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ReactiveMongoTemplate mongo;
+
+    @Value("${scheduler.grid.max-window-hours:336}")
+    private long maxWindowHours = 336;
+
+    @Value("${scheduler.grid.max-occurrences:10000}")
+    private int maxOccurrences = 10000;
+
+    // one-shot programmes that started longer ago than this are not looked up
+    @Value("${scheduler.grid.max-duration-hours:24}")
+    private long maxDurationHours = 24;
+
+    public Flux<GridOccurrence> grid(List<String> channels, String userId, Instant from, Instant to) {
+        boolean byChannel = channels != null && !channels.isEmpty();
+        boolean byUser = userId != null && !userId.isBlank();
+        if (!byChannel && !byUser) {
+            throw new IllegalArgumentException("channel or userId is required");
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(Duration.ofHours(maxWindowHours)) > 0) {
+            throw new IllegalArgumentException("grid window is limited to " + maxWindowHours + " hours");
+        }
+
+        Criteria criteria = byChannel ? Criteria.where("channel").in(channels) : Criteria.where("userId").is(userId);
+        if (byChannel && byUser) {
+            criteria = criteria.and("userId").is(userId);
+        }
+        criteria = criteria.and("startAt").lt(to).orOperator(
+                Criteria.where("recurrence").in(Schedule.Recurrence.DAILY.name(), Schedule.Recurrence.WEEKLY.name(),
+                        Schedule.Recurrence.MONTHLY.name()),
+                Criteria.where("startAt").gte(from.minus(Duration.ofHours(maxDurationHours))));
+
+        return mongo.find(Query.query(criteria), Schedule.class)
+                .filter(s -> s.getStartAt() != null)
+                .collectList()
+                .flatMapMany(series -> merge(series, from, to))
+                .take(maxOccurrences);
+    }
+
+    static Flux<GridOccurrence> merge(List<Schedule> series, Instant from, Instant to) {
+        return Flux.generate(() -> heads(series, from, to), (queue, sink) -> {
+            Head head = queue.poll();
+            if (head == null) {
+                sink.complete();
+                return queue;
+            }
+            Instant start = head.occurrences.next();
+            sink.next(occurrence(head.schedule, start, head.occurrences.duration()));
+            if (head.occurrences.hasNext()) {
+                queue.add(head);
+            }
+            return queue;
+        });
+    }
+
+    private static PriorityQueue<Head> heads(List<Schedule> series, Instant from, Instant to) {
+        PriorityQueue<Head> queue = new PriorityQueue<>(Math.max(1, series.size()), ORDER);
+        for (Schedule schedule : series) {
+            RecurrenceIterator occurrences = new RecurrenceIterator(schedule, from, to);
+            if (occurrences.hasNext()) {
+                queue.add(new Head(schedule, occurrences));
+            }
+        }
+        return queue;
+    }
+
+    private static GridOccurrence occurrence(Schedule s, Instant start, Duration duration) {
+        return GridOccurrence.builder()
+                .scheduleId(s.getId())
+                .userId(s.getUserId())
+                .title(s.getTitle())
+                .channel(s.getChannel())
+                .startAt(start)
+                .endAt(start.plus(duration))
+                .durationMin((int) duration.toMinutes())
+                .recurrence(s.getRecurrence() != null ? s.getRecurrence().name() : "NONE")
+                .programUrl(s.getProgramUrl())
+                .build();
+    }
+
+    private record Head(Schedule schedule, RecurrenceIterator occurrences) {
+    }
+}
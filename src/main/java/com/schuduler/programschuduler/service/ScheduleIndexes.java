@@ -0,0 +1,135 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Makes sure the indexes declared on {@link Schedule} exist, since nothing else creates
+ * them ({@code spring.data.mongodb.auto-index-creation} is off). An index counts as present
+ * when the collection has one on the same keys, whatever its name. What happens when one is
+ * missing is {@code scheduler.indexes.on-missing}:
+ * <ul>
+ *   <li>{@code create} (default): warn and build it in the background; queries it serves
+ *   scan the collection until the build finishes</li>
+ *   <li>{@code warn}: only warn, for databases whose indexes are managed elsewhere</li>
+ *   <li>{@code fail}: refuse to start; checked once all singletons exist, before the server
+ *   listens and scheduled jobs run</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class ScheduleIndexes implements SmartInitializingSingleton {
+
+    public enum OnMissing { CREATE, WARN, FAIL }
+
+    private static final Duration CHECK_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ReactiveMongoTemplate mongo;
+    private final OnMissing onMissing;
+
+    public ScheduleIndexes(ReactiveMongoTemplate mongo,
+                           @Value("${scheduler.indexes.on-missing:create}") String onMissing) {
+        this.mongo = mongo;
+        this.onMissing = OnMissing.valueOf(onMissing.trim().toUpperCase(Locale.ROOT));
+    }
+
+    // runs before the context refresh completes, so a failure aborts the start
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (onMissing != OnMissing.FAIL) {
+            return;
+        }
+        List<IndexDefinition> missing = missing().block(CHECK_TIMEOUT);
+        if (missing != null && !missing.isEmpty()) {
+            throw new IllegalStateException("schedules is missing index(es) " + describe(missing)
+                    + "; create them or set scheduler.indexes.on-missing=create");
+        }
+        log.info("[INDEXES] all {} declared schedules index(es) present", declared().size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void check() {
+        if (onMissing == OnMissing.FAIL) {
+            return;
+        }
+        missing()
+                .flatMapMany(missing -> {
+                    if (missing.isEmpty()) {
+                        log.info("[INDEXES] all {} declared schedules index(es) present", declared().size());
+                        return Flux.empty();
+                    }
+                    log.warn("[INDEXES] schedules is missing index(es) {}{}", describe(missing),
+                            onMissing == OnMissing.CREATE ? ", building in the background" : "");
+                    return onMissing == OnMissing.CREATE ? create(missing) : Flux.empty();
+                })
+                .subscribe(name -> log.info("[INDEXES] built schedules index {}", name),
+                        t -> log.error("[INDEXES] checking schedules indexes failed", t));
+    }
+
+    /** The indexes declared on {@link Schedule}, as the mapping metadata resolves them. */
+    public List<IndexDefinition> declared() {
+        List<IndexDefinition> definitions = new ArrayList<>();
+        IndexResolver.create(mongo.getConverter().getMappingContext())
+                .resolveIndexFor(Schedule.class)
+                .forEach(definitions::add);
+        return definitions;
+    }
+
+    /** The declared indexes that have no index on the same keys in the collection. */
+    public Mono<List<IndexDefinition>> missing() {
+        return mongo.indexOps(Schedule.class).getIndexInfo()
+                .map(ScheduleIndexes::keys)
+                .collect(Collectors.toSet())
+                .map(present -> declared().stream()
+                        .filter(d -> !present.contains(keys(d.getIndexKeys())))
+                        .toList());
+    }
+
+    /** Builds {@code indexes} one after the other; emits their names as each finishes. */
+    public Flux<String> create(List<IndexDefinition> indexes) {
+        return Flux.fromIterable(indexes)
+                .concatMap(definition -> mongo.indexOps(Schedule.class).ensureIndex(definition));
+    }
+
+    private static String keys(IndexInfo info) {
+        return info.getIndexFields().stream()
+                .map(f -> f.getKey() + ":" + direction(f.getDirection()))
+                .collect(Collectors.joining(","));
+    }
+
+    // geo, text and hashed fields have no direction and never match a declared index
+    private static String direction(Sort.Direction direction) {
+        return direction == null ? "?" : direction == Sort.Direction.ASC ? "1" : "-1";
+    }
+
+    private static String keys(Document keys) {
+        return keys.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue())
+                .collect(Collectors.joining(","));
+    }
+
+    private static String describe(List<IndexDefinition> definitions) {
+        return definitions.stream()
+                .map(d -> d.getIndexOptions().getString("name") + " " + d.getIndexKeys().toJson())
+                .collect(Collectors.joining(", "));
+    }
+}
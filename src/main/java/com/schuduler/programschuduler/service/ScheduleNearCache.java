@@ -0,0 +1,73 @@
+package com.schuduler.programschuduler.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.schuduler.programschuduler.model.Schedule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Size-bounded near-cache of {@link Schedule} documents by id
+ * ({@code scheduler.cache.enabled}). Caffeine's W-TinyLFU policy keeps the frequently
+ * read schedules; coherence comes from {@link ScheduleChangeStreamListener}, which
+ * invalidates on every change to {@code schedules}, so there is no TTL.
+ * <p>
+ * Entries hold the pending load itself, so an invalidation that races a load drops
+ * that load instead of letting it re-insert the old document. Until the change stream
+ * is open, and while it is down, the cache is bypassed.
+ */
+@Component
+public class ScheduleNearCache {
+
+    private final boolean enabled;
+    private final AsyncCache<String, Schedule> cache;
+    private volatile boolean coherent; // false until the change stream opens
+
+    public ScheduleNearCache(@Value("${scheduler.cache.enabled:false}") boolean enabled,
+                             @Value("${scheduler.cache.max-size:100000}") long maxSize) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<Schedule> get(String id, Function<String, Mono<Schedule>> loader) {
+        if (!enabled || !coherent) {
+            return loader.apply(id);
+        }
+        // an empty load completes with null, which Caffeine does not keep
+        return Mono.fromFuture(cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    public void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    /** Drops everything and serves from the loader until {@link #resume()}. */
+    public void suspend() {
+        coherent = false;
+        cache.synchronous().invalidateAll();
+    }
+
+    public void resume() {
+        cache.synchronous().invalidateAll();
+        coherent = true;
+    }
+
+    public AsyncCache<String, Schedule> cache() {
+        return cache;
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+}
@@ -1,16 +1,20 @@
 package com.schuduler.programschuduler.service;
 
+import com.schuduler.programschuduler.dto.ProjectedScheduleResponse;
 import com.schuduler.programschuduler.dto.ScheduleRequest;
 import com.schuduler.programschuduler.dto.ScheduleResponse;
+import com.schuduler.programschuduler.dto.ScheduleUpdateRequest;
 import com.schuduler.programschuduler.dto.SchedulerNowResponse;
-import com.schuduler.programschuduler.dto.PrePlaybackEvent;
-import com.schuduler.programschuduler.messaging.PrePlaybackEventPublisher;
+import com.schuduler.programschuduler.dto.UserNowResponse;
 import com.schuduler.programschuduler.model.Schedule;
 import com.schuduler.programschuduler.repository.ScheduleRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -18,13 +22,14 @@ import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import com.mongodb.client.result.UpdateResult;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.*;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -35,20 +40,32 @@ import java.util.function.Function;
 public class ScheduleService {
 
     private final ScheduleRepository repository;
-    private final PrePlaybackEventPublisher eventPublisher;
     private final ReactiveMongoTemplate mongo;
+    private final ScheduleBucketStore buckets;
+    private final ScheduleNearCache nearCache;
+    private final PrePlaybackEngine engine;
+    private final Clock clock;
+    private final UpcomingScheduleIndex nowIndex;
 
     @Value("${scheduler.poll.rate:60000}")
     private long pollRateMs;              
 
+    @Value("${scheduler.storage.buckets.enabled:false}")
+    private boolean bucketsEnabled;
+
+    @Value("${scheduler.now.max-batch:1000}")
+    private int maxNowBatch = 1000;
+
     private final AtomicReference<Instant> lastScan = new AtomicReference<>(null);
     private final AtomicInteger scanCount = new AtomicInteger(0);
+    private final SingleFlight<String, SchedulerNowResponse> nowPlayingFlights = new SingleFlight<>();
 
+    // in Schedule.ZONE, which recurrences are expanded in too, so a daily series keeps its wall-clock time
     private static Instant parseStartAt(String dateIso, String timeHHmm) {
         LocalDate date = LocalDate.parse(dateIso);
         LocalTime time = LocalTime.parse(timeHHmm);
         LocalDateTime ldt = LocalDateTime.of(date, time);
-        ZonedDateTime zdt = ldt.atZone(ZoneId.systemDefault());
+        ZonedDateTime zdt = ldt.atZone(Schedule.ZONE);
         return zdt.toInstant();
     }
 
@@ -56,7 +73,8 @@ public class ScheduleService {
         Instant startAt = parseStartAt(req.getDate(), req.getTime());
         int duration = (req.getDurationMin() != null) ? req.getDurationMin() : 30;
 
-        Schedule schedule = Schedule.builder()
+        // built per subscription: a retried bucket transaction must insert a fresh entity
+        Mono<Schedule> saved = Mono.fromSupplier(() -> Schedule.builder()
                 .userId(req.getUserId())
                 .title(req.getTitle())
                 .channel(req.getChannel())
@@ -66,68 +84,105 @@ public class ScheduleService {
                 .programUrl(req.getProgramUrl())
                 .preplayPublished(false) 
                 .notes(req.getNotes())
-                .createdAt(Instant.now())
-                .updatedAt(Instant.now())
-                .build();
+                .createdAt(clock.instant())
+                .updatedAt(clock.instant())
+                .build())
+                .flatMap(repository::save);
+
+        log.info("[SCHEDULER-DEBUG] creating schedule userId={} title={} startAt={}", req.getUserId(), req.getTitle(), startAt);
+        return (bucketsEnabled ? buckets.atomically(saved.flatMap(s -> buckets.add(s).thenReturn(s))) : saved)
+                .map(toResponse());
+    }
+
+    /**
+     * Applies the non-null fields of {@code req} with a single {@code $set}. Moving
+     * {@code startAt} re-arms every pre-playback stage in the same write. The version is
+     * required; a stale one fails with {@link OptimisticLockingFailureException}; an
+     * unknown id completes empty. Documents without a version count as version 0.
+     */
+    public Mono<ScheduleResponse> updateSchedule(String id, ScheduleUpdateRequest req) {
+        if (req.getVersion() == null) {
+            return Mono.error(new IllegalArgumentException("version is required"));
+        }
+        Update u = new Update();
+        if (req.getUserId() != null) u.set("userId", req.getUserId());
+        if (req.getTitle() != null) u.set("title", req.getTitle());
+        if (req.getChannel() != null) u.set("channel", req.getChannel());
+        if (req.getDurationMin() != null) u.set("durationMin", req.getDurationMin());
+        if (req.getRecurrence() != null) u.set("recurrence", Schedule.Recurrence.valueOf(req.getRecurrence()));
+        if (req.getProgramUrl() != null) u.set("programUrl", req.getProgramUrl());
+        if (req.getNotes() != null) u.set("notes", req.getNotes());
+
+        if (req.getDate() != null || req.getTime() != null) {
+            if (req.getDate() == null || req.getTime() == null) {
+                return Mono.error(new IllegalArgumentException("date and time must be provided together"));
+            }
+            u.set("startAt", parseStartAt(req.getDate(), req.getTime()));
+            u.set("preplayPublished", false);
+            u.unset("firedStages");
+            u.unset("claims");
+        }
 
-        log.info("[SCHEDULER-DEBUG] creating schedule userId={} title={} startAt={}", schedule.getUserId(), schedule.getTitle(), schedule.getStartAt());
-        return repository.save(schedule).map(toResponse());
+        u.set("updatedAt", clock.instant());
+        u.inc("version", 1);
+
+        Criteria criteria = Criteria.where("_id").is(id);
+        criteria = req.getVersion() == 0
+                // written before versioning: $inc turns the missing field into 1
+                ? criteria.orOperator(Criteria.where("version").is(0L), Criteria.where("version").exists(false))
+                : criteria.and("version").is(req.getVersion());
+
+        log.info("[SCHEDULER-DEBUG] updating schedule id={} expectedVersion={}", id, req.getVersion());
+        Mono<Schedule> modify = mongo.findAndModify(Query.query(criteria), u,
+                FindAndModifyOptions.options().returnNew(true), Schedule.class);
+        Mono<Schedule> updated = modify;
+        if (bucketsEnabled && (req.getDate() != null || req.getUserId() != null || req.getChannel() != null)) {
+            // the bucket entry mirrors startAt, userId and channel: swap the previous one for the new
+            updated = buckets.atomically(repository.findById(id)
+                    .flatMap(previous -> modify.flatMap(s -> buckets.move(previous, s).thenReturn(s))));
+        }
+        return updated
+                .doOnNext(s -> nearCache.invalidate(id))
+                .map(toResponse())
+                .switchIfEmpty(Mono.defer(() -> repository.existsById(id).flatMap(exists -> exists
+                        ? Mono.<ScheduleResponse>error(new OptimisticLockingFailureException(
+                                "schedule " + id + " was modified concurrently (expected version " + req.getVersion() + ")"))
+                        : Mono.<ScheduleResponse>empty())));
     }
 
     @Scheduled(fixedRateString = "${scheduler.poll.rate:60000}")
     public void emitPrePlaybackEvents() {
-        Instant now = Instant.now();
+        Instant now = clock.instant();
 
         lastScan.set(now);
         int currentCount = scanCount.incrementAndGet();
-
-        Instant fiveMinFromNow = now.plusSeconds(5 * 60);
-        Instant sixMinFromNow = now.plusSeconds(6 * 60); 
         log.info("[SCHEDULER] heartbeat scan#{} at {}", currentCount, now);
-        log.info("[SCHEDULER] scan#{} scanning for events between {} and {}", currentCount, fiveMinFromNow, sixMinFromNow);
-
-        repository.findAll()
-                .filter(s -> s.getStartAt() != null
-                        && !s.getStartAt().isBefore(fiveMinFromNow)
-                        && s.getStartAt().isBefore(sixMinFromNow))
-                .collectList()
-                .doOnNext(list -> log.info("[SCHEDULER-DEBUG] found {} candidate(s) in window", list.size()))
-                .flatMapMany(Flux::fromIterable)
-                .flatMap(schedule -> {
-                    Query q = Query.query(Criteria.where("_id").is(schedule.getId())
-                            .orOperator(Criteria.where("preplayPublished").is(false),
-                                        Criteria.where("preplayPublished").exists(false)));
-                    Update u = new Update()
-                            .set("preplayPublished", true)
-                            .set("updatedAt", Instant.now());
-
-                    return mongo.updateFirst(q, u, Schedule.class)
-                            .flatMap((UpdateResult result) -> {
-                                long modified = result.getModifiedCount();
-                                if (modified > 0) {
-                                    // We claimed it — safe to publish
-                                    log.info("[SCHEDULER] claimed schedule id={} startAt={} — publishing", schedule.getId(), schedule.getStartAt());
-                                    PrePlaybackEvent event = PrePlaybackEvent.builder()
-                                            .scheduleId(schedule.getId())
-                                            .userId(schedule.getUserId())
-                                            .channel(schedule.getChannel())
-                                            .programUrl(schedule.getProgramUrl())
-                                            .startAt(schedule.getStartAt())
-                                            .durationMin(schedule.getDurationMin())
-                                            .build();
-                                    try {
-                                        eventPublisher.publish(event);
-                                    } catch (Exception ex) {
-                                        log.error("[SCHEDULER] publish failed for schedule id={}", schedule.getId(), ex);
-                                    }
-                                } else {
-                                    log.debug("[SCHEDULER] schedule id={} already published by another worker", schedule.getId());
-                                }
-                                return Mono.empty();
-                            });
-                })
-                .doOnError(t -> log.error("[SCHEDULER] scan error", t))
-                .subscribe();
+
+        engine.scan(now)
+                .subscribe(n -> {
+                            if (engine.isPaced()) {
+                                log.info("[SCHEDULER] scan#{} queued {} new candidate(s), {} pending",
+                                        currentCount, n, engine.pacedPending());
+                            } else {
+                                log.info("[SCHEDULER] scan#{} published {} event(s)", currentCount, n);
+                            }
+                        },
+                        t -> log.error("[SCHEDULER] scan error", t));
+    }
+
+    @Scheduled(fixedRateString = "${scheduler.pacing.tick-ms:250}")
+    public void releasePacedEvents() {
+        if (!engine.isPaced()) {
+            return;
+        }
+        engine.releasePaced(clock.instant())
+                .subscribe(null, t -> log.error("[SCHEDULER] paced publish error", t));
+    }
+
+    @Scheduled(fixedRateString = "${scheduler.preplay.lease.reap-interval-ms:10000}")
+    public void reapExpiredClaims() {
+        engine.reap(clock.instant())
+                .subscribe(null, t -> log.error("[SCHEDULER] lease reaper error", t));
     }
 
     public Instant getLastScan() {
@@ -138,11 +193,65 @@ public class ScheduleService {
         return scanCount.get();
     }
 
+    // concurrent requests for the same user (several devices, retries) share one query
     public Mono<SchedulerNowResponse> getNowPlaying(String userId) {
-        Instant now = Instant.now();
-        return repository.findAllByUserId(userId)
-                .collectList()
-                .map(schedules -> calculateNowStatus(schedules, now));
+        if (nowIndex.isReady()) {
+            return Mono.fromSupplier(() -> calculateNowStatus(nowIndex.schedulesOf(userId), clock.instant()));
+        }
+        return nowPlayingFlights.execute(userId, () -> {
+            Instant now = clock.instant();
+            return repository.findAllByUserId(userId)
+                    .collectList()
+                    .map(schedules -> calculateNowStatus(schedules, now));
+        });
+    }
+
+    /**
+     * Now/next for many users from one query on the {@code userId_startAt} index. The
+     * cursor is sorted by user, so each user's answer is emitted as soon as their last
+     * schedule has been read; users without schedules follow at the end. With the
+     * {@link UpcomingScheduleIndex} ready, answered from memory in request order.
+     */
+    public Flux<UserNowResponse> getNowPlaying(List<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new IllegalArgumentException("userIds is required");
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            if (userId == null || userId.isBlank()) {
+                throw new IllegalArgumentException("userIds must not be blank");
+            }
+            requested.add(userId);
+        }
+        if (requested.size() > maxNowBatch) {
+            throw new IllegalArgumentException("at most " + maxNowBatch + " userIds per request");
+        }
+
+        return Flux.defer(() -> {
+            Instant now = clock.instant();
+            if (nowIndex.isReady()) {
+                return Flux.fromIterable(requested)
+                        .map(userId -> new UserNowResponse(userId, calculateNowStatus(nowIndex.schedulesOf(userId), now)));
+            }
+            Set<String> unanswered = new LinkedHashSet<>(requested);
+            Query query = Query.query(Criteria.where("userId").in(requested))
+                    .with(Sort.by("userId", "startAt"));
+            query.fields().include("userId", "startAt", "durationMin", "programUrl");
+
+            return mongo.find(query, Schedule.class)
+                    .bufferUntilChanged(Schedule::getUserId)
+                    .map(schedules -> {
+                        String userId = schedules.get(0).getUserId();
+                        unanswered.remove(userId);
+                        return new UserNowResponse(userId, calculateNowStatus(schedules, now));
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(unanswered)
+                            .map(userId -> new UserNowResponse(userId, calculateNowStatus(List.of(), now)))));
+        });
+    }
+
+    public SingleFlight<String, SchedulerNowResponse> getNowPlayingFlights() {
+        return nowPlayingFlights;
     }
 
     private SchedulerNowResponse calculateNowStatus(List<Schedule> schedules, Instant now) {
@@ -203,24 +312,55 @@ public class ScheduleService {
     }
 
     public Mono<ScheduleResponse> getById(String id) {
-        return repository.findById(id).map(toResponse());
+        return nearCache.get(id, repository::findById).map(toResponse());
+    }
+
+    public Mono<ScheduleResponse> getById(String id, ScheduleFields fields) {
+        if (fields.isAll()) {
+            return getById(id);
+        }
+        return mongo.findOne(fields.applyTo(Query.query(Criteria.where("_id").is(id))), Schedule.class)
+                .map(toResponse(fields));
     }
 
     public Flux<ScheduleResponse> listAll() {
         return repository.findAll().map(toResponse());
     }
 
+    public Flux<ScheduleResponse> listAll(ScheduleFields fields) {
+        if (fields.isAll()) {
+            return listAll();
+        }
+        return mongo.find(fields.applyTo(new Query()), Schedule.class).map(toResponse(fields));
+    }
+
     public Flux<ScheduleResponse> listByChannel(String channel) {
         return repository.findAllByChannel(channel).map(toResponse());
     }
 
+    public Flux<ScheduleResponse> listByChannel(String channel, ScheduleFields fields) {
+        if (fields.isAll()) {
+            return listByChannel(channel);
+        }
+        return mongo.find(fields.applyTo(Query.query(Criteria.where("channel").is(channel))), Schedule.class)
+                .map(toResponse(fields));
+    }
+
     public Flux<ScheduleResponse> listByUserId(String userId) {
         return repository.findAllByUserId(userId).map(toResponse());
     }
 
+    public Flux<ScheduleResponse> listByUserId(String userId, ScheduleFields fields) {
+        if (fields.isAll()) {
+            return listByUserId(userId);
+        }
+        return mongo.find(fields.applyTo(Query.query(Criteria.where("userId").is(userId))), Schedule.class)
+                .map(toResponse(fields));
+    }
+
     public Flux<ScheduleResponse> upcoming(String userId, String channel, Integer limit) {
         int l = (limit == null || limit <= 0) ? 10 : limit;
-        Instant now = Instant.now();
+        Instant now = clock.instant();
 
         Flux<Schedule> source;
         if (userId != null && !userId.isBlank()) {
@@ -239,11 +379,35 @@ public class ScheduleService {
                 .map(toResponse());
     }
 
+    /**
+     * Projected variant of {@link #upcoming(String, String, Integer)}; sorting and the
+     * limit are pushed down to MongoDB since the projection may not carry {@code startAt}.
+     */
+    public Flux<ScheduleResponse> upcoming(String userId, String channel, Integer limit, ScheduleFields fields) {
+        if (fields.isAll()) {
+            return upcoming(userId, channel, limit);
+        }
+        int l = (limit == null || limit <= 0) ? 10 : limit;
+        Criteria criteria = Criteria.where("startAt").gte(clock.instant());
+        if (userId != null && !userId.isBlank()) {
+            criteria = criteria.and("userId").is(userId);
+        } else if (channel != null && !channel.isBlank()) {
+            criteria = criteria.and("channel").is(channel);
+        }
+        Query q = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "startAt"))
+                .limit(l);
+        return mongo.find(fields.applyTo(q), Schedule.class).map(toResponse(fields));
+    }
+
     public Mono<Void> delete(String id) {
-        return repository.deleteById(id);
+        Mono<Void> deleted = bucketsEnabled
+                ? buckets.atomically(repository.findById(id).flatMap(s -> repository.deleteById(id).then(buckets.remove(s))))
+                : repository.deleteById(id);
+        return deleted.doFinally(signal -> nearCache.invalidate(id));
     }
 
-    private Function<Schedule, ScheduleResponse> toResponse() {
+    static Function<Schedule, ScheduleResponse> toResponse() {
         return s -> ScheduleResponse.builder()
                 .id(s.getId())
                 .userId(s.getUserId())
@@ -256,6 +420,23 @@ public class ScheduleService {
                 .notes(s.getNotes())
                 .createdAt(s.getCreatedAt())
                 .updatedAt(s.getUpdatedAt())
+                .version(s.getVersion() != null ? s.getVersion() : 0L)
                 .build();
     }
+
+    private Function<Schedule, ScheduleResponse> toResponse(ScheduleFields fields) {
+        if (fields.isAll()) {
+            return toResponse();
+        }
+        // toResponse() defaults a missing recurrence to NONE and version to 0; keep them out unless requested
+        return toResponse().andThen(r -> {
+            if (!fields.includes("recurrence")) {
+                r.setRecurrence(null);
+            }
+            if (!fields.includes("version")) {
+                r.setVersion(null);
+            }
+            return new ProjectedScheduleResponse(r);
+        });
+    }
 }
@@ -0,0 +1,59 @@
+package com.schuduler.programschuduler.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent lookups of the same key into one in-flight {@link Mono}: the
+ * first caller subscribes the loader, callers arriving before it completes get the
+ * same result. Nothing is cached once the lookup has finished.
+ * <p>
+ * The in-flight map is a {@link ConcurrentHashMap} (lock-free reads, per-bin writes)
+ * and the counters are {@link LongAdder}s, so the hot path has no shared lock.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> loader) {
+        return Mono.defer(() -> {
+            calls.increment();
+            AtomicReference<Mono<V>> self = new AtomicReference<>();
+            Mono<V> flight = Mono.defer(loader)
+                    .doFinally(signal -> inFlight.remove(key, self.get()))
+                    .cache();
+            self.set(flight);
+
+            Mono<V> existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                coalesced.increment();
+                return existing;
+            }
+            return flight;
+        });
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /** Share of calls served by another caller's lookup, 0..1. */
+    public double coalescingRatio() {
+        long total = calls.sum();
+        return total == 0 ? 0 : (double) coalesced.sum() / total;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,368 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every schedule that may still be playing or is yet to start, per user, in
+ * {@link ScheduleColumns} ({@code scheduler.now-index.enabled}), so user now/next lookups
+ * are answered from memory instead of MongoDB.
+ * <p>
+ * Rebuilt from MongoDB every {@code refresh-ms}, which also drops schedules that ended;
+ * rows are streamed into fresh columns rather than collected as entities first. In
+ * between, {@link ScheduleChangeStreamListener} applies each change, and changes that
+ * arrive during a rebuild are re-applied on top of it. Until the first rebuild completes,
+ * and from the moment the change stream fails or ends until a rebuild after it reopened
+ * completes, the index is not {@link #isReady() ready} and callers go to MongoDB.
+ * <p>
+ * With {@code snapshot.path} set, the columns are written to a snapshot file every
+ * {@code snapshot.interval-ms} (on their own thread) and on shutdown, together with a
+ * watermark: the time of the last change they contain. A restart maps a recent enough
+ * snapshot and the change stream resumes at the watermark instead of rebuilding, so only
+ * the changes made in between are read from MongoDB. The index is ready once the resumed
+ * stream delivered a change made after it reopened; without one within
+ * {@code snapshot.catch-up-timeout-ms} it rebuilds instead.
+ */
+@Component
+@Slf4j
+public class UpcomingScheduleIndex {
+
+    private static final Duration RESUME_MARGIN = Duration.ofSeconds(5);
+
+    private final ReactiveMongoTemplate mongo;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration maxDuration;
+    private final Path snapshotPath;
+    private final Duration snapshotMaxAge;
+    private final Duration catchUpTimeout;
+    private final long createdNanos = System.nanoTime();
+
+    private volatile ScheduleColumns columns = new ScheduleColumns(16);
+    private volatile boolean ready;
+    private volatile Instant watermark;
+    private Instant resumeAt; // guarded by this; set by a restore until the change stream takes it
+    private List<Schedule> changedDuringRebuild; // guarded by this; non-null while rebuilding
+    private boolean suspended = true; // guarded by this; the change stream is not open
+    private boolean rebuildAgain; // guarded by this; the running rebuild may have missed changes
+    private Instant catchUpTo; // guarded by this; set while a resumed stream replays up to the present
+
+    // a write takes ~100s of ms under the read lock, too long for the shared @Scheduled thread
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "now-index-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+
+    private final LongAdder mongoReads = new LongAdder();
+    private final LongAdder changesApplied = new LongAdder();
+    private volatile long readyAfterMs = -1;
+
+    public UpcomingScheduleIndex(ReactiveMongoTemplate mongo,
+                                 Clock clock,
+                                 @Value("${scheduler.now-index.enabled:false}") boolean enabled,
+                                 @Value("${scheduler.now-index.max-duration-hours:24}") long maxDurationHours,
+                                 @Value("${scheduler.now-index.snapshot.path:}") String snapshotPath,
+                                 @Value("${scheduler.now-index.snapshot.max-age-minutes:10}") long snapshotMaxAgeMinutes,
+                                 @Value("${scheduler.now-index.snapshot.catch-up-timeout-ms:10000}") long catchUpTimeoutMs) {
+        this.mongo = mongo;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxDuration = Duration.ofHours(maxDurationHours);
+        this.snapshotPath = snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.snapshotMaxAge = Duration.ofMinutes(snapshotMaxAgeMinutes);
+        this.catchUpTimeout = Duration.ofMillis(catchUpTimeoutMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /** The user's schedules as partial documents (id, userId, channel, startAt, durationMin, programUrl). */
+    public List<Schedule> schedulesOf(String userId) {
+        return columns.byUser(userId);
+    }
+
+    /** The user of an indexed schedule, e.g. one that was just deleted; {@code null} if unknown. */
+    public String userOf(String scheduleId) {
+        return enabled ? columns.userOf(scheduleId) : null;
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!enabled || snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            ScheduleColumns.Snapshot snapshot = ScheduleColumns.readSnapshot(snapshotPath);
+            Duration age = Duration.between(snapshot.watermark(), clock.instant());
+            if (age.compareTo(snapshotMaxAge) > 0) {
+                log.info("[NOW-INDEX] snapshot {} is {} old, rebuilding instead", snapshotPath, age);
+                return;
+            }
+            synchronized (this) {
+                columns = snapshot.columns();
+                watermark = snapshot.watermark();
+                resumeAt = snapshot.watermark();
+            }
+            log.info("[NOW-INDEX] restored {} schedule(s) from {} in {} ms, resuming changes at {}",
+                    snapshot.columns().size(), snapshotPath, Duration.ofNanos(System.nanoTime() - started).toMillis(),
+                    snapshot.watermark());
+        } catch (IOException | RuntimeException e) {
+            log.warn("[NOW-INDEX] ignoring snapshot {}: {}", snapshotPath, e.toString());
+        }
+    }
+
+    /**
+     * Where the change stream should resume after a snapshot restore; {@code null} when the
+     * index was not restored or the resume point was already taken, and a rebuild is due.
+     */
+    public synchronized Instant takeResumePoint() {
+        Instant at = resumeAt;
+        resumeAt = null;
+        // rebuild watermarks come from the local clock: start a little early, replays are idempotent
+        return at == null ? null : at.minus(RESUME_MARGIN);
+    }
+
+    /** The change stream failed or ended: changes are missed from now on, so stop serving. */
+    public synchronized void suspend() {
+        suspended = true;
+        ready = false;
+        catchUpTo = null;
+    }
+
+    /**
+     * The change stream (re)opened. Without a {@code resumeAt} it starts from now, and
+     * the index is rebuilt and ready once that completes. Resumed at a restored snapshot's
+     * watermark, it is ready once the stream replayed past the present.
+     */
+    public void resume(Instant resumeAt) {
+        Instant target;
+        synchronized (this) {
+            suspended = false;
+            target = resumeAt == null ? null : clock.instant();
+            catchUpTo = target;
+        }
+        if (target == null) {
+            rebuild();
+            return;
+        }
+        Mono.delay(catchUpTimeout).subscribe(t -> giveUpCatchingUp(target));
+    }
+
+    // the first run is left to the change stream subscription, which rebuilds unless restored
+    @Scheduled(fixedDelayString = "${scheduler.now-index.refresh-ms:3600000}",
+            initialDelayString = "${scheduler.now-index.refresh-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (changedDuringRebuild != null) {
+                // e.g. the stream reopened mid-rebuild: that one may lack changes from the outage
+                rebuildAgain = true;
+                return;
+            }
+            changedDuringRebuild = new ArrayList<>();
+        }
+        Instant now = clock.instant();
+        ScheduleColumns built = new ScheduleColumns(Math.max(16, columns.size()));
+        Query query = Query.query(Criteria.where("startAt").gte(now.minus(maxDuration)));
+        query.fields().include("userId", "channel", "startAt", "durationMin", "programUrl");
+        long started = System.nanoTime();
+        mongo.find(query, Schedule.class)
+                .doOnNext(s -> {
+                    mongoReads.increment();
+                    built.put(s);
+                })
+                .then()
+                .subscribe(null, err -> {
+                    log.error("[NOW-INDEX] rebuild failed", err);
+                    synchronized (this) {
+                        changedDuringRebuild = null;
+                        rebuildAgain = false;
+                    }
+                }, () -> install(built, now, started));
+    }
+
+    /** Applies an inserted or updated schedule, changed at {@code changedAt} (may be null). */
+    public synchronized void apply(Schedule schedule, Instant changedAt) {
+        if (!enabled || schedule == null || schedule.getId() == null) {
+            return;
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(schedule);
+        }
+        if (schedule.getStartAt() == null || schedule.getStartAt().isBefore(clock.instant().minus(maxDuration))) {
+            columns.remove(schedule.getId());
+        } else {
+            columns.put(schedule);
+        }
+        advance(changedAt);
+    }
+
+    public synchronized void remove(String scheduleId, Instant changedAt) {
+        if (!enabled) {
+            return;
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(Schedule.builder().id(scheduleId).build());
+        }
+        columns.remove(scheduleId);
+        advance(changedAt);
+    }
+
+    /** Writes a snapshot on the {@code now-index-snapshot} thread; at most one is queued at a time. */
+    @Scheduled(fixedDelayString = "${scheduler.now-index.snapshot.interval-ms:300000}",
+            initialDelayString = "${scheduler.now-index.snapshot.interval-ms:300000}")
+    public void snapshot() {
+        if (!isReady() || snapshotPath == null || !snapshotQueued.compareAndSet(false, true)) {
+            return;
+        }
+        snapshotter.execute(() -> {
+            snapshotQueued.set(false);
+            writeSnapshot();
+        });
+    }
+
+    // a fresh snapshot on the way down keeps the catch-up of the next start short
+    @PreDestroy
+    public void snapshotOnShutdown() throws InterruptedException {
+        // both write through the same .tmp file, so let a queued write finish first
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() {
+        Instant at = watermark;
+        if (!isReady() || snapshotPath == null || at == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            long bytes = columns.writeSnapshot(snapshotPath, at);
+            log.info("[NOW-INDEX] wrote snapshot {} ({} KiB, watermark {}) in {} ms", snapshotPath, bytes / 1024, at,
+                    Duration.ofNanos(System.nanoTime() - started).toMillis());
+        } catch (IOException e) {
+            log.warn("[NOW-INDEX] writing snapshot {} failed: {}", snapshotPath, e.toString());
+        }
+    }
+
+    public int rowCount() {
+        return columns.size();
+    }
+
+    public long estimatedBytes() {
+        return columns.estimatedBytes();
+    }
+
+    /** Documents read from MongoDB by rebuilds since start. */
+    public long mongoReads() {
+        return mongoReads.sum();
+    }
+
+    /** Change stream events applied since start. */
+    public long changesApplied() {
+        return changesApplied.sum();
+    }
+
+    /** Milliseconds from creation until the index first became ready, or -1. */
+    public long readyAfterMs() {
+        return readyAfterMs;
+    }
+
+    // replays after a rebuild pass no time and are not counted again
+    private void advance(Instant changedAt) {
+        if (changedAt == null) {
+            return;
+        }
+        changesApplied.increment();
+        if (watermark == null || changedAt.isAfter(watermark)) {
+            watermark = changedAt;
+        }
+        if (catchUpTo != null && !changedAt.isBefore(catchUpTo)) {
+            catchUpTo = null;
+            ready = true;
+            markReady();
+            log.info("[NOW-INDEX] change stream caught up at {}", changedAt);
+        }
+    }
+
+    // a quiet collection never proves the replay complete; rebuilding is the safe way out
+    private void giveUpCatchingUp(Instant target) {
+        synchronized (this) {
+            if (catchUpTo != target) {
+                return;
+            }
+            catchUpTo = null;
+        }
+        log.info("[NOW-INDEX] no change since {} within {}, rebuilding instead", target, catchUpTimeout);
+        rebuild();
+    }
+
+    private void markReady() {
+        if (readyAfterMs < 0) {
+            readyAfterMs = Duration.ofNanos(System.nanoTime() - createdNanos).toMillis();
+        }
+    }
+
+    // the query ran from readAt on, so changes up to then are in; later ones are replayed on top
+    private void install(ScheduleColumns built, Instant readAt, long startedNanos) {
+        boolean again;
+        synchronized (this) {
+            again = rebuildAgain;
+            rebuildAgain = false;
+            columns = built;
+            ready = !suspended && !again;
+            if (watermark == null || readAt.isAfter(watermark)) {
+                watermark = readAt;
+            }
+            List<Schedule> changes = changedDuringRebuild;
+            changedDuringRebuild = null;
+            for (Schedule change : changes) {
+                if (change.getStartAt() == null) {
+                    remove(change.getId(), null);
+                } else {
+                    apply(change, null);
+                }
+            }
+        }
+        log.info("[NOW-INDEX] {} schedule(s), ~{} KiB, built in {} ms", built.size(), built.estimatedBytes() / 1024,
+                Duration.ofNanos(System.nanoTime() - startedNanos).toMillis());
+        if (again) {
+            rebuild();
+        } else if (isReady()) {
+            markReady();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.schuduler.programschuduler.archive;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleSegmentFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static Schedule schedule(String id, Instant startAt) {
+        return Schedule.builder()
+                .id(id)
+                .userId("user-" + id.length())
+                .title("Title " + id)
+                .channel("Channel 1")
+                .startAt(startAt)
+                .durationMin(45)
+                .recurrence(Schedule.Recurrence.NONE)
+                .programUrl("http://example.com/video.mp4")
+                .notes("Notes " + id)
+                .createdAt(startAt.minusSeconds(86_400))
+                .updatedAt(startAt.minusSeconds(3_600))
+                .preplayPublished(true)
+                .build();
+    }
+
+    private static List<Schedule> readAll(ScheduleSegmentFile file) throws Exception {
+        List<Schedule> rows = new ArrayList<>();
+        try (ScheduleSegmentFile.RowGroupReader reader = file.open()) {
+            for (List<Schedule> group = reader.next(); group != null; group = reader.next()) {
+                rows.addAll(group);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void append_TwoRowGroups_ReadsBackAllRowsInOrder() throws Exception {
+        ScheduleSegmentFile file = ScheduleSegmentFile.forDay(dir, LocalDate.parse("2024-01-15"));
+        Instant start = Instant.parse("2024-01-15T10:30:00Z");
+        List<Schedule> first = List.of(schedule("a", start), schedule("bb", start.plusSeconds(1800)));
+        List<Schedule> second = List.of(schedule("ccc", start.plusSeconds(3600)));
+
+        file.append(first);
+        file.append(second);
+
+        List<Schedule> expected = new ArrayList<>(first);
+        expected.addAll(second);
+        assertEquals(expected, readAll(file));
+    }
+
+    @Test
+    void append_NullFields_RoundTripAsNull() throws Exception {
+        ScheduleSegmentFile file = ScheduleSegmentFile.forDay(dir, LocalDate.parse("2024-01-15"));
+        Schedule sparse = Schedule.builder().id("sparse").startAt(Instant.parse("2024-01-15T10:30:00Z")).preplayPublished(true).build();
+
+        file.append(List.of(sparse, schedule("full", Instant.parse("2024-01-15T11:00:00Z"))));
+
+        List<Schedule> rows = readAll(file);
+        assertEquals(sparse, rows.get(0));
+        assertEquals("Channel 1", rows.get(1).getChannel());
+    }
+
+    @Test
+    void open_MissingFile_ReadsEmpty() throws Exception {
+        assertTrue(readAll(ScheduleSegmentFile.forDay(dir, LocalDate.parse("2000-01-01"))).isEmpty());
+    }
+}
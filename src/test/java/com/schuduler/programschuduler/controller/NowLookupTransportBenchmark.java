@@ -0,0 +1,137 @@
+package com.schuduler.programschuduler.controller;
+
+import com.schuduler.programschuduler.dto.SchedulerNowResponse;
+import com.schuduler.programschuduler.service.ScheduleChangeStreamListener;
+import com.schuduler.programschuduler.service.ScheduleGridService;
+import com.schuduler.programschuduler.service.ScheduleService;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Now/next lookups over HTTP/1.1 ({@code GET /api/schedules/now}, pooled WebClient) vs.
+ * RSocket request-response multiplexed on one TCP connection, against the real
+ * controllers with a stubbed {@link ScheduleService}, so only transport and codec
+ * overhead is compared. Prints throughput and latency percentiles.
+ */
+@Tag("benchmark")
+class NowLookupTransportBenchmark {
+
+    private static final int LOOKUPS = 50_000;
+    private static final int CONCURRENCY = 64;
+
+    @EnableWebFlux
+    @Configuration
+    static class WebConfig {
+    }
+
+    @Test
+    void httpVersusRSocket() {
+        ScheduleService service = mock(ScheduleService.class);
+        SchedulerNowResponse answer = new SchedulerNowResponse("PLAY",
+                new SchedulerNowResponse.ScheduleEntry("65a4f0c2e1b2c3d4e5f60718", "https://cdn.example.com/a/index.m3u8",
+                        OffsetDateTime.parse("2030-01-15T20:00:00Z"), 60, 12),
+                null, null, List.of());
+        when(service.getNowPlaying(anyString())).thenReturn(Mono.just(answer));
+
+        AnnotationConfigApplicationContext web = new AnnotationConfigApplicationContext();
+        web.registerBean(ScheduleService.class, () -> service);
+        web.registerBean(ScheduleGridService.class, () -> mock(ScheduleGridService.class));
+        web.register(WebConfig.class, ScheduleController.class);
+        web.refresh();
+        DisposableServer http = HttpServer.create().host("localhost").port(0)
+                .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(web).build()))
+                .bindNow();
+
+        RSocketStrategies strategies = RSocketStrategies.builder()
+                .encoders(e -> e.add(new Jackson2JsonEncoder()))
+                .decoders(d -> d.add(new Jackson2JsonDecoder()))
+                .build();
+        RSocketMessageHandler handler = new RSocketMessageHandler();
+        handler.setRSocketStrategies(strategies);
+        handler.setHandlers(List.of(new NowPlayingRSocketController(service,
+                mock(ScheduleChangeStreamListener.class), Clock.systemUTC(), 5_000)));
+        handler.afterPropertiesSet();
+        CloseableChannel rsocket = RSocketServer.create(handler.responder())
+                .bind(TcpServerTransport.create("localhost", 0))
+                .block();
+
+        WebClient client = WebClient.create("http://localhost:" + http.port());
+        RSocketRequester requester = RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(MediaType.APPLICATION_JSON)
+                .tcp("localhost", rsocket.address().getPort());
+        try {
+            Function<String, Mono<SchedulerNowResponse>> overHttp = user -> client.get()
+                    .uri(b -> b.path("/api/schedules/now").queryParam("userId", user).build())
+                    .retrieve()
+                    .bodyToMono(SchedulerNowResponse.class);
+            Function<String, Mono<SchedulerNowResponse>> overRSocket = user -> requester.route("schedules.now")
+                    .data(user)
+                    .retrieveMono(SchedulerNowResponse.class);
+
+            // warm-up, then measure
+            run(overHttp, LOOKUPS / 5);
+            run(overRSocket, LOOKUPS / 5);
+            report("http/1.1 GET /now", run(overHttp, LOOKUPS));
+            report("rsocket schedules.now", run(overRSocket, LOOKUPS));
+        } finally {
+            requester.dispose();
+            rsocket.dispose();
+            http.disposeNow();
+            web.close();
+        }
+    }
+
+    private static Result run(Function<String, Mono<SchedulerNowResponse>> lookup, int lookups) {
+        long[] latencies = new long[lookups];
+        long start = System.nanoTime();
+        Flux.range(0, lookups)
+                .flatMap(i -> {
+                    long t0 = System.nanoTime();
+                    return lookup.apply("user-" + i).doOnNext(r -> latencies[i] = System.nanoTime() - t0);
+                }, CONCURRENCY)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(lookups, elapsed, latencies);
+    }
+
+    private record Result(int lookups, long elapsedNanos, long[] sortedLatencies) {
+    }
+
+    private static void report(String name, Result r) {
+        long[] l = r.sortedLatencies();
+        System.out.printf("%-24s %,8.0f lookups/s  p50 %6.0f us  p99 %6.0f us  (%d lookups, %d in flight)%n",
+                name, r.lookups() / (r.elapsedNanos() / 1e9),
+                l[l.length / 2] / 1e3, l[(int) (l.length * 0.99)] / 1e3, r.lookups(), CONCURRENCY);
+    }
+}
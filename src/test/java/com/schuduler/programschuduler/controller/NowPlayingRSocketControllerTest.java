@@ -0,0 +1,105 @@
+package com.schuduler.programschuduler.controller;
+
+import com.schuduler.programschuduler.dto.SchedulerNowResponse;
+import com.schuduler.programschuduler.service.ScheduleChangeStreamListener;
+import com.schuduler.programschuduler.service.ScheduleService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NowPlayingRSocketControllerTest {
+
+    @Mock
+    private ScheduleService scheduleService;
+
+    @Mock
+    private ScheduleChangeStreamListener changes;
+
+    private final Sinks.Many<String> changed = Sinks.many().multicast().directBestEffort();
+
+    private NowPlayingRSocketController controller;
+
+    private final SchedulerNowResponse none = new SchedulerNowResponse("NONE", null, null, null, List.of());
+    private final SchedulerNowResponse playing = new SchedulerNowResponse("PLAY",
+            new SchedulerNowResponse.ScheduleEntry("s1", "http://example.com/a.mp4",
+                    OffsetDateTime.parse("2024-01-15T10:00:00Z"), 30, 0),
+            null, null, List.of());
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(Instant.parse("2024-01-15T10:00:30Z"), ZoneOffset.UTC);
+        controller = new NowPlayingRSocketController(scheduleService, changes, clock, 5_000);
+    }
+
+    @Test
+    void now_DelegatesToService() {
+        when(scheduleService.getNowPlaying("user-1")).thenReturn(Mono.just(playing));
+
+        StepVerifier.create(controller.now("user-1"))
+                .expectNext(playing)
+                .verifyComplete();
+    }
+
+    @Test
+    void now_BlankUserId_Errors() {
+        StepVerifier.create(controller.now(" "))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verifyNoInteractions(scheduleService);
+    }
+
+    @Test
+    void nowStream_EmitsOnlyWhenTheAnswerChanges() {
+        when(scheduleService.getNowPlaying("user-1"))
+                .thenReturn(Mono.just(none), Mono.just(none), Mono.just(playing), Mono.just(playing), Mono.just(none));
+
+        StepVerifier.withVirtualTime(() -> controller.nowStream("user-1"))
+                .expectSubscription()
+                .expectNext(none)
+                .expectNoEvent(Duration.ofSeconds(9))      // unchanged at 5s
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext(playing)
+                .expectNoEvent(Duration.ofSeconds(9))      // unchanged at 15s
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext(none)
+                .thenCancel()
+                .verify();
+        verify(scheduleService, times(5)).getNowPlaying("user-1");
+    }
+
+    @Test
+    void nowStream_ChangeStreamTailed_ReevaluatesOnChangesAndMinuteBoundaries() {
+        when(changes.isEnabled()).thenReturn(true);
+        when(changes.changesOf("user-1")).thenReturn(changed.asFlux());
+        when(scheduleService.getNowPlaying("user-1"))
+                .thenReturn(Mono.just(none), Mono.just(playing), Mono.just(none));
+
+        StepVerifier.withVirtualTime(() -> controller.nowStream("user-1"))
+                .expectSubscription()
+                .expectNext(none)
+                .expectNoEvent(Duration.ofSeconds(10))     // no polling in between
+                .then(() -> changed.tryEmitNext("user-1"))
+                .expectNext(playing)
+                .expectNoEvent(Duration.ofSeconds(19))
+                .thenAwait(Duration.ofSeconds(1))          // 10:01:00
+                .expectNext(none)
+                .thenCancel()
+                .verify();
+        verify(scheduleService, times(3)).getNowPlaying("user-1");
+    }
+}
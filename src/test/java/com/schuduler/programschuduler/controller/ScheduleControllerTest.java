@@ -1,6 +1,8 @@
 package com.schuduler.programschuduler.controller;
 
 import com.schuduler.programschuduler.dto.*;
+import com.schuduler.programschuduler.service.ScheduleFields;
+import com.schuduler.programschuduler.service.ScheduleGridService;
 import com.schuduler.programschuduler.service.ScheduleService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,6 +30,7 @@ import java.util.List;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,6 +40,9 @@ class ScheduleControllerTest {
     @Mock
     private ScheduleService scheduleService;
 
+    @Mock
+    private ScheduleGridService gridService;
+
     @InjectMocks
     private ScheduleController scheduleController;
 
@@ -159,6 +165,20 @@ class ScheduleControllerTest {
         verify(scheduleService, times(1)).getNowPlaying(userId);
     }
 
+    @Test
+    void getNowBatch_DelegatesToService() {
+        // Arrange
+        List<String> userIds = List.of("user123", "user456");
+        UserNowResponse first = new UserNowResponse("user123", schedulerNowResponse);
+        UserNowResponse second = new UserNowResponse("user456", new SchedulerNowResponse("NONE", null, null, null, null));
+        when(scheduleService.getNowPlaying(userIds)).thenReturn(Flux.just(first, second));
+
+        // Act & Assert
+        StepVerifier.create(scheduleController.getNowBatch(userIds))
+                .expectNext(first, second)
+                .verifyComplete();
+    }
+
     @Test
     void list_NoParameters_ReturnsAllSchedules() {
         // Arrange
@@ -172,52 +192,52 @@ class ScheduleControllerTest {
                 .recurrence("DAILY")
                 .build();
 
-        when(scheduleService.listAll())
+        when(scheduleService.listAll(ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse, response2));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list(null, null))
+        StepVerifier.create(scheduleController.list(null, null, null))
                 .expectNext(scheduleResponse)
                 .expectNext(response2)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listAll();
-        verify(scheduleService, never()).listByUserId(anyString());
-        verify(scheduleService, never()).listByChannel(anyString());
+        verify(scheduleService, times(1)).listAll(ScheduleFields.ALL);
+        verify(scheduleService, never()).listByUserId(anyString(), any());
+        verify(scheduleService, never()).listByChannel(anyString(), any());
     }
 
     @Test
     void list_WithUserId_ReturnsUserSchedules() {
         // Arrange
         String userId = "user123";
-        when(scheduleService.listByUserId(userId))
+        when(scheduleService.listByUserId(userId, ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list(userId, null))
+        StepVerifier.create(scheduleController.list(userId, null, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listByUserId(userId);
-        verify(scheduleService, never()).listAll();
-        verify(scheduleService, never()).listByChannel(anyString());
+        verify(scheduleService, times(1)).listByUserId(userId, ScheduleFields.ALL);
+        verify(scheduleService, never()).listAll(ScheduleFields.ALL);
+        verify(scheduleService, never()).listByChannel(anyString(), any());
     }
 
     @Test
     void list_WithChannel_ReturnsChannelSchedules() {
         // Arrange
         String channel = "Channel 1";
-        when(scheduleService.listByChannel(channel))
+        when(scheduleService.listByChannel(channel, ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list(null, channel))
+        StepVerifier.create(scheduleController.list(null, channel, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listByChannel(channel);
-        verify(scheduleService, never()).listAll();
-        verify(scheduleService, never()).listByUserId(anyString());
+        verify(scheduleService, times(1)).listByChannel(channel, ScheduleFields.ALL);
+        verify(scheduleService, never()).listAll(ScheduleFields.ALL);
+        verify(scheduleService, never()).listByUserId(anyString(), any());
     }
 
     @Test
@@ -225,33 +245,33 @@ class ScheduleControllerTest {
         // Arrange
         String userId = "user123";
         String channel = "Channel 1";
-        when(scheduleService.listByUserId(userId))
+        when(scheduleService.listByUserId(userId, ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list(userId, channel))
+        StepVerifier.create(scheduleController.list(userId, channel, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listByUserId(userId);
-        verify(scheduleService, never()).listByChannel(anyString());
-        verify(scheduleService, never()).listAll();
+        verify(scheduleService, times(1)).listByUserId(userId, ScheduleFields.ALL);
+        verify(scheduleService, never()).listByChannel(anyString(), any());
+        verify(scheduleService, never()).listAll(ScheduleFields.ALL);
     }
 
     @Test
     void list_BlankUserId_FallsBackToAll() {
         // Arrange
-        when(scheduleService.listAll())
+        when(scheduleService.listAll(ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list(" ", " "))
+        StepVerifier.create(scheduleController.list(" ", " ", null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listAll();
-        verify(scheduleService, never()).listByUserId(anyString());
-        verify(scheduleService, never()).listByChannel(anyString());
+        verify(scheduleService, times(1)).listAll(ScheduleFields.ALL);
+        verify(scheduleService, never()).listByUserId(anyString(), any());
+        verify(scheduleService, never()).listByChannel(anyString(), any());
     }
 
     @Test
@@ -261,58 +281,58 @@ class ScheduleControllerTest {
         String channel = "Channel 1";
         Integer limit = 10;
         
-        when(scheduleService.upcoming(userId, channel, limit))
+        when(scheduleService.upcoming(userId, channel, limit, ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.upcoming(userId, channel, limit))
+        StepVerifier.create(scheduleController.upcoming(userId, channel, limit, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).upcoming(userId, channel, limit);
+        verify(scheduleService, times(1)).upcoming(userId, channel, limit, ScheduleFields.ALL);
     }
 
     @Test
     void upcoming_WithNullParameters_HandlesNulls() {
         // Arrange
-        when(scheduleService.upcoming(null, null, null))
+        when(scheduleService.upcoming(null, null, null, ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.upcoming(null, null, null))
+        StepVerifier.create(scheduleController.upcoming(null, null, null, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).upcoming(null, null, null);
+        verify(scheduleService, times(1)).upcoming(null, null, null, ScheduleFields.ALL);
     }
 
     @Test
     void getById_ValidId_ReturnsSchedule() {
         // Arrange
         String scheduleId = "schedule123";
-        when(scheduleService.getById(scheduleId))
+        when(scheduleService.getById(scheduleId, ScheduleFields.ALL))
                 .thenReturn(Mono.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.get(scheduleId))
+        StepVerifier.create(scheduleController.get(scheduleId, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).getById(scheduleId);
+        verify(scheduleService, times(1)).getById(scheduleId, ScheduleFields.ALL);
     }
 
     @Test
     void getById_NonExistentId_ReturnsEmpty() {
         // Arrange
         String scheduleId = "non-existent";
-        when(scheduleService.getById(scheduleId))
+        when(scheduleService.getById(scheduleId, ScheduleFields.ALL))
                 .thenReturn(Mono.empty());
 
         // Act & Assert
-        StepVerifier.create(scheduleController.get(scheduleId))
+        StepVerifier.create(scheduleController.get(scheduleId, null))
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).getById(scheduleId);
+        verify(scheduleService, times(1)).getById(scheduleId, ScheduleFields.ALL);
     }
 
     @Test
@@ -363,29 +383,29 @@ class ScheduleControllerTest {
         // Arrange
         String scheduleId = "schedule123";
         RuntimeException serviceException = new RuntimeException("Service error");
-        when(scheduleService.getById(scheduleId))
+        when(scheduleService.getById(scheduleId, ScheduleFields.ALL))
                 .thenReturn(Mono.error(serviceException));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.get(scheduleId))
+        StepVerifier.create(scheduleController.get(scheduleId, null))
                 .expectError(RuntimeException.class)
                 .verify();
 
-        verify(scheduleService, times(1)).getById(scheduleId);
+        verify(scheduleService, times(1)).getById(scheduleId, ScheduleFields.ALL);
     }
 
     @Test
     void listByUserId_ServiceReturnsEmpty_ReturnsEmptyFlux() {
         // Arrange
         String userId = "user123";
-        when(scheduleService.listByUserId(userId))
+        when(scheduleService.listByUserId(userId, ScheduleFields.ALL))
                 .thenReturn(Flux.empty());
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list(userId, null))
+        StepVerifier.create(scheduleController.list(userId, null, null))
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listByUserId(userId);
+        verify(scheduleService, times(1)).listByUserId(userId, ScheduleFields.ALL);
     }
 
     @Test
@@ -401,44 +421,113 @@ class ScheduleControllerTest {
                 .recurrence("WEEKLY")
                 .build();
 
-        when(scheduleService.upcoming(anyString(), anyString(), anyInt()))
+        when(scheduleService.upcoming(anyString(), anyString(), anyInt(), any()))
                 .thenReturn(Flux.just(scheduleResponse, response2));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.upcoming("user123", "Channel 1", 10))
+        StepVerifier.create(scheduleController.upcoming("user123", "Channel 1", 10, null))
                 .expectNextCount(2)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).upcoming("user123", "Channel 1", 10);
+        verify(scheduleService, times(1)).upcoming("user123", "Channel 1", 10, ScheduleFields.ALL);
     }
 
     // Test for edge cases
     @Test
     void list_EmptyStringUserId_HandlesAsNull() {
         // Arrange
-        when(scheduleService.listAll())
+        when(scheduleService.listAll(ScheduleFields.ALL))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.list("", null))
+        StepVerifier.create(scheduleController.list("", null, null))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).listAll();
+        verify(scheduleService, times(1)).listAll(ScheduleFields.ALL);
     }
 
     @Test
     void upcoming_WithNegativeLimit_HandlesNegative() {
         // Arrange
         Integer negativeLimit = -5;
-        when(scheduleService.upcoming(null, null, negativeLimit))
+        when(scheduleService.upcoming(null, null, negativeLimit, ScheduleFields.ALL))
+                .thenReturn(Flux.just(scheduleResponse));
+
+        // Act & Assert
+        StepVerifier.create(scheduleController.upcoming(null, null, negativeLimit, null))
+                .expectNext(scheduleResponse)
+                .verifyComplete();
+
+        verify(scheduleService, times(1)).upcoming(null, null, negativeLimit, ScheduleFields.ALL);
+    }
+
+    @Test
+    void patch_ValidRequest_DelegatesToService() {
+        // Arrange
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().title("Renamed").version(2L).build();
+        when(scheduleService.updateSchedule("schedule123", update))
+                .thenReturn(Mono.just(scheduleResponse));
+
+        // Act & Assert
+        StepVerifier.create(scheduleController.patch("schedule123", update))
+                .expectNext(scheduleResponse)
+                .verifyComplete();
+
+        verify(scheduleService, times(1)).updateSchedule("schedule123", update);
+    }
+
+    @Test
+    void update_FullRequest_PassesAllFieldsAndVersion() {
+        // Arrange
+        when(scheduleService.updateSchedule(eq("schedule123"), any(ScheduleUpdateRequest.class)))
+                .thenReturn(Mono.just(scheduleResponse));
+
+        // Act & Assert
+        StepVerifier.create(scheduleController.update("schedule123", validScheduleRequest, 4L))
+                .expectNext(scheduleResponse)
+                .verifyComplete();
+
+        verify(scheduleService, times(1))
+                .updateSchedule("schedule123", ScheduleUpdateRequest.from(validScheduleRequest, 4L));
+    }
+
+    @Test
+    void list_WithFields_PassesProjectionToService() {
+        // Arrange
+        when(scheduleService.listByChannel(eq("Channel 1"), any(ScheduleFields.class)))
                 .thenReturn(Flux.just(scheduleResponse));
 
         // Act & Assert
-        StepVerifier.create(scheduleController.upcoming(null, null, negativeLimit))
+        StepVerifier.create(scheduleController.list(null, "Channel 1", "id,title,startAt"))
                 .expectNext(scheduleResponse)
                 .verifyComplete();
 
-        verify(scheduleService, times(1)).upcoming(null, null, negativeLimit);
+        verify(scheduleService).listByChannel(eq("Channel 1"),
+                argThat(f -> !f.isAll() && f.includes("title") && !f.includes("notes")));
+    }
+
+    @Test
+    void get_UnknownField_ThrowsBadRequest() {
+        assertThrows(IllegalArgumentException.class, () -> scheduleController.get("schedule123", "id,secret"));
+        verifyNoInteractions(scheduleService);
+    }
+
+    @Test
+    void grid_DelegatesToGridService() {
+        // Arrange
+        Instant from = Instant.parse("2024-01-01T00:00:00Z");
+        Instant to = Instant.parse("2024-01-02T00:00:00Z");
+        GridOccurrence occurrence = GridOccurrence.builder()
+                .scheduleId("schedule123")
+                .channel("Channel 1")
+                .startAt(Instant.parse("2024-01-01T14:30:00Z"))
+                .build();
+        when(gridService.grid(List.of("Channel 1"), null, from, to)).thenReturn(Flux.just(occurrence));
+
+        // Act & Assert
+        StepVerifier.create(scheduleController.grid(List.of("Channel 1"), null, from, to))
+                .expectNext(occurrence)
+                .verifyComplete();
     }
-}
\ No newline at end of file
+}
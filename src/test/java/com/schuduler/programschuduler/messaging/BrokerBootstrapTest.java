@@ -0,0 +1,72 @@
+package com.schuduler.programschuduler.messaging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.boot.actuate.health.Status;
+
+import java.net.ConnectException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BrokerBootstrapTest {
+
+    @Mock
+    private RabbitAdmin admin;
+
+    @Mock
+    private PrePlaybackEventPublisher publisher;
+
+    private BrokerBootstrap bootstrap;
+
+    @BeforeEach
+    void setUp() {
+        bootstrap = new BrokerBootstrap(admin, publisher, 1, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bootstrap.stop();
+    }
+
+    @Test
+    void start_BrokerDownThenUp_RetriesAndFlushesBuffer() {
+        // Arrange
+        AmqpConnectException down = new AmqpConnectException(new ConnectException("Connection refused"));
+        doThrow(down).doThrow(down).doNothing().when(admin).initialize();
+
+        // Act
+        bootstrap.start();
+
+        // Assert
+        verify(publisher, timeout(2000)).brokerReady();
+        verify(admin, times(3)).initialize();
+        assertTrue(bootstrap.isReady());
+        assertEquals(Status.UP, bootstrap.health().getStatus());
+        assertEquals(3, bootstrap.health().getDetails().get("attempts"));
+    }
+
+    @Test
+    void health_BeforeBrokerReachable_IsOutOfService() {
+        // Arrange
+        doThrow(new AmqpConnectException(new ConnectException("Connection refused"))).when(admin).initialize();
+        when(publisher.bufferedCount()).thenReturn(7);
+
+        // Act
+        bootstrap.start();
+        verify(admin, timeout(2000).atLeast(2)).initialize();
+
+        // Assert
+        assertFalse(bootstrap.isReady());
+        assertEquals(Status.OUT_OF_SERVICE, bootstrap.health().getStatus());
+        assertEquals(7, bootstrap.health().getDetails().get("buffered"));
+        verify(publisher, never()).brokerReady();
+    }
+}
@@ -0,0 +1,53 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.config.RabbitMQConfig;
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborMessageConverterTest {
+
+    private final PrePlaybackEvent event = PrePlaybackEvent.builder()
+            .scheduleId("schedule-123")
+            .userId("user-456")
+            .channel("channel-1")
+            .programUrl("https://example.com/video.mp4")
+            .startAt(Instant.parse("2024-01-15T10:30:00Z"))
+            .durationMin(60)
+            .build();
+
+    @Test
+    void toMessage_SetsCborContentTypeAndRoundTrips() {
+        CborMessageConverter converter = new CborMessageConverter();
+
+        Message message = converter.toMessage(event, new MessageProperties());
+
+        assertEquals(CborMessageConverter.CONTENT_TYPE, message.getMessageProperties().getContentType());
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    void configuredConverter_EncodesWithSelectedFormatAndDecodesBoth() {
+        MessageConverter cborOut = new RabbitMQConfig().jacksonMessageConverter("cbor");
+
+        Message cbor = cborOut.toMessage(event, new MessageProperties());
+        Message json = new Jackson2JsonMessageConverter().toMessage(event, new MessageProperties());
+
+        assertEquals(CborMessageConverter.CONTENT_TYPE, cbor.getMessageProperties().getContentType());
+        assertEquals(event, cborOut.fromMessage(cbor));
+        assertEquals(event, cborOut.fromMessage(json));
+        assertTrue(cbor.getBody().length < json.getBody().length);
+    }
+
+    @Test
+    void configuredConverter_UnknownEncoding_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new RabbitMQConfig().jacksonMessageConverter("xml"));
+    }
+}
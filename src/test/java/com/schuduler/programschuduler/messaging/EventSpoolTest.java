@@ -0,0 +1,177 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private EventSpool spool;
+
+    @AfterEach
+    void tearDown() {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    private EventSpool open(int segmentBytes) throws Exception {
+        EventSpool opened = new EventSpool(true, dir, segmentBytes, false);
+        opened.open();
+        return opened;
+    }
+
+    private static PrePlaybackEvent event(String id) {
+        return PrePlaybackEvent.builder()
+                .scheduleId(id)
+                .userId("user-1")
+                .channel("Kanal \u00fc \u20ac \ud83d\udcfa")
+                .programUrl("http://example.com/" + id + ".mp4")
+                .startAt(Instant.parse("2024-01-15T10:30:00.123456789Z"))
+                .durationMin(45)
+                .stage("warmup")
+                .build();
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void replay_ReturnsEventsInAppendOrder() throws Exception {
+        spool = open(1 << 16);
+        spool.append(event("a"));
+        spool.append(event("b"));
+        spool.append(PrePlaybackEvent.builder().scheduleId("nulls").build());
+
+        List<PrePlaybackEvent> sent = new ArrayList<>();
+        int acked = spool.replay(sent::add);
+
+        assertEquals(3, acked);
+        assertEquals(List.of(event("a"), event("b"), PrePlaybackEvent.builder().scheduleId("nulls").build()), sent);
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    void replay_SenderFails_StopsAndResumesAtSameEvent() throws Exception {
+        spool = open(1 << 16);
+        spool.append(event("a"));
+        spool.append(event("b"));
+
+        List<String> sent = new ArrayList<>();
+        spool.replay(e -> {
+            if (e.getScheduleId().equals("b")) {
+                throw new IllegalStateException("broker down");
+            }
+            return sent.add(e.getScheduleId());
+        });
+        assertEquals(1, spool.pending());
+
+        spool.replay(e -> sent.add(e.getScheduleId()));
+        assertEquals(List.of("a", "b"), sent);
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    void open_AfterRestart_RecoversOnlyUnackedEvents() throws Exception {
+        spool = open(1 << 16);
+        spool.append(event("a"));
+        spool.append(event("b"));
+        spool.append(event("c"));
+        spool.replay(e -> e.getScheduleId().equals("a"));
+        spool.close();
+
+        spool = open(1 << 16);
+        List<String> sent = new ArrayList<>();
+        spool.replay(e -> sent.add(e.getScheduleId()));
+
+        assertEquals(List.of("b", "c"), sent);
+    }
+
+    @Test
+    void open_TornLastRecord_IsIgnored() throws Exception {
+        spool = open(1 << 16);
+        spool.append(event("a"));
+        spool.append(event("b"));
+        spool.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // flip a payload byte of the second record
+        int second = 8 + 8 + recordLength(segment, 8);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buf.put(second + 8 + 2, (byte) (buf.get(second + 8 + 2) ^ 0x7F));
+        }
+
+        spool = open(1 << 16);
+        List<String> sent = new ArrayList<>();
+        spool.replay(e -> sent.add(e.getScheduleId()));
+
+        assertEquals(List.of("a"), sent);
+    }
+
+    @Test
+    void replay_AckedSegmentsAreDeleted() throws Exception {
+        spool = open(256);
+        for (int i = 0; i < 10; i++) {
+            spool.append(event("event-" + i));
+        }
+        assertTrue(segmentFiles() > 1);
+
+        List<String> sent = new ArrayList<>();
+        spool.replay(e -> sent.add(e.getScheduleId()));
+
+        assertEquals(10, sent.size());
+        assertEquals("event-9", sent.get(9));
+        assertEquals(0, segmentFiles());
+
+        spool.append(event("after"));
+        assertEquals(1, spool.pending());
+    }
+
+    private static int recordLength(Path segment, int at) throws Exception {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).getInt(at);
+        }
+    }
+
+    @Test
+    void replay_BroadcastEvent_KeepsIdLists() throws Exception {
+        spool = open(1 << 16);
+        PrePlaybackEvent broadcast = PrePlaybackEvent.builder()
+                .channel("c1")
+                .programUrl("http://example.com/show.mp4")
+                .startAt(Instant.parse("2024-01-15T20:00:00Z"))
+                .stage("preplay")
+                .scheduleIds(List.of("s1", "s2", "s3"))
+                .userIds(Arrays.asList("u1", null, "u3"))
+                .build();
+        spool.append(broadcast);
+
+        List<PrePlaybackEvent> sent = new ArrayList<>();
+        spool.replay(sent::add);
+
+        assertEquals(List.of(broadcast), sent);
+    }
+}
@@ -0,0 +1,87 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares JSON and CBOR encodings of {@link PrePlaybackEvent}: body size and
+ * encode/decode throughput. Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class PrePlaybackEventEncodingBenchmark {
+
+    private static final int EVENTS = 10_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    @Test
+    void compareJsonAndCbor() {
+        List<PrePlaybackEvent> events = sampleEvents();
+        report("json", new Jackson2JsonMessageConverter(), events);
+        report("cbor", new CborMessageConverter(), events);
+    }
+
+    private static void report(String name, MessageConverter converter, List<PrePlaybackEvent> events) {
+        long bytes = 0;
+        for (PrePlaybackEvent e : events) {
+            bytes += converter.toMessage(e, new MessageProperties()).getBody().length;
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            roundTrip(converter, events);
+        }
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long[] t = roundTrip(converter, events);
+            encodeNanos += t[0];
+            decodeNanos += t[1];
+        }
+
+        long ops = (long) EVENTS * ROUNDS;
+        System.out.printf("%-5s avg body %6.1f B | encode %,10.0f msg/s | decode %,10.0f msg/s%n",
+                name,
+                (double) bytes / EVENTS,
+                ops / (encodeNanos / 1e9),
+                ops / (decodeNanos / 1e9));
+    }
+
+    private static long[] roundTrip(MessageConverter converter, List<PrePlaybackEvent> events) {
+        List<Message> messages = new ArrayList<>(events.size());
+        long t0 = System.nanoTime();
+        for (PrePlaybackEvent e : events) {
+            messages.add(converter.toMessage(e, new MessageProperties()));
+        }
+        long t1 = System.nanoTime();
+        for (Message m : messages) {
+            converter.fromMessage(m);
+        }
+        long t2 = System.nanoTime();
+        return new long[] { t1 - t0, t2 - t1 };
+    }
+
+    private static List<PrePlaybackEvent> sampleEvents() {
+        Instant topOfHour = Instant.parse("2024-01-15T20:00:00Z");
+        List<PrePlaybackEvent> events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(PrePlaybackEvent.builder()
+                    .scheduleId(String.format("65a4f1c2e4b0a1b2c3d4%04x", i))
+                    .userId("user-" + (i % 5000))
+                    .channel("channel-" + (i % 200))
+                    .programUrl("https://cdn.example.com/programmes/" + (i % 500) + "/master.m3u8")
+                    .startAt(topOfHour)
+                    .durationMin(30 + (i % 4) * 15)
+                    .build());
+        }
+        return events;
+    }
+}
@@ -1,17 +1,28 @@
 package com.schuduler.programschuduler.messaging;
 
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
 import com.schuduler.programschuduler.config.RabbitMQConfig;
 import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import com.schuduler.programschuduler.dto.PrePlaybackEventBatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -22,6 +33,15 @@ class PrePlaybackEventPublisherTest {
     @Mock
     private RabbitTemplate rabbitTemplate;
 
+    @Mock
+    private EventSpool spool;
+
+    @Mock
+    private PublishRetrier retrier;
+
+    @Spy
+    private PrePlaybackProperties preplay = new PrePlaybackProperties();
+
     @InjectMocks
     private PrePlaybackEventPublisher prePlaybackEventPublisher;
 
@@ -282,4 +302,337 @@ class PrePlaybackEventPublisherTest {
         verify(rabbitTemplate, times(1))
                 .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(pastEvent));
     }
-}
\ No newline at end of file
+
+    @Test
+    void publish_BatchingEnabled_SendsOneEnvelopePerRoutingKeyWhenFull() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchEnabled", true);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxSize", 3);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxDelayMs", 60_000L);
+        prePlaybackEventPublisher.startBatching();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            prePlaybackEventPublisher.publish(PrePlaybackEvent.builder().scheduleId("s" + i).build());
+        }
+
+        // Assert
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(rabbitTemplate, timeout(1000).times(1))
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), payload.capture());
+        PrePlaybackEventBatch batch = (PrePlaybackEventBatch) payload.getValue();
+        assertEquals(RabbitMQConfig.ROUTING_KEY, batch.getRoutingKey());
+        assertEquals(3, batch.getEvents().size());
+        assertEquals("s0", batch.getEvents().get(0).getScheduleId());
+    }
+
+    @Test
+    void publish_BatchingEnabled_FlushesPartialBatchOnShutdown() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchEnabled", true);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxSize", 100);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxDelayMs", 60_000L);
+        prePlaybackEventPublisher.startBatching();
+
+        // Act
+        prePlaybackEventPublisher.publish(prePlaybackEvent);
+        verifyNoInteractions(rabbitTemplate);
+        prePlaybackEventPublisher.stopBatching();
+
+        // Assert
+        verify(rabbitTemplate, timeout(1000).times(1))
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), any(PrePlaybackEventBatch.class));
+    }
+
+    @Test
+    void publish_BatchFailsWithSpoolAndRetrier_SpoolsInsteadOfRetrying() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchEnabled", true);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxSize", 1);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxDelayMs", 60_000L);
+        when(spool.isEnabled()).thenReturn(true);
+        lenient().when(retrier.isEnabled()).thenReturn(true);
+        doAnswer(inv -> {
+            CorrelationData confirm = inv.getArgument(3);
+            confirm.getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY),
+                any(PrePlaybackEventBatch.class), any(CorrelationData.class));
+        prePlaybackEventPublisher.startBatching();
+
+        // Act
+        CompletableFuture<Void> taken = prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        verify(spool, timeout(1000)).append(prePlaybackEvent);
+        assertTrue(taken.isDone() && !taken.isCompletedExceptionally());
+        verify(retrier, never()).retry(any(), any(), any());
+    }
+
+    @Test
+    void publish_BatchFailsWithoutSpoolOrRetrier_FailsThePublishFutures() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchEnabled", true);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxSize", 1);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "batchMaxDelayMs", 60_000L);
+        doThrow(new AmqpConnectException(new java.net.ConnectException("Connection refused")))
+                .when(rabbitTemplate)
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), any(PrePlaybackEventBatch.class));
+        prePlaybackEventPublisher.startBatching();
+
+        // Act
+        CompletableFuture<Void> taken = prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        assertThrows(java.util.concurrent.ExecutionException.class,
+                () -> taken.get(1, java.util.concurrent.TimeUnit.SECONDS));
+    }
+
+    @Test
+    void publish_ChannelRouting_UsesChannelRoutingKey() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "routing", PrePlaybackRouting.CHANNEL);
+        PrePlaybackEvent event = PrePlaybackEvent.builder().scheduleId("s1").channel("BBC One.HD").build();
+
+        // Act
+        prePlaybackEventPublisher.publish(event);
+
+        // Assert
+        verify(rabbitTemplate, times(1))
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq("schedule.preplay.channel.BBC_One_HD"), eq(event));
+    }
+
+    @Test
+    void publish_UserHashRouting_SameUserAlwaysSameKey() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "routing", PrePlaybackRouting.USER_HASH);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "userHashBuckets", 16);
+        String expectedKey = "schedule.preplay.user." + Math.floorMod("user-456".hashCode(), 16);
+
+        // Act
+        prePlaybackEventPublisher.publish(prePlaybackEvent);
+        prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        verify(rabbitTemplate, times(2))
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(expectedKey), eq(prePlaybackEvent));
+    }
+
+    @Test
+    void publish_UserHashRoutingBroadcast_BucketsByChannel() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "routing", PrePlaybackRouting.USER_HASH);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "userHashBuckets", 16);
+        PrePlaybackEvent broadcast = PrePlaybackEvent.builder()
+                .channel("channel-1")
+                .scheduleIds(List.of("s1", "s2"))
+                .userIds(List.of("u1", "u2"))
+                .build();
+        String expectedKey = "schedule.preplay.user." + Math.floorMod("channel-1".hashCode(), 16);
+
+        // Act
+        prePlaybackEventPublisher.publish(broadcast);
+
+        // Assert
+        verify(rabbitTemplate, times(1))
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(expectedKey), eq(broadcast));
+    }
+
+    @Test
+    void publish_BrokerNotReady_BuffersUntilReadyThenPublishesInOrder() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "awaitBroker", true);
+        prePlaybackEventPublisher.init();
+        PrePlaybackEvent first = PrePlaybackEvent.builder().scheduleId("first").build();
+        PrePlaybackEvent second = PrePlaybackEvent.builder().scheduleId("second").build();
+
+        // Act
+        prePlaybackEventPublisher.publish(first);
+        prePlaybackEventPublisher.publish(second);
+        verifyNoInteractions(rabbitTemplate);
+        assertEquals(2, prePlaybackEventPublisher.bufferedCount());
+        prePlaybackEventPublisher.brokerReady();
+
+        // Assert
+        var inOrder = inOrder(rabbitTemplate);
+        inOrder.verify(rabbitTemplate).convertAndSend(RabbitMQConfig.EXCHANGE, RabbitMQConfig.ROUTING_KEY, first);
+        inOrder.verify(rabbitTemplate).convertAndSend(RabbitMQConfig.EXCHANGE, RabbitMQConfig.ROUTING_KEY, second);
+        assertEquals(0, prePlaybackEventPublisher.bufferedCount());
+        assertTrue(prePlaybackEventPublisher.isBrokerReady());
+    }
+
+    @Test
+    void publish_BrokerNotReadyAndBufferFull_DropsAndCounts() {
+        // Arrange
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "awaitBroker", true);
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "bufferCapacity", 1);
+        prePlaybackEventPublisher.init();
+
+        // Act
+        CompletableFuture<Void> buffered = prePlaybackEventPublisher.publish(prePlaybackEvent);
+        CompletableFuture<Void> dropped = prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        assertEquals(1, prePlaybackEventPublisher.bufferedCount());
+        assertEquals(1, prePlaybackEventPublisher.droppedCount());
+        assertFalse(buffered.isDone());
+        assertTrue(dropped.isCompletedExceptionally());
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void publish_LeasesOn_TakenOnlyOnceTheBrokerAcks() {
+        // Arrange
+        preplay.getLease().setEnabled(true);
+        AtomicReference<CorrelationData> sent = new AtomicReference<>();
+        doAnswer(inv -> {
+            sent.set(inv.getArgument(3));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY),
+                eq(prePlaybackEvent), any(CorrelationData.class));
+
+        // Act
+        CompletableFuture<Void> taken = prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        assertFalse(taken.isDone());
+        sent.get().getFuture().complete(new CorrelationData.Confirm(true, null));
+        assertTrue(taken.isDone());
+        assertFalse(taken.isCompletedExceptionally());
+    }
+
+    @Test
+    void publish_LeasesOnAndBrokerNacks_NotTaken() {
+        // Arrange
+        preplay.getLease().setEnabled(true);
+        doAnswer(inv -> {
+            inv.getArgument(3, CorrelationData.class).getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY),
+                eq(prePlaybackEvent), any(CorrelationData.class));
+
+        // Act
+        CompletableFuture<Void> taken = prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        assertTrue(taken.isCompletedExceptionally());
+        verify(spool, never()).append(any());
+    }
+
+    @Test
+    void publish_BrokerRejectsAndSpoolEnabled_SpoolsInsteadOfThrowing() {
+        // Arrange
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.isEmpty()).thenReturn(true);
+        doThrow(new AmqpConnectException(new java.net.ConnectException("Connection refused")))
+                .when(rabbitTemplate)
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(prePlaybackEvent),
+                        any(CorrelationData.class));
+
+        // Act
+        prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        verify(spool, times(1)).append(prePlaybackEvent);
+    }
+
+    @Test
+    void publish_BrokerNacksAndSpoolEnabled_SpoolsEvent() {
+        // Arrange
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.isEmpty()).thenReturn(true);
+        doAnswer(inv -> {
+            inv.getArgument(3, CorrelationData.class).getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY),
+                eq(prePlaybackEvent), any(CorrelationData.class));
+
+        // Act
+        prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        verify(spool, times(1)).append(prePlaybackEvent);
+    }
+
+    @Test
+    void replaySpool_RunsOffTheCallingThread() {
+        // Arrange
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> replayedOn = new AtomicReference<>();
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.isEmpty()).thenReturn(false);
+        when(spool.replay(any())).thenAnswer(inv -> {
+            replayedOn.set(Thread.currentThread());
+            return 0;
+        });
+
+        // Act
+        prePlaybackEventPublisher.replaySpool();
+
+        // Assert
+        verify(spool, timeout(1000).times(1)).replay(any());
+        assertNotSame(caller, replayedOn.get());
+    }
+
+    @Test
+    void publish_SpoolNotEmpty_QueuesBehindSpooledEvents() {
+        // Arrange
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.isEmpty()).thenReturn(false);
+
+        // Act
+        prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert
+        verify(spool, times(1)).append(prePlaybackEvent);
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void publish_BrokerRejectsAndRetryEnabled_HandsEventToRetrier() {
+        // Arrange
+        AmqpConnectException down = new AmqpConnectException(new java.net.ConnectException("Connection refused"));
+        CompletableFuture<Void> retried = new CompletableFuture<>();
+        when(retrier.isEnabled()).thenReturn(true);
+        when(retrier.retry(prePlaybackEvent, RabbitMQConfig.ROUTING_KEY, down)).thenReturn(retried);
+        doThrow(down)
+                .when(rabbitTemplate)
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(prePlaybackEvent));
+
+        // Act
+        CompletableFuture<Void> taken = prePlaybackEventPublisher.publish(prePlaybackEvent);
+
+        // Assert: taken only once a retry was acked
+        verify(retrier, times(1)).retry(prePlaybackEvent, RabbitMQConfig.ROUTING_KEY, down);
+        verify(spool, never()).append(any());
+        assertFalse(taken.isDone());
+        retried.complete(null);
+        assertTrue(taken.isDone() && !taken.isCompletedExceptionally());
+    }
+
+    @Test
+    void publish_StageWithRoutingSuffix_InsertsItUnderThePrefix() {
+        preplay.setStages(List.of(
+                new PrePlaybackProperties.Stage("warmup", 1800, "warmup"),
+                new PrePlaybackProperties.Stage("preplay", 300, null)));
+        PrePlaybackEvent warmup = PrePlaybackEvent.builder().scheduleId("s1").stage("warmup").build();
+        PrePlaybackEvent preplayEvent = PrePlaybackEvent.builder().scheduleId("s1").stage("preplay").build();
+
+        prePlaybackEventPublisher.publish(warmup);
+        prePlaybackEventPublisher.publish(preplayEvent);
+
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.EXCHANGE, "schedule.preplay.warmup", warmup);
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.EXCHANGE, RabbitMQConfig.ROUTING_KEY, preplayEvent);
+    }
+
+    @Test
+    void publish_StageWithRoutingSuffixAndChannelRouting_KeepsTheChannelSuffix() {
+        ReflectionTestUtils.setField(prePlaybackEventPublisher, "routing", PrePlaybackRouting.CHANNEL);
+        preplay.setStages(List.of(new PrePlaybackProperties.Stage("warmup", 1800, "warmup")));
+        PrePlaybackEvent warmup = PrePlaybackEvent.builder().scheduleId("s1").channel("news").stage("warmup").build();
+
+        prePlaybackEventPublisher.publish(warmup);
+
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.EXCHANGE, "schedule.preplay.warmup.channel.news", warmup);
+    }
+}
@@ -0,0 +1,188 @@
+package com.schuduler.programschuduler.messaging;
+
+import com.schuduler.programschuduler.config.RabbitMQConfig;
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PublishRetrierTest {
+
+    private static final AmqpConnectException DOWN = new AmqpConnectException(new ConnectException("Connection refused"));
+
+    @Mock
+    private RabbitTemplate template;
+
+    @Mock
+    private EventSpool spool;
+
+    private PublishRetrier retrier;
+
+    @AfterEach
+    void tearDown() {
+        if (retrier != null) {
+            retrier.stop();
+        }
+    }
+
+    private PublishRetrier retrier(int maxAttempts, long initialBackoffMs) {
+        retrier = new PublishRetrier(template, spool, true, maxAttempts, initialBackoffMs, 1_000, 100, 200);
+        return retrier;
+    }
+
+    private static PrePlaybackEvent startingIn(long seconds) {
+        return PrePlaybackEvent.builder().scheduleId("s1").startAt(Instant.now().plusSeconds(seconds)).build();
+    }
+
+    // the broker's publisher confirm for the CorrelationData at argument index
+    private static Answer<Void> confirm(int index, boolean ack) {
+        return inv -> {
+            CorrelationData data = inv.getArgument(index);
+            data.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack"));
+            return null;
+        };
+    }
+
+    @Test
+    void retry_SucceedsOnSecondAttempt_PublishesOnceMoreAndNotDeadLettered() {
+        // Arrange
+        PrePlaybackEvent event = startingIn(600);
+        doThrow(DOWN).doAnswer(confirm(3, true)).when(template)
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event), any(CorrelationData.class));
+
+        // Act
+        CompletableFuture<Void> taken = retrier(5, 1).retry(event, RabbitMQConfig.ROUTING_KEY, DOWN);
+
+        // Assert
+        assertDoesNotThrow(() -> taken.get(2, TimeUnit.SECONDS));
+        verify(template, times(2)).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event),
+                any(CorrelationData.class));
+        verify(template, never()).convertAndSend(eq(RabbitMQConfig.DEAD_LETTER_EXCHANGE), any(String.class), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+        assertEquals(0, retrier.depth());
+    }
+
+    @Test
+    void retry_BrokerNacksTheRetry_RetriesAgainUntilAcked() {
+        // Arrange
+        PrePlaybackEvent event = startingIn(600);
+        doAnswer(confirm(3, false)).doAnswer(confirm(3, true)).when(template)
+                .convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event), any(CorrelationData.class));
+
+        // Act
+        CompletableFuture<Void> taken = retrier(5, 1).retry(event, RabbitMQConfig.ROUTING_KEY, DOWN);
+
+        // Assert
+        assertDoesNotThrow(() -> taken.get(2, TimeUnit.SECONDS));
+        verify(template, times(2)).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event),
+                any(CorrelationData.class));
+    }
+
+    @Test
+    void retry_RetryUnconfirmedAndSpoolEnabled_SpoolsInsteadOfCountingItDelivered() {
+        // Arrange
+        PrePlaybackEvent event = startingIn(600);
+        when(spool.isEnabled()).thenReturn(true);
+
+        // Act: the mocked send never confirms, so the confirm times out
+        CompletableFuture<Void> taken = retrier(5, 1).retry(event, RabbitMQConfig.ROUTING_KEY, DOWN);
+
+        // Assert
+        assertDoesNotThrow(() -> taken.get(2, TimeUnit.SECONDS));
+        verify(spool).append(event);
+        verify(template, times(1)).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event),
+                any(CorrelationData.class));
+    }
+
+    @Test
+    void retry_AttemptsExhausted_DeadLettersWithAttemptCount() {
+        // Arrange
+        PrePlaybackEvent event = startingIn(600);
+        doThrow(DOWN).when(template).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event),
+                any(CorrelationData.class));
+        doAnswer(confirm(4, true)).when(template).convertAndSend(eq(RabbitMQConfig.DEAD_LETTER_EXCHANGE),
+                eq(RabbitMQConfig.DEAD_LETTER_ROUTING_KEY), eq(event), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        // Act
+        CompletableFuture<Void> taken = retrier(3, 1).retry(event, RabbitMQConfig.ROUTING_KEY, DOWN);
+
+        // Assert
+        assertThrows(ExecutionException.class, () -> taken.get(2, TimeUnit.SECONDS));
+        ArgumentCaptor<MessagePostProcessor> headers = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(template).convertAndSend(eq(RabbitMQConfig.DEAD_LETTER_EXCHANGE),
+                eq(RabbitMQConfig.DEAD_LETTER_ROUTING_KEY), eq(event), headers.capture(), any(CorrelationData.class));
+        verify(template, times(3)).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event),
+                any(CorrelationData.class));
+        Message message = headers.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertEquals(3, (Integer) message.getMessageProperties().getHeader(PublishRetrier.ATTEMPTS_HEADER));
+        assertEquals("retries-exhausted", message.getMessageProperties().getHeader(PublishRetrier.REASON_HEADER));
+        assertEquals(1, retrier.deadLetteredCount());
+    }
+
+    @Test
+    void retry_NextAttemptAfterStart_DeadLettersWithoutRetrying() {
+        // Arrange
+        PrePlaybackEvent event = startingIn(0);
+
+        // Act
+        retrier(5, 500).retry(event, RabbitMQConfig.ROUTING_KEY, DOWN);
+
+        // Assert
+        verify(template).convertAndSend(eq(RabbitMQConfig.DEAD_LETTER_EXCHANGE),
+                eq(RabbitMQConfig.DEAD_LETTER_ROUTING_KEY), eq(event), any(MessagePostProcessor.class), any(CorrelationData.class));
+        verify(template, never()).convertAndSend(eq(RabbitMQConfig.EXCHANGE), eq(RabbitMQConfig.ROUTING_KEY), eq(event),
+                any(CorrelationData.class));
+    }
+
+    @Test
+    void retry_DeadLetterFailsWhileInTime_Spools() {
+        // Arrange
+        PrePlaybackEvent event = startingIn(600);
+        when(spool.isEnabled()).thenReturn(true);
+        doThrow(DOWN).when(template).convertAndSend(eq(RabbitMQConfig.DEAD_LETTER_EXCHANGE),
+                eq(RabbitMQConfig.DEAD_LETTER_ROUTING_KEY), eq(event), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        // Act
+        CompletableFuture<Void> taken = retrier(0, 1).retry(event, RabbitMQConfig.ROUTING_KEY, DOWN);
+
+        // Assert
+        verify(spool).append(event);
+        assertTrue(taken.isDone() && !taken.isCompletedExceptionally());
+    }
+
+    @Test
+    void backoffMs_GrowsExponentiallyWithJitterAndCap() {
+        retrier(10, 100);
+
+        for (int i = 0; i < 100; i++) {
+            long first = retrier.backoffMs(1);
+            long third = retrier.backoffMs(3);
+            long capped = retrier.backoffMs(10);
+            assertTrue(first >= 50 && first <= 100, "first=" + first);
+            assertTrue(third >= 200 && third <= 400, "third=" + third);
+            assertTrue(capped >= 500 && capped <= 1_000, "capped=" + capped);
+        }
+    }
+}
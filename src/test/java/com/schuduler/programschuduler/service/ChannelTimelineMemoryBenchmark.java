@@ -0,0 +1,70 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap retained by 10k channel timelines with a day of half-hour programmes each,
+ * measured (used heap after GC) and as reported by {@code scheduler.timeline.bytes},
+ * plus the cost of a {@code /now} lookup.
+ */
+@Tag("benchmark")
+class ChannelTimelineMemoryBenchmark {
+
+    private static final int CHANNELS = 10_000;
+    private static final int PROGRAMMES_PER_DAY = 48;
+    private static final Instant DAY = Instant.parse("2030-01-15T00:00:00Z");
+
+    @Test
+    void tenThousandChannels() {
+        long before = usedHeapAfterGc();
+        List<ChannelTimeline> timelines = new ArrayList<>(CHANNELS);
+        for (int c = 0; c < CHANNELS; c++) {
+            String channel = "channel-" + c;
+            List<Schedule> series = new ArrayList<>(PROGRAMMES_PER_DAY);
+            for (int p = 0; p < PROGRAMMES_PER_DAY; p++) {
+                series.add(Schedule.builder()
+                        .id(String.format("%024x", (long) c * PROGRAMMES_PER_DAY + p))
+                        .title("Programme " + p + " on " + channel)
+                        .channel(channel)
+                        .startAt(DAY.plus(Duration.ofMinutes(30L * p)))
+                        .durationMin(30)
+                        .recurrence(Schedule.Recurrence.NONE)
+                        .programUrl("https://cdn.example.com/" + channel + "/" + p + ".m3u8")
+                        .build());
+            }
+            timelines.add(ChannelTimeline.of(channel, series, DAY, DAY.plus(Duration.ofHours(24))));
+        }
+        long measured = usedHeapAfterGc() - before;
+        long estimated = timelines.stream().mapToLong(ChannelTimeline::estimatedBytes).sum();
+
+        long now = DAY.plus(Duration.ofHours(13)).plusSeconds(17).toEpochMilli();
+        int lookups = 5_000_000;
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sink += timelines.get(i % CHANNELS).now(now + i % 1_000).current().startAt().getEpochSecond();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("channels=%d programmes/channel=%d%n", CHANNELS, PROGRAMMES_PER_DAY);
+        System.out.printf("heap measured: %.1f MiB per 10k channels (%d B/channel)%n",
+                measured / 1048576.0, measured / CHANNELS);
+        System.out.printf("heap estimated (scheduler.timeline.bytes): %.1f MiB%n", estimated / 1048576.0);
+        System.out.printf("now() lookup: %.0f ns/op (%d)%n", (double) elapsed / lookups, sink % 10);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,101 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.dto.ChannelNowResponse;
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelTimelineTest {
+
+    private static final Instant FROM = Instant.parse("2024-03-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2024-03-02T00:00:00Z");
+
+    private static Schedule schedule(String id, String startAt, int durationMin, Schedule.Recurrence recurrence) {
+        return Schedule.builder()
+                .id(id)
+                .title("Title " + id)
+                .channel("A")
+                .startAt(Instant.parse(startAt))
+                .durationMin(durationMin)
+                .recurrence(recurrence)
+                .programUrl("http://example.com/" + id + ".mp4")
+                .build();
+    }
+
+    private static long at(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    private final ChannelTimeline timeline = ChannelTimeline.of("A", List.of(
+            schedule("news", "2024-02-01T20:00:00Z", 30, Schedule.Recurrence.DAILY),
+            schedule("film", "2024-03-01T20:30:00Z", 120, Schedule.Recurrence.NONE),
+            schedule("morning", "2024-03-01T08:00:00Z", 60, Schedule.Recurrence.NONE)), FROM, TO);
+
+    @Test
+    void now_DuringProgramme_ReturnsCurrentAndNext() {
+        ChannelNowResponse now = timeline.now(at("2024-03-01T20:10:00Z"));
+
+        assertEquals("PLAY", now.status());
+        assertEquals("news", now.current().scheduleId());
+        assertEquals(Instant.parse("2024-03-01T20:30:00Z"), now.current().endAt());
+        assertEquals("film", now.next().scheduleId());
+    }
+
+    @Test
+    void now_ExactlyAtStart_ReturnsStartingProgramme() {
+        ChannelNowResponse now = timeline.now(at("2024-03-01T20:30:00Z"));
+
+        assertEquals("film", now.current().scheduleId());
+        assertNull(now.next());
+    }
+
+    @Test
+    void now_InGap_ReturnsOnlyNext() {
+        ChannelNowResponse now = timeline.now(at("2024-03-01T12:00:00Z"));
+
+        assertEquals("NONE", now.status());
+        assertNull(now.current());
+        assertEquals("news", now.next().scheduleId());
+    }
+
+    @Test
+    void now_BeforeFirstEntry_ReturnsFirstAsNext() {
+        ChannelNowResponse now = timeline.now(at("2024-03-01T01:00:00Z"));
+
+        assertNull(now.current());
+        assertEquals("morning", now.next().scheduleId());
+    }
+
+    @Test
+    void now_LaterProgrammeAlreadyEnded_ReturnsEarlierOneStillRunning() {
+        ChannelTimeline overlapping = ChannelTimeline.of("A", List.of(
+                schedule("marathon", "2024-03-01T10:00:00Z", 240, Schedule.Recurrence.NONE),
+                schedule("flash", "2024-03-01T11:00:00Z", 5, Schedule.Recurrence.NONE),
+                schedule("late", "2024-03-01T15:00:00Z", 30, Schedule.Recurrence.NONE)), FROM, TO);
+
+        ChannelNowResponse inside = overlapping.now(at("2024-03-01T11:02:00Z"));
+        ChannelNowResponse after = overlapping.now(at("2024-03-01T12:00:00Z"));
+
+        assertEquals("flash", inside.current().scheduleId());
+        assertEquals("PLAY", after.status());
+        assertEquals("marathon", after.current().scheduleId());
+        assertEquals("late", after.next().scheduleId());
+        assertNull(overlapping.now(at("2024-03-01T14:30:00Z")).current());
+    }
+
+    @Test
+    void with_ReplacesAndRemovesOccurrences() {
+        ChannelTimeline moved = timeline.with("film",
+                schedule("film", "2024-03-01T12:00:00Z", 60, Schedule.Recurrence.NONE), FROM, TO);
+        assertEquals("film", moved.now(at("2024-03-01T12:30:00Z")).current().scheduleId());
+        assertEquals(3, moved.size());
+
+        ChannelTimeline removed = moved.with("film", null, FROM, TO);
+        assertEquals(2, removed.size());
+        assertNull(removed.now(at("2024-03-01T12:30:00Z")).current());
+    }
+}
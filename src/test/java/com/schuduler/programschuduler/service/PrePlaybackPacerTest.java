@@ -0,0 +1,87 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrePlaybackPacerTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-15T19:45:00Z");
+    private static final Duration TICK = Duration.ofMillis(250);
+
+    private static Schedule schedule(String id, String channel) {
+        return Schedule.builder().id(id).userId("u-" + id).channel(channel).build();
+    }
+
+    private static PrePlaybackDue due(String id, String channel, Instant deadline) {
+        return new PrePlaybackDue(schedule(id, channel), "preplay", deadline);
+    }
+
+    @Test
+    void drain_ReleasesAtMostTheBurstWhenNothingIsDue() {
+        PrePlaybackPacer pacer = new PrePlaybackPacer(true, 10, 2, Set.of(), Set.of());
+        Instant deadline = NOW.plusSeconds(600);
+        pacer.offer(due("a", "c1", deadline));
+        pacer.offer(due("b", "c1", deadline));
+        pacer.offer(due("c", "c1", deadline));
+
+        assertEquals(2, pacer.drain(NOW, TICK).size());
+        assertEquals(1, pacer.pending());
+        assertTrue(pacer.drain(NOW, TICK).isEmpty());
+
+        // 100ms at 10/s refills one token
+        assertEquals(1, pacer.drain(NOW.plusMillis(100), TICK).size());
+    }
+
+    @Test
+    void drain_ReleasesDueSchedulesEvenWithoutTokens() {
+        PrePlaybackPacer pacer = new PrePlaybackPacer(true, 0, 0, Set.of(), Set.of());
+        pacer.offer(due("late", "c1", NOW.plusMillis(100)));
+        pacer.offer(due("early", "c1", NOW.plusSeconds(60)));
+
+        List<PrePlaybackDue> released = pacer.drain(NOW, TICK);
+
+        assertEquals(1, released.size());
+        assertEquals("late", released.get(0).schedule().getId());
+    }
+
+    @Test
+    void drain_OrdersByDeadlineThenPriority() {
+        PrePlaybackPacer pacer = new PrePlaybackPacer(true, 0, 3, Set.of("live"), Set.of());
+        Instant topOfHour = NOW.plusSeconds(600);
+        pacer.offer(due("normal", "c1", topOfHour));
+        pacer.offer(due("live", "live", topOfHour));
+        pacer.offer(due("sooner", "c1", topOfHour.minusSeconds(30)));
+
+        List<PrePlaybackDue> released = pacer.drain(NOW, TICK);
+
+        assertEquals(List.of("sooner", "live", "normal"), released.stream().map(d -> d.schedule().getId()).toList());
+    }
+
+    @Test
+    void offer_SameScheduleTwice_QueuesOnce() {
+        PrePlaybackPacer pacer = new PrePlaybackPacer(true, 0, 0, Set.of(), Set.of());
+
+        assertTrue(pacer.offer(due("a", "c1", NOW.plusSeconds(60))));
+        assertFalse(pacer.offer(due("a", "c1", NOW.plusSeconds(60))));
+        assertEquals(1, pacer.pending());
+    }
+
+    @Test
+    void offer_StagesOfOneSchedule_QueueSeparatelyInDeadlineOrder() {
+        PrePlaybackPacer pacer = new PrePlaybackPacer(true, 0, 2, Set.of(), Set.of());
+        Schedule s = schedule("a", "c1");
+
+        assertTrue(pacer.offer(new PrePlaybackDue(s, "preplay", NOW.plusSeconds(300))));
+        assertTrue(pacer.offer(new PrePlaybackDue(s, "warmup", NOW.plusSeconds(60))));
+        assertEquals(2, pacer.pending());
+
+        assertEquals(List.of("warmup", "preplay"), pacer.drain(NOW, TICK).stream().map(PrePlaybackDue::stage).toList());
+    }
+}
@@ -0,0 +1,122 @@
+package com.schuduler.programschuduler.service;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.schuduler.programschuduler.model.Schedule;
+import com.schuduler.programschuduler.model.ScheduleBucket;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Pre-playback window scan: {@code startAt} index range query on {@code schedules}
+ * vs. reading {@link ScheduleBucket} documents. Needs a MongoDB at
+ * {@code -Dbench.mongo.uri} (default {@code mongodb://localhost:27017}); skipped otherwise.
+ */
+@Tag("benchmark")
+class ScheduleBucketScanBenchmark {
+
+    private static final int SCHEDULES = 200_000;
+    private static final Instant DAY = Instant.parse("2030-01-15T00:00:00Z");
+    private static final Duration WINDOW = Duration.ofSeconds(60);
+
+    private static MongoClient client;
+    private static ReactiveMongoTemplate mongo;
+    private static ScheduleBucketStore buckets;
+
+    @BeforeAll
+    static void load() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        mongo = new ReactiveMongoTemplate(client, "scheduler-bench");
+        assumeTrue(reachable(), "MongoDB not reachable, skipping");
+
+        mongo.dropCollection(Schedule.class).block();
+        mongo.dropCollection(ScheduleBucket.class).block();
+        mongo.indexOps(Schedule.class).ensureIndex(new Index().on("startAt", Sort.Direction.ASC)).block();
+
+        buckets = new ScheduleBucketStore(mongo);
+        ReflectionTestUtils.setField(buckets, "enabled", true);
+        ReflectionTestUtils.setField(buckets, "bucketSeconds", 60L);
+
+        // 60% of programmes on the hour or half hour, the rest spread over the day
+        Random random = new Random(42);
+        List<Schedule> rows = new ArrayList<>(SCHEDULES);
+        Map<Long, List<ScheduleBucket.Entry>> byBucket = new TreeMap<>();
+        for (int i = 0; i < SCHEDULES; i++) {
+            int minute = random.nextInt(10) < 6 ? random.nextInt(48) * 30 : random.nextInt(1440);
+            Instant startAt = DAY.plusSeconds(minute * 60L);
+            Schedule s = Schedule.builder()
+                    .id(String.format("%024x", i))
+                    .userId("user-" + random.nextInt(50_000))
+                    .title("Programme " + i)
+                    .channel("channel-" + random.nextInt(300))
+                    .startAt(startAt)
+                    .durationMin(30)
+                    .recurrence(Schedule.Recurrence.NONE)
+                    .programUrl("https://cdn.example.com/p/" + random.nextInt(2000) + ".m3u8")
+                    .notes("x".repeat(200))
+                    .preplayPublished(false)
+                    .build();
+            rows.add(s);
+            byBucket.computeIfAbsent(buckets.bucketOf(startAt), b -> new ArrayList<>())
+                    .add(new ScheduleBucket.Entry(s.getId(), startAt, s.getUserId(), s.getChannel()));
+        }
+        mongo.insertAll(rows).blockLast();
+        List<ScheduleBucket> bucketDocs = new ArrayList<>();
+        byBucket.forEach((id, entries) -> bucketDocs.add(new ScheduleBucket(id, DAY.plus(Duration.ofDays(2)), entries)));
+        mongo.insertAll(bucketDocs).blockLast();
+    }
+
+    @AfterAll
+    static void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    void compareWindowScans() {
+        for (int round = 0; round < 2; round++) { // first round warms caches and the JIT
+            long indexNanos = 0, bucketNanos = 0, indexRows = 0, bucketRows = 0;
+            for (Instant t = DAY; t.isBefore(DAY.plus(Duration.ofDays(1))); t = t.plus(WINDOW)) {
+                Instant to = t.plus(WINDOW);
+
+                long t0 = System.nanoTime();
+                indexRows += mongo.find(Query.query(Criteria.where("startAt").gte(t).lt(to)
+                        .and("preplayPublished").ne(true)), Schedule.class).count().block();
+                long t1 = System.nanoTime();
+                bucketRows += buckets.due(t, to).count().block();
+                long t2 = System.nanoTime();
+
+                indexNanos += t1 - t0;
+                bucketNanos += t2 - t1;
+            }
+            if (round == 1) {
+                System.out.printf("index-only: %,d rows, %.2f ms per 1-minute scan%n", indexRows, indexNanos / 1440 / 1e6);
+                System.out.printf("buckets   : %,d rows, %.2f ms per 1-minute scan%n", bucketRows, bucketNanos / 1440 / 1e6);
+            }
+        }
+    }
+
+    private static boolean reachable() {
+        try {
+            mongo.executeCommand("{ ping: 1 }").block(Duration.ofSeconds(3));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Heap per million upcoming schedules: as {@link Schedule} entities grouped by user (what
+ * an index over the entity holds) vs. {@link ScheduleColumns}, measured (used heap after
+ * GC) and as reported by {@code scheduler.now-index.bytes}, plus the cost of a per-user
+ * lookup.
+ */
+@Tag("benchmark")
+class ScheduleColumnsMemoryBenchmark {
+
+    private static final int SCHEDULES = 1_000_000;
+    private static final int USERS = 200_000;
+    private static final int CHANNELS = 500;
+    private static final Instant DAY = Instant.parse("2030-01-15T00:00:00Z");
+
+    @Test
+    void oneMillionSchedules() {
+        long before = usedHeapAfterGc();
+        Map<String, List<Schedule>> entities = new HashMap<>();
+        forEachSchedule(s -> entities.computeIfAbsent(s.getUserId(), k -> new ArrayList<>()).add(s));
+        long entityBytes = usedHeapAfterGc() - before;
+        int users = entities.size();
+        entities.clear();
+
+        before = usedHeapAfterGc();
+        ScheduleColumns columns = new ScheduleColumns(SCHEDULES);
+        forEachSchedule(columns::put);
+        long columnBytes = usedHeapAfterGc() - before;
+
+        int lookups = 2_000_000;
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sink += columns.byUser("user-" + (i % USERS)).size();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("schedules=%d users=%d channels=%d%n", SCHEDULES, users, CHANNELS);
+        System.out.printf("entities by user: %.1f MiB per 1M schedules (%d B/schedule)%n",
+                entityBytes / 1048576.0, entityBytes / SCHEDULES);
+        System.out.printf("columns:          %.1f MiB per 1M schedules (%d B/schedule), estimated %.1f MiB%n",
+                columnBytes / 1048576.0, columnBytes / SCHEDULES, columns.estimatedBytes() / 1048576.0);
+        System.out.printf("byUser() lookup: %.0f ns/op (%d)%n", (double) elapsed / lookups, sink % 10);
+    }
+
+    // ObjectId-shaped ids, a programme URL shared per channel and half-hour slot
+    private static void forEachSchedule(java.util.function.Consumer<Schedule> sink) {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < SCHEDULES; i++) {
+            int channel = random.nextInt(CHANNELS);
+            int slot = random.nextInt(48);
+            sink.accept(Schedule.builder()
+                    .id(String.format("65a4f0c2%016x", i))
+                    .userId("user-" + random.nextInt(USERS))
+                    .channel("channel-" + channel)
+                    .startAt(DAY.plusSeconds(1800L * slot))
+                    .durationMin(30)
+                    .programUrl("https://cdn.example.com/channel-" + channel + "/" + slot + ".m3u8")
+                    .build());
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,93 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Warm vs. cold start of the now/next index with a million upcoming schedules: a cold
+ * start streams every schedule from MongoDB into fresh columns (timed here without the
+ * MongoDB round trips, so a lower bound), a warm start maps the snapshot and only reads
+ * the changes made since its watermark from the change stream. Also reports the cost of
+ * writing the snapshot, which happens every {@code snapshot.interval-ms} off the request
+ * path.
+ */
+@Tag("benchmark")
+class ScheduleColumnsSnapshotBenchmark {
+
+    private static final int SCHEDULES = 1_000_000;
+    private static final int USERS = 200_000;
+    private static final int CHANNELS = 500;
+    // changes in one default snapshot interval (5 min) at ~10 writes/s
+    private static final int CHANGES_SINCE_SNAPSHOT = 3_000;
+    private static final Instant DAY = Instant.parse("2030-01-15T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void oneMillionSchedules() throws IOException {
+        Path file = dir.resolve("now-index.snap");
+        ScheduleColumns columns = build();
+        long size = columns.writeSnapshot(file, DAY);
+
+        long cold = Long.MAX_VALUE;
+        long write = Long.MAX_VALUE;
+        long warm = Long.MAX_VALUE;
+        int restored = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            columns = build();
+            cold = Math.min(cold, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            columns.writeSnapshot(file, DAY);
+            write = Math.min(write, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ScheduleColumns.Snapshot snapshot = ScheduleColumns.readSnapshot(file);
+            SplittableRandom random = new SplittableRandom(round);
+            for (int i = 0; i < CHANGES_SINCE_SNAPSHOT; i++) {
+                snapshot.columns().put(schedule(random.nextInt(SCHEDULES), random));
+            }
+            warm = Math.min(warm, System.nanoTime() - start);
+            restored = snapshot.columns().size();
+        }
+
+        System.out.printf("schedules=%d users=%d snapshot=%.1f MiB (%d B/schedule)%n",
+                SCHEDULES, USERS, size / 1048576.0, size / SCHEDULES);
+        System.out.printf("cold start: %5d ms + MongoDB, %d documents read%n", cold / 1_000_000, SCHEDULES);
+        System.out.printf("warm start: %5d ms, %d change events read (%d rows)%n",
+                warm / 1_000_000, CHANGES_SINCE_SNAPSHOT, restored);
+        System.out.printf("snapshot write: %d ms%n", write / 1_000_000);
+    }
+
+    private static ScheduleColumns build() {
+        ScheduleColumns columns = new ScheduleColumns(16);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < SCHEDULES; i++) {
+            columns.put(schedule(i, random));
+        }
+        return columns;
+    }
+
+    // ObjectId-shaped ids, a programme URL shared per channel and half-hour slot
+    private static Schedule schedule(int i, SplittableRandom random) {
+        int channel = random.nextInt(CHANNELS);
+        int slot = random.nextInt(48);
+        return Schedule.builder()
+                .id(String.format("65a4f0c2%016x", i))
+                .userId("user-" + random.nextInt(USERS))
+                .channel("channel-" + channel)
+                .startAt(DAY.plusSeconds(1800L * slot))
+                .durationMin(30)
+                .programUrl("https://cdn.example.com/channel-" + channel + "/" + slot + ".m3u8")
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleColumnsTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T20:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    private static Schedule schedule(String id, String userId, int minutesFromStart) {
+        return Schedule.builder()
+                .id(id)
+                .userId(userId)
+                .channel("ch-" + userId)
+                .startAt(START.plusSeconds(60L * minutesFromStart))
+                .durationMin(30)
+                .programUrl("http://example.com/" + id + ".m3u8")
+                .build();
+    }
+
+    private static Set<String> ids(List<Schedule> schedules) {
+        return schedules.stream().map(Schedule::getId).collect(Collectors.toSet());
+    }
+
+    @Test
+    void byUser_ReturnsEveryColumnAsWritten() {
+        ScheduleColumns columns = new ScheduleColumns(4);
+        columns.put(schedule("65a4f0c2e1b2c3d4e5f60718", "alice", 0));
+        columns.put(Schedule.builder().id("legacy-1").userId("alice").startAt(START).build());
+        columns.put(schedule("65a4f0c2e1b2c3d4e5f60719", "bob", 30));
+
+        List<Schedule> alice = columns.byUser("alice");
+        assertEquals(Set.of("65a4f0c2e1b2c3d4e5f60718", "legacy-1"), ids(alice));
+        Schedule first = alice.stream().filter(s -> s.getId().startsWith("65a4")).findFirst().orElseThrow();
+        assertEquals(START, first.getStartAt());
+        assertEquals(30, first.getDurationMin());
+        assertEquals("ch-alice", first.getChannel());
+        assertEquals("http://example.com/65a4f0c2e1b2c3d4e5f60718.m3u8", first.getProgramUrl());
+        Schedule legacy = alice.stream().filter(s -> s.getId().equals("legacy-1")).findFirst().orElseThrow();
+        assertNull(legacy.getDurationMin());
+        assertNull(legacy.getProgramUrl());
+        assertTrue(columns.byUser("nobody").isEmpty());
+        assertEquals(3, columns.size());
+    }
+
+    @Test
+    void put_SameId_MovesRowToNewUser() {
+        ScheduleColumns columns = new ScheduleColumns(4);
+        columns.put(schedule("65a4f0c2e1b2c3d4e5f60718", "alice", 0));
+        columns.put(schedule("65a4f0c2e1b2c3d4e5f60718", "bob", 60));
+
+        assertTrue(columns.byUser("alice").isEmpty());
+        assertEquals(START.plusSeconds(3600), columns.byUser("bob").get(0).getStartAt());
+        assertEquals(1, columns.size());
+    }
+
+    @Test
+    void remove_ManyRows_KeepsTheRestReachableAndReusesRows() {
+        ScheduleColumns columns = new ScheduleColumns(16);
+        int n = 20_000;
+        for (int i = 0; i < n; i++) {
+            columns.put(schedule(String.format("%024x", i), "user-" + (i % 100), i % 600));
+        }
+        long grown = columns.estimatedBytes();
+        // every other id, so deletions land in the middle of probe runs
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(columns.remove(String.format("%024x", i)));
+        }
+        assertFalse(columns.remove(String.format("%024x", 0)));
+        assertEquals(n / 2, columns.size());
+        for (int u = 0; u < 100; u++) {
+            List<Schedule> rows = columns.byUser("user-" + u);
+            assertEquals(u % 2 == 1 ? n / 100 : 0, rows.size());
+        }
+        for (int i = 0; i < n; i += 2) {
+            columns.put(schedule(String.format("%024x", i), "user-" + (i % 100), 0));
+        }
+        assertEquals(n, columns.size());
+        assertEquals(grown, columns.estimatedBytes());
+    }
+
+    @Test
+    void byUser_WhileWriterGrowsTheColumns_NeverReturnsTornRows() throws InterruptedException {
+        ScheduleColumns columns = new ScheduleColumns(16);
+        columns.put(schedule("000000000000000000000000", "reader", 0));
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    List<Schedule> rows = columns.byUser("reader");
+                    assertEquals(1, rows.size());
+                    assertEquals("000000000000000000000000", rows.get(0).getId());
+                    assertEquals(START, rows.get(0).getStartAt());
+                }
+            } catch (Throwable t) {
+                failures.add(t);
+            }
+        });
+        reader.start();
+        for (int i = 1; i < 200_000; i++) {
+            columns.put(schedule(String.format("%024x", i), "writer-" + (i % 1000), i % 600));
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(List.of(), failures);
+    }
+
+    @Test
+    void readSnapshot_AfterWrite_RestoresRowsAndWatermark() throws IOException {
+        ScheduleColumns columns = new ScheduleColumns(16);
+        for (int i = 0; i < 1_000; i++) {
+            columns.put(schedule(String.format("%024x", i), "user-" + (i % 10), i % 600));
+        }
+        columns.put(Schedule.builder().id("legacy-1").userId("user-3").startAt(START).build());
+        for (int i = 0; i < 1_000; i += 3) {
+            columns.remove(String.format("%024x", i));
+        }
+        Path file = dir.resolve("now-index.snap");
+        Instant watermark = Instant.parse("2024-03-01T19:59:30.250Z");
+
+        long size = columns.writeSnapshot(file, watermark);
+        ScheduleColumns.Snapshot snapshot = ScheduleColumns.readSnapshot(file);
+
+        assertEquals(Files.size(file), size);
+        assertEquals(watermark, snapshot.watermark());
+        ScheduleColumns restored = snapshot.columns();
+        assertEquals(columns.size(), restored.size());
+        for (int u = 0; u < 10; u++) {
+            assertEquals(new HashSet<>(columns.byUser("user-" + u)),
+                    new HashSet<>(restored.byUser("user-" + u)));
+        }
+        assertTrue(ids(restored.byUser("user-3")).contains("legacy-1"));
+        // still writable: ids resolve to their restored rows
+        restored.put(schedule(String.format("%024x", 1), "user-9", 0));
+        assertEquals(columns.size(), restored.size());
+        assertTrue(restored.remove("legacy-1"));
+    }
+
+    @Test
+    void readSnapshot_CorruptedFile_Fails() throws IOException {
+        ScheduleColumns columns = new ScheduleColumns(16);
+        columns.put(schedule("65a4f0c2e1b2c3d4e5f60718", "alice", 0));
+        Path file = dir.resolve("now-index.snap");
+        columns.writeSnapshot(file, START);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> ScheduleColumns.readSnapshot(file));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.schuduler.programschuduler.service;
+
+import com.schuduler.programschuduler.model.Schedule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduleGridServiceTest {
+
+    private static final Instant FROM = Instant.parse("2024-03-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2024-03-04T00:00:00Z");
+
+    @Mock
+    private ReactiveMongoTemplate mongo;
+
+    @InjectMocks
+    private ScheduleGridService gridService;
+
+    private static Schedule schedule(String id, String channel, String startAt, int durationMin, Schedule.Recurrence recurrence) {
+        return Schedule.builder()
+                .id(id)
+                .userId("user-1")
+                .title("Title " + id)
+                .channel(channel)
+                .startAt(Instant.parse(startAt))
+                .durationMin(durationMin)
+                .recurrence(recurrence)
+                .programUrl("http://example.com/" + id + ".mp4")
+                .build();
+    }
+
+    private static List<Instant> expand(Schedule schedule, Instant from, Instant to) {
+        List<Instant> starts = new ArrayList<>();
+        new RecurrenceIterator(schedule, from, to, ZoneOffset.UTC).forEachRemaining(starts::add);
+        return starts;
+    }
+
+    @Test
+    void recurrenceIterator_DailySeriesStartedLongAgo_OnlyOccurrencesInWindow() {
+        Schedule news = schedule("news", "A", "2020-01-01T20:00:00Z", 30, Schedule.Recurrence.DAILY);
+
+        assertEquals(List.of(
+                Instant.parse("2024-03-01T20:00:00Z"),
+                Instant.parse("2024-03-02T20:00:00Z"),
+                Instant.parse("2024-03-03T20:00:00Z")), expand(news, FROM, TO));
+    }
+
+    @Test
+    void recurrenceIterator_OccurrenceRunningAtFrom_IsIncluded() {
+        Schedule film = schedule("film", "A", "2024-02-29T23:00:00Z", 120, Schedule.Recurrence.NONE);
+        Schedule ended = schedule("ended", "A", "2024-02-29T22:00:00Z", 60, Schedule.Recurrence.NONE);
+
+        assertEquals(List.of(Instant.parse("2024-02-29T23:00:00Z")), expand(film, FROM, TO));
+        assertEquals(List.of(), expand(ended, FROM, TO));
+    }
+
+    @Test
+    void recurrenceIterator_MonthlyOn31st_ClampsWithoutDrifting() {
+        Schedule monthly = schedule("m", "A", "2024-01-31T12:00:00Z", 60, Schedule.Recurrence.MONTHLY);
+
+        assertEquals(List.of(
+                Instant.parse("2024-02-29T12:00:00Z"),
+                Instant.parse("2024-03-31T12:00:00Z"),
+                Instant.parse("2024-04-30T12:00:00Z")),
+                expand(monthly, Instant.parse("2024-02-01T00:00:00Z"), Instant.parse("2024-05-01T00:00:00Z")));
+    }
+
+    @Test
+    void merge_InterleavesSeriesInStartOrder() {
+        List<Schedule> series = List.of(
+                schedule("daily", "B", "2024-01-01T20:00:00Z", 30, Schedule.Recurrence.DAILY),
+                schedule("weekly", "A", "2024-02-23T20:00:00Z", 60, Schedule.Recurrence.WEEKLY),
+                schedule("once", "A", "2024-03-02T09:00:00Z", 45, Schedule.Recurrence.NONE));
+
+        StepVerifier.create(ScheduleGridService.merge(series, FROM, TO).map(o -> o.getScheduleId() + "@" + o.getStartAt()))
+                .expectNext("weekly@2024-03-01T20:00:00Z")
+                .expectNext("daily@2024-03-01T20:00:00Z")
+                .expectNext("once@2024-03-02T09:00:00Z")
+                .expectNext("daily@2024-03-02T20:00:00Z")
+                .expectNext("daily@2024-03-03T20:00:00Z")
+                .verifyComplete();
+    }
+
+    @Test
+    void grid_ByChannel_StreamsMergedOccurrencesWithEnd() {
+        // Arrange
+        when(mongo.find(any(Query.class), eq(Schedule.class)))
+                .thenReturn(Flux.just(schedule("daily", "A", "2024-03-03T20:00:00Z", 30, Schedule.Recurrence.DAILY)));
+
+        // Act & Assert
+        StepVerifier.create(gridService.grid(List.of("A"), null, FROM, TO))
+                .assertNext(o -> {
+                    assertEquals("daily", o.getScheduleId());
+                    assertEquals(Instant.parse("2024-03-03T20:30:00Z"), o.getEndAt());
+                    assertEquals("DAILY", o.getRecurrence());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void grid_WithoutChannelOrUser_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> gridService.grid(List.of(), " ", FROM, TO));
+        verifyNoInteractions(mongo);
+    }
+
+    @Test
+    void grid_WindowTooLarge_Rejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> gridService.grid(List.of("A"), null, FROM, FROM.plusSeconds(3600L * 24 * 30)));
+    }
+}
@@ -0,0 +1,322 @@
+package com.schuduler.programschuduler.service;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
+import com.schuduler.programschuduler.model.Schedule;
+import com.schuduler.programschuduler.repository.ScheduleRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Query-plan regressions: every {@link ScheduleRepository} finder and the template queries
+ * of the services run against a local MongoDB with the profiler on, and each must be an
+ * index scan on the expected index that examines no more documents than the query is
+ * about. The profiler records the plan that actually ran, so the repository's derived
+ * queries are checked as Spring Data issues them. Needs a MongoDB at
+ * {@code -Dtest.mongo.uri} (default {@code mongodb://localhost:27017}); skipped otherwise.
+ */
+class ScheduleQueryPlanTest {
+
+    private static final String DATABASE = "scheduler-plan-test";
+    private static final int SCHEDULES = 20_000;
+    private static final int USERS = 500;
+    private static final int CHANNELS = 50;
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+
+    private static final String BY_USER = "IXSCAN { userId: 1, startAt: 1 }";
+    private static final String BY_CHANNEL = "IXSCAN { channel: 1, startAt: 1 }";
+    private static final String BY_START = "IXSCAN { startAt: 1 }";
+
+    private static MongoClient client;
+    private static ReactiveMongoTemplate mongo;
+    private static ScheduleRepository repository;
+    private static List<Schedule> rows;
+
+    private record Plan(String summary, long docsExamined, long returned, boolean blockingSort) {
+    }
+
+    @BeforeAll
+    static void load() {
+        client = MongoClients.create(System.getProperty("test.mongo.uri", "mongodb://localhost:27017"));
+        mongo = new ReactiveMongoTemplate(client, DATABASE);
+        assumeTrue(reachable(), "MongoDB not reachable, skipping");
+
+        mongo.dropCollection(Schedule.class).block();
+        repository = new ReactiveMongoRepositoryFactory(mongo).getRepository(ScheduleRepository.class);
+
+        // five days either side of now; one in twenty a daily series that started in the past
+        Random random = new Random(42);
+        rows = new ArrayList<>(SCHEDULES);
+        for (int i = 0; i < SCHEDULES; i++) {
+            boolean daily = random.nextInt(20) == 0;
+            long minute = daily ? -random.nextInt(7200) : random.nextInt(14400) - 7200;
+            rows.add(Schedule.builder()
+                    .id(String.format("%024x", i))
+                    .userId("user-" + random.nextInt(USERS))
+                    .title("Programme " + i)
+                    .channel("channel-" + random.nextInt(CHANNELS))
+                    .startAt(NOW.plusSeconds(60 * minute))
+                    .durationMin(30)
+                    .recurrence(daily ? Schedule.Recurrence.DAILY : Schedule.Recurrence.NONE)
+                    .programUrl("https://cdn.example.com/p/" + random.nextInt(2000) + ".m3u8")
+                    .preplayPublished(false)
+                    .build());
+        }
+        mongo.insertAll(rows).blockLast();
+
+        ScheduleIndexes indexes = new ScheduleIndexes(mongo, "create");
+        indexes.create(indexes.missing().block()).blockLast();
+    }
+
+    @AfterAll
+    static void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    void scheduleIndexes_DroppedIndex_IsReportedAndRecreated() {
+        ScheduleIndexes indexes = new ScheduleIndexes(mongo, "create");
+        assertEquals(List.of("channel_startAt", "startAt", "userId_startAt"), names(indexes.declared()));
+        assertEquals(List.of(), indexes.missing().block());
+
+        mongo.indexOps(Schedule.class).dropIndex("channel_startAt").block();
+        assertEquals(List.of("channel_startAt"), names(indexes.missing().block()));
+
+        indexes.create(indexes.missing().block()).blockLast();
+        assertEquals(List.of(), indexes.missing().block());
+    }
+
+    // repository finders
+
+    @Test
+    void findAllByUserId_ScansTheUsersKeysOnly() {
+        assertPlan(profile(repository.findAllByUserId("user-7")), BY_USER, count(s -> s.getUserId().equals("user-7")));
+    }
+
+    @Test
+    void findAllByChannel_ScansTheChannelsKeysOnly() {
+        assertPlan(profile(repository.findAllByChannel("channel-7")), BY_CHANNEL,
+                count(s -> s.getChannel().equals("channel-7")));
+    }
+
+    @Test
+    void findAllByUserIdAndStartAtGreaterThanEqual_ScansFromNowOnly() {
+        assertPlan(profile(repository.findAllByUserIdAndStartAtGreaterThanEqual("user-7", NOW)), BY_USER,
+                count(s -> s.getUserId().equals("user-7") && !s.getStartAt().isBefore(NOW)));
+    }
+
+    @Test
+    void findAllByChannelAndStartAtGreaterThanEqual_ScansFromNowOnly() {
+        assertPlan(profile(repository.findAllByChannelAndStartAtGreaterThanEqual("channel-7", NOW)), BY_CHANNEL,
+                count(s -> s.getChannel().equals("channel-7") && !s.getStartAt().isBefore(NOW)));
+    }
+
+    @Test
+    void findAllByStartAtBetween_ScansTheRangeOnly() {
+        Instant to = NOW.plus(Duration.ofHours(1));
+        assertPlan(profile(repository.findAllByStartAtBetween(NOW, to)), BY_START,
+                count(s -> !s.getStartAt().isBefore(NOW) && !s.getStartAt().isAfter(to)));
+    }
+
+    // template queries
+
+    @Test
+    void nowBatch_MergesPerUserRangesWithoutSorting() {
+        // as ScheduleService#getNowPlaying(List) queries when the now-index is not ready
+        List<String> users = IntStream.range(0, 50).mapToObj(i -> "user-" + i).toList();
+        Query query = Query.query(Criteria.where("userId").in(users)).with(Sort.by("userId", "startAt"));
+        query.fields().include("userId", "startAt", "durationMin", "programUrl");
+
+        Plan plan = profile(mongo.find(query, Schedule.class));
+
+        assertPlan(plan, BY_USER, count(s -> users.contains(s.getUserId())));
+        assertFalse(plan.blockingSort(), "sorted in memory: " + plan);
+    }
+
+    @Test
+    void upcomingProjected_StopsAtTheLimit() {
+        // as ScheduleService#upcoming(userId, channel, limit, fields) queries
+        for (String field : List.of("userId", "channel")) {
+            String value = field.equals("userId") ? "user-7" : "channel-7";
+            Query query = Query.query(Criteria.where("startAt").gte(NOW).and(field).is(value))
+                    .with(Sort.by(Sort.Direction.ASC, "startAt"))
+                    .limit(10);
+            query.fields().include("title", "startAt");
+
+            Plan plan = profile(mongo.find(query, Schedule.class));
+
+            assertTrue(plan.summary().contains(field.equals("userId") ? BY_USER : BY_CHANNEL), plan::toString);
+            assertTrue(plan.docsExamined() <= 10, plan::toString);
+            assertFalse(plan.blockingSort(), plan::toString);
+        }
+    }
+
+    @Test
+    void grid_ReadsOnlyTheRequestedChannels() {
+        List<String> channels = List.of("channel-1", "channel-2");
+        Plan plan = profile(new ScheduleGridService(mongo).grid(channels, null, NOW, NOW.plus(Duration.ofHours(6))));
+
+        assertPlan(plan, BY_CHANNEL, count(s -> channels.contains(s.getChannel())));
+    }
+
+    @Test
+    void channelNow_ReadsOnlyTheChannel() {
+        Plan plan = profile(new ChannelTimelineIndex(mongo, Clock.systemUTC(), false, 24, 24).now("channel-7"));
+
+        assertPlan(plan, BY_CHANNEL, count(s -> s.getChannel().equals("channel-7")));
+    }
+
+    @Test
+    void nowIndexRebuild_ScansTheUpcomingRangeOnly() {
+        UpcomingScheduleIndex index = new UpcomingScheduleIndex(mongo, Clock.systemUTC(), true, 24, "", 10, 10000);
+        Instant from = Instant.now().minus(Duration.ofHours(24));
+
+        Plan plan = profile(Mono.fromRunnable(() -> index.resume(null))
+                .then(Mono.fromCallable(index::isReady)
+                        .filter(ready -> ready)
+                        .repeatWhenEmpty(r -> r.delayElements(Duration.ofMillis(20)))));
+
+        // the rebuild's window starts at from or later
+        assertPlan(plan, BY_START, count(s -> !s.getStartAt().isBefore(from)));
+    }
+
+    @Test
+    void preplayDue_ScansTheWindowsOnly() {
+        MongoPrePlaybackStore store = new MongoPrePlaybackStore(mongo, null, new PrePlaybackProperties());
+        Instant to = NOW.plusSeconds(60);
+        List<PrePlaybackStore.Window> windows = List.of(
+                new PrePlaybackStore.Window(PrePlaybackProperties.DEFAULT_STAGE, NOW, to),
+                new PrePlaybackStore.Window("reminder", NOW.plusSeconds(600), NOW.plusSeconds(660)));
+
+        assertPlan(profile(store.due(windows.subList(0, 1))), BY_START,
+                count(s -> !s.getStartAt().isBefore(NOW) && s.getStartAt().isBefore(to)));
+        assertPlan(profile(store.due(windows)), BY_START,
+                count(s -> !s.getStartAt().isBefore(NOW) && s.getStartAt().isBefore(NOW.plusSeconds(660))));
+    }
+
+    @Test
+    void leaseReaper_UsesThePartialLeaseIndex() {
+        PrePlaybackProperties properties = new PrePlaybackProperties();
+        properties.getLease().setEnabled(true);
+        MongoPrePlaybackStore store = new MongoPrePlaybackStore(mongo, null, properties);
+        String stage = PrePlaybackProperties.DEFAULT_STAGE;
+        store.prepare();
+        Mono.defer(() -> mongo.indexOps(Schedule.class).getIndexInfo()
+                        .any(i -> i.getName().equals("claims_" + stage + "_leaseUntil"))
+                        .filter(ready -> ready))
+                .repeatWhenEmpty(r -> r.delayElements(Duration.ofMillis(20)))
+                .block(Duration.ofSeconds(30));
+        List<Schedule> claimed = rows.subList(0, 5);
+        Flux.fromIterable(claimed)
+                .concatMap(s -> store.claim(s, stage, new PrePlaybackStore.Lease("worker-1", NOW), NOW))
+                .blockLast();
+
+        Plan plan = profile(store.reap(stage, NOW.plusSeconds(1)));
+
+        assertPlan(plan, "IXSCAN { claims." + stage + ".leaseUntil: 1 }", claimed.size());
+    }
+
+    @Test
+    void archiveBatch_ScansEndedSchedulesInStartOrder() {
+        // as ScheduleArchiveService#archiveBatch queries
+        Instant cutoff = NOW.minus(Duration.ofHours(24));
+        Query query = Query.query(Criteria.where("startAt").lt(cutoff)
+                        .orOperator(Criteria.where("recurrence").is(Schedule.Recurrence.NONE),
+                                Criteria.where("recurrence").is(null)))
+                .with(Sort.by(Sort.Direction.ASC, "startAt"))
+                .limit(500);
+
+        Plan plan = profile(mongo.find(query, Schedule.class));
+
+        // recurring series before the cutoff are read and skipped
+        assertPlan(plan, BY_START, 500 + count(s -> s.getRecurrence() == Schedule.Recurrence.DAILY
+                && s.getStartAt().isBefore(cutoff)));
+        assertFalse(plan.blockingSort(), plan::toString);
+    }
+
+    private static void assertPlan(Plan plan, String indexScan, long maxDocsExamined) {
+        assertTrue(plan.summary().contains(indexScan), () -> "expected " + indexScan + ": " + plan);
+        assertFalse(plan.summary().contains("COLLSCAN"), plan::toString);
+        assertTrue(plan.docsExamined() <= maxDocsExamined,
+                () -> "examined more than " + maxDocsExamined + " documents: " + plan);
+    }
+
+    // runs the query with every operation on the database profiled, then reads back what ran on schedules
+    private static Plan profile(Publisher<?> query) {
+        mongo.executeCommand("{ profile: 0 }").block();
+        mongo.dropCollection("system.profile").block();
+        mongo.executeCommand("{ profile: 2 }").block();
+        try {
+            Flux.from(query).then().block(Duration.ofSeconds(30));
+        } finally {
+            mongo.executeCommand("{ profile: 0 }").block();
+        }
+        List<Document> entries = mongo.find(Query.query(Criteria.where("ns").is(DATABASE + ".schedules")
+                        .and("op").in("query", "getmore")), Document.class, "system.profile")
+                .collectList()
+                .block();
+        assertFalse(entries.isEmpty(), "no query on schedules was profiled");
+        List<String> summaries = new ArrayList<>();
+        long docs = 0;
+        long returned = 0;
+        boolean sorted = false;
+        for (Document e : entries) {
+            if (e.getString("planSummary") != null && !summaries.contains(e.getString("planSummary"))) {
+                summaries.add(e.getString("planSummary"));
+            }
+            docs += number(e, "docsExamined");
+            returned += number(e, "nreturned");
+            sorted |= Boolean.TRUE.equals(e.getBoolean("hasSortStage"));
+        }
+        return new Plan(String.join(" | ", summaries), docs, returned, sorted);
+    }
+
+    private static List<String> names(List<IndexDefinition> definitions) {
+        return definitions.stream().map(d -> d.getIndexOptions().getString("name")).sorted().toList();
+    }
+
+    private static long number(Document d, String field) {
+        Object v = d.get(field);
+        return v instanceof Number n ? n.longValue() : 0;
+    }
+
+    private static long count(Predicate<Schedule> predicate) {
+        return rows.stream().filter(predicate).count();
+    }
+
+    private static boolean reachable() {
+        try {
+            mongo.executeCommand("{ ping: 1 }").block(Duration.ofSeconds(3));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.schuduler.programschuduler.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.schuduler.programschuduler.dto.*;
-import com.schuduler.programschuduler.messaging.PrePlaybackEventPublisher;
 import com.schuduler.programschuduler.model.Schedule;
 import com.schuduler.programschuduler.repository.ScheduleRepository;
+import com.schuduler.programschuduler.simulation.VirtualClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -27,6 +31,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,11 +42,23 @@ class ScheduleServiceTest {
     private ScheduleRepository repository;
 
     @Mock
-    private PrePlaybackEventPublisher eventPublisher;
+    private PrePlaybackEngine engine;
+
+    @Spy
+    private Clock clock = new VirtualClock(Instant.now());
 
     @Mock
     private ReactiveMongoTemplate mongoTemplate;
 
+    @Mock
+    private ScheduleBucketStore buckets;
+
+    @Spy
+    private ScheduleNearCache nearCache = new ScheduleNearCache(true, 100);
+
+    @Mock
+    private UpcomingScheduleIndex nowIndex;
+
     @InjectMocks
     private ScheduleService scheduleService;
 
@@ -80,6 +97,7 @@ class ScheduleServiceTest {
                 .preplayPublished(false)
                 .createdAt(testInstant)
                 .updatedAt(testInstant)
+                .version(2L)
                 .build();
 
         scheduleResponse = ScheduleResponse.builder()
@@ -94,6 +112,7 @@ class ScheduleServiceTest {
                 .notes("Test notes")
                 .createdAt(testInstant)
                 .updatedAt(testInstant)
+                .version(2L)
                 .build();
     }
 
@@ -259,6 +278,82 @@ class ScheduleServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void getNowPlayingBatch_OneQueryAndOneAnswerPerUser() {
+        // Arrange
+        Instant now = clock.instant();
+        Schedule playing = Schedule.builder().id("a-1").userId("a")
+                .startAt(now.minusSeconds(600)).durationMin(60).programUrl("http://a/1.mp4").build();
+        Schedule later = Schedule.builder().id("a-2").userId("a")
+                .startAt(now.plusSeconds(7200)).durationMin(30).programUrl("http://a/2.mp4").build();
+        Schedule upcoming = Schedule.builder().id("b-1").userId("b")
+                .startAt(now.plusSeconds(3600)).durationMin(30).programUrl("http://b/1.mp4").build();
+        when(mongoTemplate.find(any(Query.class), eq(Schedule.class))).thenReturn(Flux.just(playing, later, upcoming));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.getNowPlaying(List.of("a", "b", "c", "a")))
+                .assertNext(r -> {
+                    assertEquals("a", r.userId());
+                    assertEquals("PLAY", r.now().status());
+                    assertEquals("a-1", r.now().entry().id());
+                    assertEquals(10, r.now().entry().skipStartMin());
+                    assertEquals("a-2", r.now().nextEntry().id());
+                })
+                .assertNext(r -> {
+                    assertEquals("b", r.userId());
+                    assertEquals("NONE", r.now().status());
+                    assertEquals("b-1", r.now().nextEntry().id());
+                })
+                .assertNext(r -> {
+                    assertEquals("c", r.userId());
+                    assertEquals("NONE", r.now().status());
+                    assertNull(r.now().nextEntry());
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(query.capture(), eq(Schedule.class));
+        org.bson.Document userId = (org.bson.Document) query.getValue().getQueryObject().get("userId");
+        assertEquals(List.of("a", "b", "c"), List.copyOf((java.util.Collection<?>) userId.get("$in")));
+        assertEquals(1, query.getValue().getSortObject().get("userId"));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void getNowPlaying_IndexReady_AnswersFromMemory() {
+        // Arrange
+        Instant now = clock.instant();
+        when(nowIndex.isReady()).thenReturn(true);
+        when(nowIndex.schedulesOf("a")).thenReturn(new java.util.ArrayList<>(List.of(Schedule.builder().id("a-1").userId("a")
+                .startAt(now.minusSeconds(120)).durationMin(30).programUrl("http://a/1.mp4").build())));
+        when(nowIndex.schedulesOf("b")).thenReturn(new java.util.ArrayList<>());
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.getNowPlaying("a"))
+                .assertNext(r -> {
+                    assertEquals("PLAY", r.status());
+                    assertEquals(2, r.entry().skipStartMin());
+                })
+                .verifyComplete();
+        StepVerifier.create(scheduleService.getNowPlaying(List.of("b", "a")))
+                .assertNext(r -> assertEquals("b", r.userId()))
+                .assertNext(r -> assertEquals("PLAY", r.now().status()))
+                .verifyComplete();
+        verifyNoInteractions(repository, mongoTemplate);
+    }
+
+    @Test
+    void getNowPlayingBatch_TooManyUsers_IsRejected() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduleService, "maxNowBatch", 2);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> scheduleService.getNowPlaying(List.of("a", "b", "c")));
+        assertThrows(IllegalArgumentException.class, () -> scheduleService.getNowPlaying(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> scheduleService.getNowPlaying(Arrays.asList("a", " ")));
+        verifyNoInteractions(mongoTemplate);
+    }
+
     @Test
     void getNowPlaying_FutureSchedule_ReturnsNoneWithNextEntry() {
         // Arrange
@@ -422,6 +517,36 @@ class ScheduleServiceTest {
         assertEquals(expected, result);
     }
 
+    @Test
+    void emitPrePlaybackEvents_ScansAtClockTime() {
+        // Arrange
+        Instant virtualNow = Instant.parse("2030-01-01T20:00:00Z");
+        ((VirtualClock) clock).set(virtualNow);
+        when(engine.scan(virtualNow)).thenReturn(Mono.just(3L));
+
+        // Act
+        scheduleService.emitPrePlaybackEvents();
+
+        // Assert
+        verify(engine).scan(virtualNow);
+        assertEquals(virtualNow, scheduleService.getLastScan());
+        assertEquals(1, scheduleService.getScanCount());
+    }
+
+    @Test
+    void reapExpiredClaims_ReapsAtClockTime() {
+        // Arrange
+        Instant virtualNow = Instant.parse("2030-01-01T20:00:00Z");
+        ((VirtualClock) clock).set(virtualNow);
+        when(engine.reap(virtualNow)).thenReturn(Mono.just(0L));
+
+        // Act
+        scheduleService.reapExpiredClaims();
+
+        // Assert
+        verify(engine).reap(virtualNow);
+    }
+
     @Test
     void parseStartAt_ValidDateAndTime_ReturnsCorrectInstant() {
         // Arrange
@@ -433,8 +558,268 @@ class ScheduleServiceTest {
                 scheduleService, "parseStartAt", date, time);
 
         // Assert
-        assertNotNull(result);
+        // read in the host's zone, as it always was
+        assertEquals(LocalDateTime.parse("2024-01-15T14:30").atZone(ZoneId.systemDefault()).toInstant(), result);
+    }
+
+    @Test
+    void updateSchedule_NewStartAt_SetsChangedFieldsAndRearmsPreplay() {
+        // Arrange
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder()
+                .title("Renamed")
+                .date("2024-01-16")
+                .time("11:00")
+                .version(3L)
+                .build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class)))
+                .thenReturn(Mono.just(schedule));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .expectNext(scheduleResponse)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), captor.capture(), any(FindAndModifyOptions.class), eq(Schedule.class));
+        assertEquals(3L, query.getValue().getQueryObject().get("version"));
+        org.bson.Document set = (org.bson.Document) captor.getValue().getUpdateObject().get("$set");
+        assertEquals("Renamed", set.get("title"));
+        assertEquals(false, set.get("preplayPublished"));
+        assertTrue(((org.bson.Document) captor.getValue().getUpdateObject().get("$unset")).containsKey("firedStages"));
+        assertTrue(((org.bson.Document) captor.getValue().getUpdateObject().get("$unset")).containsKey("claims"));
+        assertNotNull(set.get("startAt"));
+        assertFalse(set.containsKey("notes"));
+    }
+
+    @Test
+    void updateSchedule_DateWithoutTime_ReturnsBadRequestError() {
+        // Arrange
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().date("2024-01-16").version(1L).build();
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void updateSchedule_WithoutVersion_ReturnsBadRequestError() {
+        // Arrange
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().title("Renamed").build();
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void updateSchedule_VersionZero_AlsoMatchesUnversionedDocuments() {
+        // Arrange
+        Schedule legacy = Schedule.builder().id(scheduleId).title("Renamed").build();
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().title("Renamed").version(0L).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class)))
+                .thenReturn(Mono.just(legacy));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .assertNext(response -> assertEquals(0L, response.getVersion()))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class));
+        assertEquals(List.of(new org.bson.Document("version", 0L),
+                        new org.bson.Document("version", new org.bson.Document("$exists", false))),
+                query.getValue().getQueryObject().get("$or"));
+    }
+
+    @Test
+    void updateSchedule_StaleVersion_ReturnsConflict() {
+        // Arrange
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().notes("n").version(1L).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class)))
+                .thenReturn(Mono.empty());
+        when(repository.existsById(scheduleId)).thenReturn(Mono.just(true));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+    }
+
+    @Test
+    void updateSchedule_UnknownId_ReturnsEmpty() {
+        // Arrange
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().notes("n").version(1L).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class)))
+                .thenReturn(Mono.empty());
+        when(repository.existsById("missing")).thenReturn(Mono.just(false));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule("missing", update))
+                .verifyComplete();
+    }
+
+    @Test
+    void getById_WithFields_ProjectsAndSkipsRepository() {
+        // Arrange
+        Schedule projected = Schedule.builder().id(scheduleId).title("Test Program").build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Schedule.class))).thenReturn(Mono.just(projected));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.getById(scheduleId, ScheduleFields.parse("id,title")))
+                .assertNext(response -> {
+                    assertEquals(scheduleId, response.getId());
+                    assertEquals("Test Program", response.getTitle());
+                    assertNull(response.getRecurrence());
+                    assertNull(response.getNotes());
+                    assertInstanceOf(ProjectedScheduleResponse.class, response);
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findOne(query.capture(), eq(Schedule.class));
+        assertEquals(new org.bson.Document("_id", 1).append("title", 1), query.getValue().getFieldsObject());
+        verify(repository, never()).findById(anyString());
+    }
+
+    @Test
+    void toResponse_OnlyProjectedResponsesOmitNulls() throws Exception {
+        // Arrange
+        ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+        ScheduleResponse full = ScheduleResponse.builder().id(scheduleId).title("Test Program").build();
+
+        // Act
+        String fullJson = json.writeValueAsString(full);
+        String projectedJson = json.writeValueAsString(new ProjectedScheduleResponse(full));
+
+        // Assert
+        assertTrue(fullJson.contains("\"notes\":null"));
+        assertEquals("{\"id\":\"" + scheduleId + "\",\"title\":\"Test Program\"}", projectedJson);
     }
 
+    @Test
+    void parseFields_UnknownField_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> ScheduleFields.parse("id,password"));
+        assertTrue(ScheduleFields.parse(" ").isAll());
+    }
+
+    @Test
+    void createSchedule_BucketsEnabled_AddsBucketEntry() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduleService, "bucketsEnabled", true);
+        when(repository.save(any(Schedule.class))).thenReturn(Mono.just(schedule));
+        when(buckets.add(schedule)).thenReturn(Mono.empty());
+        when(buckets.atomically(any())).thenAnswer(inv -> inv.getArgument(0));
 
-}
\ No newline at end of file
+        // Act & Assert
+        StepVerifier.create(scheduleService.createSchedule(scheduleRequest))
+                .expectNext(scheduleResponse)
+                .verifyComplete();
+
+        verify(buckets, times(1)).atomically(any());
+        verify(buckets, times(1)).add(schedule);
+    }
+
+    @Test
+    void delete_BucketsEnabled_RemovesBucketEntry() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduleService, "bucketsEnabled", true);
+        when(repository.findById(scheduleId)).thenReturn(Mono.just(schedule));
+        when(repository.deleteById(scheduleId)).thenReturn(Mono.empty());
+        when(buckets.remove(schedule)).thenReturn(Mono.empty());
+        when(buckets.atomically(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.delete(scheduleId))
+                .verifyComplete();
+
+        verify(buckets, times(1)).atomically(any());
+        verify(buckets, times(1)).remove(schedule);
+    }
+
+    @Test
+    void updateSchedule_BucketsEnabledAndChannelChanged_MovesBucketEntry() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduleService, "bucketsEnabled", true);
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().channel("channel-2").version(3L).build();
+        Schedule moved = Schedule.builder().id(scheduleId).userId("test-user").channel("channel-2")
+                .startAt(schedule.getStartAt()).build();
+        when(repository.findById(scheduleId)).thenReturn(Mono.just(schedule));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class)))
+                .thenReturn(Mono.just(moved));
+        when(buckets.move(schedule, moved)).thenReturn(Mono.empty());
+        when(buckets.atomically(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .expectNextMatches(r -> "channel-2".equals(r.getChannel()))
+                .verifyComplete();
+
+        verify(buckets, times(1)).atomically(any());
+        verify(buckets, times(1)).move(schedule, moved);
+    }
+
+    @Test
+    void updateSchedule_BucketsEnabledAndTitleChanged_LeavesBuckets() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduleService, "bucketsEnabled", true);
+        ScheduleUpdateRequest update = ScheduleUpdateRequest.builder().title("Renamed").version(3L).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Schedule.class)))
+                .thenReturn(Mono.just(schedule));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.updateSchedule(scheduleId, update))
+                .expectNext(scheduleResponse)
+                .verifyComplete();
+
+        verifyNoInteractions(buckets);
+    }
+
+    @Test
+    void getById_CachedSchedule_ServedWithoutSecondRead() {
+        // Arrange
+        nearCache.resume();
+        when(repository.findById(scheduleId)).thenReturn(Mono.just(schedule));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.getById(scheduleId)).expectNext(scheduleResponse).verifyComplete();
+        StepVerifier.create(scheduleService.getById(scheduleId)).expectNext(scheduleResponse).verifyComplete();
+
+        verify(repository, times(1)).findById(scheduleId);
+    }
+
+    @Test
+    void getById_ChangeStreamNotOpen_ReadsThrough() {
+        // Arrange
+        when(repository.findById(scheduleId)).thenReturn(Mono.just(schedule));
+
+        // Act & Assert
+        StepVerifier.create(scheduleService.getById(scheduleId)).expectNext(scheduleResponse).verifyComplete();
+        StepVerifier.create(scheduleService.getById(scheduleId)).expectNext(scheduleResponse).verifyComplete();
+
+        verify(repository, times(2)).findById(scheduleId);
+    }
+
+    @Test
+    void delete_InvalidatesCachedSchedule() {
+        // Arrange
+        nearCache.resume();
+        when(repository.findById(scheduleId)).thenReturn(Mono.just(schedule));
+        when(repository.deleteById(scheduleId)).thenReturn(Mono.empty());
+        StepVerifier.create(scheduleService.getById(scheduleId)).expectNext(scheduleResponse).verifyComplete();
+
+        // Act
+        StepVerifier.create(scheduleService.delete(scheduleId)).verifyComplete();
+        StepVerifier.create(scheduleService.getById(scheduleId)).expectNext(scheduleResponse).verifyComplete();
+
+        // Assert
+        verify(repository, times(2)).findById(scheduleId);
+        verify(nearCache).invalidate(scheduleId);
+    }
+}
@@ -0,0 +1,66 @@
+package com.schuduler.programschuduler.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void execute_ConcurrentCallsForSameKey_ShareOneLoad() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        Sinks.One<String> result = Sinks.one();
+        AtomicInteger loads = new AtomicInteger();
+
+        Mono<String> first = flights.execute("user1", () -> {
+            loads.incrementAndGet();
+            return result.asMono();
+        });
+        Mono<String> second = flights.execute("user1", () -> {
+            loads.incrementAndGet();
+            return Mono.just("other");
+        });
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> result.tryEmitValue("now-playing"))
+                .assertNext(t -> {
+                    assertEquals("now-playing", t.getT1());
+                    assertEquals("now-playing", t.getT2());
+                })
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(2, flights.calls());
+        assertEquals(1, flights.coalesced());
+        assertEquals(0.5, flights.coalescingRatio());
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void execute_AfterCompletion_LoadsAgain() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        StepVerifier.create(flights.execute("k", () -> Mono.fromCallable(loads::incrementAndGet))).expectNext(1).verifyComplete();
+        StepVerifier.create(flights.execute("k", () -> Mono.fromCallable(loads::incrementAndGet))).expectNext(2).verifyComplete();
+
+        assertEquals(0, flights.coalesced());
+    }
+
+    @Test
+    void execute_DifferentKeys_DoNotCoalesce() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        Sinks.One<String> pending = Sinks.one();
+
+        flights.execute("a", pending::asMono).subscribe();
+        StepVerifier.create(flights.execute("b", () -> Mono.just("b"))).expectNext("b").verifyComplete();
+
+        assertEquals(0, flights.coalesced());
+        assertEquals(1, flights.inFlight());
+    }
+}
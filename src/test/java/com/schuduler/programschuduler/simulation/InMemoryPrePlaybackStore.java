@@ -0,0 +1,303 @@
+package com.schuduler.programschuduler.simulation;
+
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
+import com.schuduler.programschuduler.model.Schedule;
+import com.schuduler.programschuduler.service.PrePlaybackStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Column store standing in for the schedules collection: start times sorted ascending,
+ * the id of a schedule is its position, one claim bit set per stage and the leases in
+ * flight. Counts the operations Mongo would have served. With a {@link #crashRate}, that
+ * share of successful claims is dropped as if the worker died before publishing.
+ */
+public class InMemoryPrePlaybackStore implements PrePlaybackStore {
+
+    private final long[] startMs;
+    private final int[] channel;
+    private final int[] user;
+    private final List<String> stages;
+    private final BitSet[] fired;
+    private final List<Map<Integer, Lease>> leases;
+    private SplittableRandom crashes = new SplittableRandom(0);
+    private double crashRate;
+
+    private final LongAdder finds = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder bulkClaims = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder crashed = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+
+    InMemoryPrePlaybackStore(long[] sortedStartMs, int[] channel, int[] user, List<String> stages) {
+        this.startMs = sortedStartMs;
+        this.channel = channel;
+        this.user = user;
+        this.stages = List.copyOf(stages);
+        this.fired = new BitSet[stages.size()];
+        this.leases = new ArrayList<>(stages.size());
+        for (int i = 0; i < fired.length; i++) {
+            fired[i] = new BitSet(sortedStartMs.length);
+            leases.add(new HashMap<>());
+        }
+    }
+
+    /** Drops {@code rate} of successful claims before they reach the engine. */
+    public InMemoryPrePlaybackStore crashRate(double rate, long seed) {
+        this.crashRate = rate;
+        this.crashes = new SplittableRandom(seed);
+        return this;
+    }
+
+    /**
+     * {@code n} schedules starting within the day after {@code dayStart}. A {@code peakShare}
+     * of them start on the half hour between 19:00 and 23:00 — the broadcast pile-up — the
+     * rest anywhere in the day, to the second.
+     */
+    public static InMemoryPrePlaybackStore generate(int n, Instant dayStart, long seed,
+                                                    int channels, int users, double peakShare,
+                                                    List<String> stages) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long day = dayStart.toEpochMilli();
+        long[] starts = new long[n];
+        for (int i = 0; i < n; i++) {
+            if (random.nextDouble() < peakShare) {
+                starts[i] = day + 19 * 3_600_000L + random.nextInt(8) * 1_800_000L;
+            } else {
+                starts[i] = day + random.nextInt(24 * 3600) * 1000L;
+            }
+        }
+        Arrays.sort(starts);
+        int[] channel = new int[n];
+        int[] user = new int[n];
+        for (int i = 0; i < n; i++) {
+            channel[i] = random.nextInt(channels);
+            user[i] = random.nextInt(users);
+        }
+        return new InMemoryPrePlaybackStore(starts, channel, user, stages);
+    }
+
+    // one "query" for all windows, like the $or in MongoPrePlaybackStore
+    @Override
+    public Flux<Schedule> due(List<Window> windows) {
+        finds.increment();
+        BitSet matched = new BitSet();
+        for (Window w : windows) {
+            BitSet stageFired = fired[stages.indexOf(w.stage())];
+            int hi = lowerBound(w.to().toEpochMilli());
+            for (int i = stageFired.nextClearBit(lowerBound(w.from().toEpochMilli())); i < hi; i = stageFired.nextClearBit(i + 1)) {
+                matched.set(i);
+            }
+        }
+        List<Schedule> out = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            out.add(schedule(i));
+        }
+        returned.add(out.size());
+        return Flux.fromIterable(out);
+    }
+
+    @Override
+    public Mono<Schedule> claim(Schedule candidate, String stage, Lease lease, Instant now) {
+        claims.increment();
+        int st = stages.indexOf(stage);
+        int i = Integer.parseInt(candidate.getId());
+        synchronized (fired[st]) {
+            if (!take(st, i, candidate.getStartAt().toEpochMilli(), lease)) {
+                conflicts.increment();
+                return Mono.empty();
+            }
+            if (crash()) {
+                return Mono.empty();
+            }
+        }
+        Schedule claimed = schedule(i);
+        claimed.setUpdatedAt(now);
+        return Mono.just(claimed);
+    }
+
+    @Override
+    public Flux<Schedule> claimAll(List<String> ids, Instant startAt, String stage, Lease lease, Instant now) {
+        bulkClaims.increment();
+        int st = stages.indexOf(stage);
+        long at = startAt.toEpochMilli();
+        List<Schedule> claimed = new ArrayList<>(ids.size());
+        synchronized (fired[st]) {
+            for (String id : ids) {
+                int i = Integer.parseInt(id);
+                if (!take(st, i, at, lease)) {
+                    conflicts.increment();
+                    continue;
+                }
+                claimed.add(schedule(i));
+            }
+            if (!claimed.isEmpty() && crash()) {
+                return Flux.empty();
+            }
+        }
+        return Flux.fromIterable(claimed);
+    }
+
+    @Override
+    public Mono<Long> published(List<String> ids, String stage, String owner, Instant now) {
+        int st = stages.indexOf(stage);
+        long confirmed = 0;
+        synchronized (fired[st]) {
+            for (String id : ids) {
+                int i = Integer.parseInt(id);
+                Lease lease = leases.get(st).get(i);
+                if (lease != null && lease.owner().equals(owner)) {
+                    leases.get(st).remove(i);
+                    fired[st].set(i);
+                    confirmed++;
+                }
+            }
+        }
+        return Mono.just(confirmed);
+    }
+
+    @Override
+    public Flux<Schedule> reap(String stage, Instant now) {
+        finds.increment();
+        int st = stages.indexOf(stage);
+        List<Integer> expired = new ArrayList<>();
+        synchronized (fired[st]) {
+            for (Iterator<Map.Entry<Integer, Lease>> it = leases.get(st).entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Integer, Lease> e = it.next();
+                if (e.getValue().until().isBefore(now)) {
+                    expired.add(e.getKey());
+                    it.remove();
+                }
+            }
+        }
+        reaped.add(expired.size());
+        return Flux.fromIterable(expired).map(this::schedule);
+    }
+
+    // PENDING -> CLAIMED with a lease, straight to fired without; caller holds the stage lock
+    private boolean take(int st, int i, long scannedStartMs, Lease lease) {
+        if (fired[st].get(i) || leases.get(st).containsKey(i) || startMs[i] != scannedStartMs) {
+            return false;
+        }
+        if (lease == null) {
+            fired[st].set(i);
+        } else {
+            leases.get(st).put(i, lease);
+        }
+        return true;
+    }
+
+    private boolean crash() {
+        if (crashRate > 0 && crashes.nextDouble() < crashRate) {
+            crashed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return startMs.length;
+    }
+
+    public List<String> stages() {
+        return stages;
+    }
+
+    public long startMs(int index) {
+        return startMs[index];
+    }
+
+    public long finds() {
+        return finds.sum();
+    }
+
+    public long returned() {
+        return returned.sum();
+    }
+
+    public long claims() {
+        return claims.sum();
+    }
+
+    public long bulkClaims() {
+        return bulkClaims.sum();
+    }
+
+    public long conflicts() {
+        return conflicts.sum();
+    }
+
+    public long crashed() {
+        return crashed.sum();
+    }
+
+    public long reaped() {
+        return reaped.sum();
+    }
+
+    // claim state as the Mongo document carries it
+    private Schedule schedule(int i) {
+        List<String> firedStages = new ArrayList<>(0);
+        Map<String, Schedule.Claim> claimed = null;
+        boolean preplayPublished = false;
+        for (int st = 0; st < fired.length; st++) {
+            Lease lease = leases.get(st).get(i);
+            if (lease != null) {
+                if (claimed == null) {
+                    claimed = new HashMap<>(2);
+                }
+                claimed.put(stages.get(st), new Schedule.Claim(Schedule.ClaimState.CLAIMED, lease.owner(), lease.until()));
+            }
+            if (!fired[st].get(i)) {
+                continue;
+            }
+            if (PrePlaybackProperties.DEFAULT_STAGE.equals(stages.get(st))) {
+                preplayPublished = true;
+            } else {
+                firedStages.add(stages.get(st));
+            }
+        }
+        return Schedule.builder()
+                .id(Integer.toString(i))
+                .userId("user-" + user[i])
+                .channel("ch-" + channel[i])
+                .title("Program " + i)
+                // the same channel at the same time is the same programme
+                .programUrl("https://example.com/ch-" + channel[i] + "/" + startMs[i])
+                .startAt(Instant.ofEpochMilli(startMs[i]))
+                .durationMin(30)
+                .recurrence(Schedule.Recurrence.NONE)
+                .preplayPublished(preplayPublished)
+                .firedStages(firedStages)
+                .claims(claimed)
+                .build();
+    }
+
+    // first index with startMs >= key
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = startMs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (startMs[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
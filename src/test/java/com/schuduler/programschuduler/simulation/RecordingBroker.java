@@ -0,0 +1,74 @@
+package com.schuduler.programschuduler.simulation;
+
+import com.schuduler.programschuduler.dto.PrePlaybackEvent;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fake broker: remembers the virtual time each (schedule, stage) event was published at,
+ * so lateness against the stage deadline and missed events can be reported afterwards.
+ */
+public class RecordingBroker implements Consumer<PrePlaybackEvent> {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final Clock clock;
+    private final List<String> stages;
+    private final long[][] publishedAtMs;
+    private long published;
+    private long messages;
+    private long duplicates;
+
+    public RecordingBroker(Clock clock, int schedules, List<String> stages) {
+        this.clock = clock;
+        this.stages = List.copyOf(stages);
+        this.publishedAtMs = new long[stages.size()][schedules];
+        for (long[] stage : publishedAtMs) {
+            Arrays.fill(stage, NEVER);
+        }
+    }
+
+    @Override
+    public synchronized void accept(PrePlaybackEvent event) {
+        messages++;
+        long[] stage = publishedAtMs[stages.indexOf(event.getStage())];
+        if (event.getScheduleIds() == null) {
+            record(stage, event.getScheduleId());
+            return;
+        }
+        for (String id : event.getScheduleIds()) {
+            record(stage, id);
+        }
+    }
+
+    private void record(long[] stage, String scheduleId) {
+        int i = Integer.parseInt(scheduleId);
+        if (stage[i] != NEVER) {
+            duplicates++;
+            return;
+        }
+        stage[i] = clock.millis();
+        published++;
+    }
+
+    public synchronized long published() {
+        return published;
+    }
+
+    /** Messages sent; below {@link #published()} when broadcasts cover several schedules. */
+    public synchronized long messages() {
+        return messages;
+    }
+
+    public synchronized long duplicates() {
+        return duplicates;
+    }
+
+    /** Publish time of stage {@code s} of schedule {@code i}, or {@code null} when it never went out. */
+    public synchronized Long publishedAtMs(int s, int i) {
+        return publishedAtMs[s][i] == NEVER ? null : publishedAtMs[s][i];
+    }
+}
@@ -0,0 +1,157 @@
+package com.schuduler.programschuduler.simulation;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.schuduler.programschuduler.config.PrePlaybackProperties.Stage;
+import com.schuduler.programschuduler.service.PrePlaybackEngine;
+import com.schuduler.programschuduler.service.PrePlaybackPacer;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replays one day of schedules through the real scan/claim/publish engine on virtual
+ * time, against {@link InMemoryPrePlaybackStore} and {@link RecordingBroker}.
+ * Run with {@code ./gradlew simulate -PsimArgs="schedules=10000000 pacing=true"}.
+ */
+public final class SchedulerSimulation {
+
+    static final Instant DAY = Instant.parse("2030-01-01T00:00:00Z");
+
+    private SchedulerSimulation() {
+    }
+
+    public static void main(String[] args) {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        SimulationSettings settings = SimulationSettings.parse(args);
+        System.out.println("simulating " + settings.summary());
+        System.out.println(run(settings));
+    }
+
+    public static SimulationResult run(SimulationSettings s) {
+        List<Stage> stages = s.stageList();
+        List<String> stageNames = stages.stream().map(Stage::name).toList();
+        long wallStart = System.nanoTime();
+        InMemoryPrePlaybackStore store = InMemoryPrePlaybackStore.generate(
+                s.getSchedules(), DAY, s.getSeed(), s.getChannels(), s.getUsers(), s.getPeakShare(), stageNames)
+                .crashRate(s.getCrashRate(), s.getSeed());
+        long generatedNanos = System.nanoTime() - wallStart;
+
+        // stages come longest lead first
+        Instant start = DAY.minusSeconds(stages.get(0).leadSeconds() + (s.isPacing() ? s.getSlackSeconds() : 60));
+        Instant end = DAY.plus(Duration.ofDays(1));
+        VirtualClock clock = new VirtualClock(start);
+        RecordingBroker broker = new RecordingBroker(clock, store.size(), stageNames);
+        PrePlaybackPacer pacer = new PrePlaybackPacer(s.isPacing(), s.getRatePerSecond(), s.getBurst(), Set.of(), Set.of());
+        PrePlaybackEngine engine = new PrePlaybackEngine(store, event -> {
+                    broker.accept(event);
+                    return CompletableFuture.completedFuture(null);
+                }, pacer,
+                stages, s.broadcastSettings(), s.leaseSettings(), s.getSlackSeconds(), s.getTickMs());
+
+        long runStart = System.nanoTime();
+        long nextScan = start.toEpochMilli();
+        long nextTick = s.isPacing() ? start.toEpochMilli() : Long.MAX_VALUE;
+        long nextReap = s.isLease() ? start.toEpochMilli() : Long.MAX_VALUE;
+        long endMs = end.toEpochMilli();
+        while (Math.min(nextScan, Math.min(nextTick, nextReap)) < endMs) {
+            long t = Math.min(nextScan, Math.min(nextTick, nextReap));
+            Instant now = Instant.ofEpochMilli(t);
+            clock.set(now);
+            if (t == nextScan) {
+                engine.scan(now).block();
+                nextScan += s.getPollMs();
+            }
+            if (t == nextTick) {
+                engine.releasePaced(now).block();
+                nextTick += s.getTickMs();
+            }
+            if (t == nextReap) {
+                engine.reap(now).block();
+                nextReap += s.getReapMs();
+            }
+        }
+        long runNanos = System.nanoTime() - runStart;
+
+        return SimulationResult.of(stages, store, broker, Duration.between(start, end), generatedNanos, runNanos);
+    }
+
+    public record SimulationResult(int schedules,
+                                   int stages,
+                                   long published,
+                                   long messages,
+                                   long duplicates,
+                                   long missed,
+                                   long latenessP50Ms,
+                                   long latenessP99Ms,
+                                   long latenessMaxMs,
+                                   long finds,
+                                   long documentsReturned,
+                                   long claims,
+                                   long bulkClaims,
+                                   long claimConflicts,
+                                   long crashed,
+                                   long reaped,
+                                   Duration virtualSpan,
+                                   Duration generated,
+                                   Duration wall) {
+
+        static SimulationResult of(List<Stage> stages, InMemoryPrePlaybackStore store, RecordingBroker broker,
+                                   Duration span, long generatedNanos, long runNanos) {
+            long[] lateness = new long[(int) broker.published()];
+            int n = 0;
+            long missed = 0;
+            for (int st = 0; st < stages.size(); st++) {
+                long leadMs = stages.get(st).leadSeconds() * 1000;
+                for (int i = 0; i < store.size(); i++) {
+                    Long at = broker.publishedAtMs(st, i);
+                    long startMs = store.startMs(i);
+                    if (at == null || at >= startMs) {
+                        missed++;
+                    }
+                    if (at != null) {
+                        // negative: published ahead of the stage deadline
+                        lateness[n++] = at - (startMs - leadMs);
+                    }
+                }
+            }
+            Arrays.sort(lateness, 0, n);
+            return new SimulationResult(store.size(), stages.size(), broker.published(), broker.messages(),
+                    broker.duplicates(), missed,
+                    percentile(lateness, n, 0.50), percentile(lateness, n, 0.99), n == 0 ? 0 : lateness[n - 1],
+                    store.finds(), store.returned(), store.claims(), store.bulkClaims(), store.conflicts(),
+                    store.crashed(), store.reaped(),
+                    span, Duration.ofNanos(generatedNanos), Duration.ofNanos(runNanos));
+        }
+
+        private static long percentile(long[] sorted, int n, double p) {
+            return n == 0 ? 0 : sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+        }
+
+        /** Events per wall-clock second of the replay. */
+        public double publishRate() {
+            double seconds = wall.toNanos() / 1e9;
+            return seconds == 0 ? 0 : published / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("""
+                    replayed %s of virtual time in %.1fs wall (+%.1fs generating %,d schedules x %d stage(s))
+                    published   %,d (%,.0f/s) in %,d message(s), duplicates %,d, missed %,d
+                    lateness    p50 %,dms  p99 %,dms  max %,dms  (vs startAt - stage lead; negative = early)
+                    store ops   finds %,d  docs returned %,d  claims %,d  bulk claims %,d  claim conflicts %,d
+                    crashes     %,d claim(s) dropped after claiming, %,d lease(s) reaped""",
+                    virtualSpan, wall.toNanos() / 1e9, generated.toNanos() / 1e9, schedules, stages,
+                    published, publishRate(), messages, duplicates, missed,
+                    latenessP50Ms, latenessP99Ms, latenessMaxMs,
+                    finds, documentsReturned, claims, bulkClaims, claimConflicts,
+                    crashed, reaped);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.schuduler.programschuduler.simulation;
+
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
+import com.schuduler.programschuduler.simulation.SchedulerSimulation.SimulationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulerSimulationTest {
+
+    private static final SimulationSettings SMALL = SimulationSettings.builder()
+            .schedules(20_000)
+            .channels(20)
+            .users(1_000)
+            .build();
+
+    @Test
+    void defaults_PublishEveryScheduleBeforeItsDeadline() {
+        SimulationResult result = SchedulerSimulation.run(SMALL);
+
+        assertEquals(20_000, result.published());
+        assertEquals(0, result.missed());
+        assertEquals(0, result.duplicates());
+        assertTrue(result.latenessMaxMs() <= 0, "published after startAt - lead: " + result);
+        assertEquals(0, result.claimConflicts());
+    }
+
+    @Test
+    void pollSlowerThanScanWindow_MissesEvents() {
+        SimulationResult result = SchedulerSimulation.run(SMALL.toBuilder().pollMs(120_000).build());
+
+        assertTrue(result.missed() > 0, result::toString);
+        assertEquals(result.schedules() - result.published(), result.missed());
+    }
+
+    @Test
+    void pacing_SpreadsPublishesAndStillMeetsStartAt() {
+        SimulationResult result = SchedulerSimulation.run(SMALL.toBuilder()
+                .pacing(true).ratePerSecond(50).burst(50).build());
+
+        assertEquals(20_000, result.published());
+        assertEquals(0, result.missed());
+        assertTrue(result.latenessP50Ms() < 0, "paced releases should run ahead of the deadline: " + result);
+    }
+
+    @Test
+    void stages_FireEveryStageOnceWithOneScanPerPoll() {
+        SimulationResult staged = SchedulerSimulation.run(SMALL.toBuilder().stages("warmup:1800,preplay:300,cue:30").build());
+
+        assertEquals(3 * 20_000, staged.published());
+        assertEquals(0, staged.missed());
+        assertEquals(0, staged.duplicates());
+        assertTrue(staged.latenessMaxMs() <= 0, staged::toString);
+        // one store query per poll, however many stages
+        assertEquals(staged.virtualSpan().toMillis() / SMALL.getPollMs(), staged.finds());
+    }
+
+    @Test
+    void broadcast_PublishesOneMessagePerProgramme() {
+        SimulationResult single = SchedulerSimulation.run(SMALL);
+        SimulationResult broadcast = SchedulerSimulation.run(SMALL.toBuilder().broadcast(true).build());
+
+        assertEquals(20_000, broadcast.published());
+        assertEquals(0, broadcast.missed());
+        assertEquals(0, broadcast.duplicates());
+        assertEquals(20_000, single.messages());
+        // the prime-time half shares 20 channels x 8 slots
+        assertTrue(broadcast.messages() < 12_000, broadcast::toString);
+        assertTrue(broadcast.bulkClaims() > 0);
+        assertTrue(broadcast.claims() < single.claims());
+    }
+
+    @Test
+    void leases_RecoverClaimsOfWorkersThatDied() {
+        SimulationSettings crashing = SMALL.toBuilder().crashRate(0.01).build();
+        SimulationResult unleased = SchedulerSimulation.run(crashing);
+        SimulationResult leased = SchedulerSimulation.run(crashing.toBuilder().lease(true).build());
+
+        assertTrue(unleased.crashed() > 0);
+        assertEquals(unleased.crashed(), unleased.missed(), unleased::toString);
+
+        assertEquals(20_000, leased.published(), leased::toString);
+        assertEquals(0, leased.missed());
+        assertEquals(0, leased.duplicates());
+        assertEquals(leased.crashed(), leased.reaped());
+    }
+
+    @Test
+    void parse_OverridesDefaultsAndRejectsUnknownKeys() {
+        SimulationSettings s = SimulationSettings.parse("schedules=10", "pacing=true", "rate=5");
+
+        assertEquals(10, s.getSchedules());
+        assertTrue(s.isPacing());
+        assertEquals(5, s.getRatePerSecond());
+        assertEquals(60_000, s.getPollMs());
+        assertEquals(List.of("warmup", "preplay"), SimulationSettings.parse("stages=preplay:300,warmup:1800")
+                .stageList().stream().map(PrePlaybackProperties.Stage::name).toList());
+        assertThrows(IllegalArgumentException.class, () -> SimulationSettings.parse("bogus=1"));
+    }
+}
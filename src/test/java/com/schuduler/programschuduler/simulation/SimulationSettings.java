@@ -0,0 +1,124 @@
+package com.schuduler.programschuduler.simulation;
+
+import com.schuduler.programschuduler.config.PrePlaybackProperties;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Value
+@Builder(toBuilder = true)
+public class SimulationSettings {
+
+    @Builder.Default int schedules = 1_000_000;
+    @Builder.Default long seed = 42;
+    @Builder.Default int channels = 500;
+    @Builder.Default int users = 200_000;
+    @Builder.Default double peakShare = 0.5;
+
+    @Builder.Default long pollMs = 60_000;
+    @Builder.Default long leadSeconds = 300;
+    /** {@code name:leadSeconds,...}; empty for the single default stage at {@code leadSeconds}. */
+    @Builder.Default String stages = "";
+
+    @Builder.Default boolean pacing = false;
+    @Builder.Default double ratePerSecond = 200;
+    @Builder.Default double burst = 400;
+    @Builder.Default long slackSeconds = 600;
+    @Builder.Default long tickMs = 250;
+
+    @Builder.Default boolean broadcast = false;
+    @Builder.Default int minGroup = 2;
+
+    @Builder.Default boolean lease = false;
+    @Builder.Default long leaseSeconds = 30;
+    @Builder.Default long reapMs = 10_000;
+    /** Share of successful claims whose worker "dies" before publishing. */
+    @Builder.Default double crashRate = 0;
+
+    private static final Set<String> KEYS = Set.of("schedules", "seed", "channels", "users", "peakShare",
+            "pollMs", "leadSeconds", "stages", "pacing", "rate", "burst", "slack", "tickMs", "broadcast", "minGroup",
+            "lease", "leaseSeconds", "reapMs", "crashRate");
+
+    /** Parses {@code key=value} arguments over the defaults, e.g. {@code schedules=10000000 pacing=true}. */
+    public static SimulationSettings parse(String... args) {
+        SimulationSettingsBuilder b = builder();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String key = eq < 0 ? arg : arg.substring(0, eq);
+            if (eq < 0 || !KEYS.contains(key)) {
+                throw new IllegalArgumentException("expected one of " + KEYS + " as key=value, got '" + arg + "'");
+            }
+            String v = arg.substring(eq + 1);
+            switch (key) {
+                case "schedules" -> b.schedules(Integer.parseInt(v));
+                case "seed" -> b.seed(Long.parseLong(v));
+                case "channels" -> b.channels(Integer.parseInt(v));
+                case "users" -> b.users(Integer.parseInt(v));
+                case "peakShare" -> b.peakShare(Double.parseDouble(v));
+                case "pollMs" -> b.pollMs(Long.parseLong(v));
+                case "leadSeconds" -> b.leadSeconds(Long.parseLong(v));
+                case "stages" -> b.stages(v);
+                case "pacing" -> b.pacing(Boolean.parseBoolean(v));
+                case "rate" -> b.ratePerSecond(Double.parseDouble(v));
+                case "burst" -> b.burst(Double.parseDouble(v));
+                case "slack" -> b.slackSeconds(Long.parseLong(v));
+                case "tickMs" -> b.tickMs(Long.parseLong(v));
+                case "broadcast" -> b.broadcast(Boolean.parseBoolean(v));
+                case "minGroup" -> b.minGroup(Integer.parseInt(v));
+                case "lease" -> b.lease(Boolean.parseBoolean(v));
+                case "leaseSeconds" -> b.leaseSeconds(Long.parseLong(v));
+                case "reapMs" -> b.reapMs(Long.parseLong(v));
+                case "crashRate" -> b.crashRate(Double.parseDouble(v));
+                default -> throw new IllegalStateException(key);
+            }
+        }
+        return b.build();
+    }
+
+    /** The stages to fire, longest lead first, as the engine gets them from {@link PrePlaybackProperties}. */
+    public List<PrePlaybackProperties.Stage> stageList() {
+        PrePlaybackProperties preplay = new PrePlaybackProperties();
+        preplay.setLeadSeconds(leadSeconds);
+        List<PrePlaybackProperties.Stage> parsed = new ArrayList<>();
+        for (String stage : stages.split(",")) {
+            if (stage.isBlank()) {
+                continue;
+            }
+            String[] parts = stage.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("expected stages=name:leadSeconds,..., got '" + stages + "'");
+            }
+            parsed.add(new PrePlaybackProperties.Stage(parts[0].trim(), Long.parseLong(parts[1].trim()), null));
+        }
+        preplay.setStages(parsed);
+        return preplay.effectiveStages();
+    }
+
+    public PrePlaybackProperties.Broadcast broadcastSettings() {
+        PrePlaybackProperties.Broadcast b = new PrePlaybackProperties.Broadcast();
+        b.setEnabled(broadcast);
+        b.setMinGroupSize(minGroup);
+        return b;
+    }
+
+    public PrePlaybackProperties.Lease leaseSettings() {
+        PrePlaybackProperties.Lease l = new PrePlaybackProperties.Lease();
+        l.setEnabled(lease);
+        l.setSeconds(leaseSeconds);
+        l.setReapIntervalMs(reapMs);
+        l.setOwner("simulation");
+        return l;
+    }
+
+    Map<String, Object> summary() {
+        return Map.of("schedules", schedules, "pollMs", pollMs, "stages", stageList(),
+                "pacing", pacing ? ratePerSecond + "/s burst " + burst + " slack " + slackSeconds + "s" : "off",
+                "broadcast", broadcast ? "min group " + minGroup : "off",
+                "lease", lease ? leaseSeconds + "s, reap every " + reapMs + "ms" : "off",
+                "crashRate", crashRate);
+    }
+}